@@ -0,0 +1,70 @@
+package com.mx85.bench;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.PieceFactory;
+import com.mx85.engine.Shape;
+
+import java.util.SplittableRandom;
+
+/*
+ * Boards and pieces the benchmarks run on, all derived from fixed seeds: the same
+ * arguments give the same cells on every machine and every commit, so two runs differ
+ * only by the code they measure.
+ */
+public final class Fixtures {
+
+    public static final long SEED = 20170306L;
+    public static final int WINDOW = 4; //rows a locked piece can cover, the most one lock can clear
+
+    private Fixtures() {
+    }
+
+    /*random garbage in the lower half, every row with at least one hole so none is full. the rows are reported to the
+    * board the way a lock does, so its stack top is where the garbage starts
+    */
+    public static Board garbage(int width, int height, long seed) {
+        Board board = new Board(width, height);
+        SplittableRandom random = new SplittableRandom(seed);
+        int top = height / 2;
+        for (int y = top; y < height; y++) {
+            fillRow(board, y, random.nextInt(width), random.nextDouble() * 0.8, random);
+        }
+        board.clearFullRows(top, height - 1);
+        return board;
+    }
+
+    /*garbage with the bottom WINDOW rows set up for a lock to clear: full of them are full, spread over the window, the
+    * others have one hole. clearing the window is then what checking the rows of a locked piece costs
+    */
+    public static Board fullRows(int width, int height, int full, long seed) {
+        if (full < 0 || full > WINDOW)
+            throw new IllegalArgumentException("full rows must be 0 to " + WINDOW + ": " + full);
+        Board board = garbage(width, height, seed);
+        SplittableRandom random = new SplittableRandom(seed + full);
+        for (int i = 0; i < WINDOW; i++) {
+            int y = height - WINDOW + i;
+            boolean isFull = (i * full) / WINDOW != ((i + 1) * full) / WINDOW;
+            fillRow(board, y, isFull ? -1 : random.nextInt(width), 1, random);
+        }
+        board.recountColumns(); //the window counts as locked, as it is by the time a real lock clears it
+        return board;
+    }
+
+    //a shape of the type where it spawns on the board, drawn on it
+    public static Shape spawned(Board board, Shape.PIECE type) {
+        Shape shape = new Shape(type);
+        PieceFactory.respawn(shape, type, board.getWidth());
+        shape.draw(board);
+        return shape;
+    }
+
+    //cells of row y filled with the given density, all but the hole column (-1 for none) which stays free
+    private static void fillRow(Board board, int y, int hole, double density, SplittableRandom random) {
+        for (int x = 0; x < board.getWidth(); x++) {
+            if (x == hole)
+                board.clear(x, y);
+            else if (hole < 0 || random.nextDouble() < density)
+                board.fill(x, y, Board.GARBAGE);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mx85.bench;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.sim.Strategies;
+import com.mx85.sim.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Whole headless games from reset to game over, played by a bot strategy. Each game is
+ * dealt from the next seed of a fixed sequence that starts over every iteration, so
+ * every iteration on every commit plays the same games.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameBenchmarks {
+
+    @Param({"10"})
+    public int width;
+
+    @Param({"20"})
+    public int height;
+
+    @Param({"drop", "random"})
+    public String strategy;
+
+    private Game game;
+    private Strategy player;
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        game = new Game(width, height, PieceGenerators.create("bag", Fixtures.SEED));
+        player = Strategies.create(strategy, Fixtures.SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void restartSeeds() {
+        seed = Fixtures.SEED;
+    }
+
+    //one game, returns the pieces it took
+    @Benchmark
+    public int play() {
+        game.reset(seed);
+        player.reset(seed);
+        seed++;
+        while (!game.isGameOver()) {
+            player.playPiece(game);
+        }
+        return game.getPieces();
+    }
+}
@@ -0,0 +1,59 @@
+package com.mx85.bench;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceFactory;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.engine.PieceQueue;
+import com.mx85.engine.Shape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Dealing pieces from a fixed-seed bag:
+ *
+ *   create   PieceFactory.createRandomPiece, a new Shape per piece, returned so it escapes
+ *            as it does in a game
+ *   respawn  PieceFactory.respawn, how games reuse their one Shape
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PieceBenchmarks {
+
+    @Param({"10"})
+    public int width;
+
+    private PieceQueue queue;
+    private Shape shape;
+
+    @Setup
+    public void setUp() {
+        queue = new PieceQueue(PieceGenerators.create("bag", Fixtures.SEED), Game.DEFAULT_PREVIEW);
+        shape = new Shape(Shape.PIECE.TPIECE);
+    }
+
+    @Benchmark
+    public Shape create() {
+        return PieceFactory.createRandomPiece(width, queue);
+    }
+
+    @Benchmark
+    public int respawn() {
+        PieceFactory.respawn(shape, queue.next(), width);
+        return shape.getX();
+    }
+}
@@ -0,0 +1,85 @@
+package com.mx85.bench;
+
+import com.mx85.engine.Board;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Checking the rows of a locked piece, on fixed-seed boards:
+ *
+ *   clear  Board.clearFullRows over the four rows of a lock with 0 to 4 of them full, the
+ *          board copied back from its fixture first
+ *   copy   that copy alone, to subtract from the above
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RowBenchmarks {
+
+    @State(Scope.Thread)
+    public static class Rows {
+
+        @Param({"10"})
+        public int width;
+
+        @Param({"20"})
+        public int height;
+
+        @Param({"0", "1", "2", "3", "4"})
+        public int full;
+
+        Board fixture;
+        Board board;
+
+        @Setup
+        public void setUp() {
+            fixture = Fixtures.fullRows(width, height, full, Fixtures.SEED);
+            board = new Board(width, height);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Copy {
+
+        @Param({"10"})
+        public int width;
+
+        @Param({"20"})
+        public int height;
+
+        Board fixture;
+        Board board;
+
+        @Setup
+        public void setUp() {
+            fixture = Fixtures.fullRows(width, height, 0, Fixtures.SEED);
+            board = new Board(width, height);
+        }
+    }
+
+    @Benchmark
+    public int clear(Rows state) {
+        Board board = state.board;
+        board.copyFrom(state.fixture);
+        return board.clearFullRows(board.getHeight() - Fixtures.WINDOW, board.getHeight() - 1);
+    }
+
+    @Benchmark
+    public long copy(Copy state) {
+        state.board.copyFrom(state.fixture);
+        return state.board.getHash();
+    }
+}
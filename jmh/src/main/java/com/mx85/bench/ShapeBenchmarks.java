@@ -0,0 +1,102 @@
+package com.mx85.bench;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.PieceFactory;
+import com.mx85.engine.PieceTable;
+import com.mx85.engine.Shape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Moving the falling piece, on fixed-seed boards:
+ *
+ *   move           one Shape.move in every DIRECTION on a garbage board; a piece that can
+ *                  go no further is put back where it spawned, which is part of the cost
+ *   rotateBlocked  a rotation that does not fit, the wall-kick-free path of a rotate that
+ *                  fails
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ShapeBenchmarks {
+
+    @State(Scope.Thread)
+    public static class Moving {
+
+        @Param({"10"})
+        public int width;
+
+        @Param({"20"})
+        public int height;
+
+        @Param({"DOWN", "RIGHT", "LEFT", "ROTATE"})
+        public Shape.DIRECTION direction;
+
+        Board board;
+        Shape shape;
+
+        @Setup
+        public void setUp() {
+            board = Fixtures.garbage(width, height, Fixtures.SEED);
+            shape = Fixtures.spawned(board, Shape.PIECE.TPIECE);
+        }
+    }
+
+    //a long piece upright against the left wall of an empty board, where lying down does not fit
+    @State(Scope.Thread)
+    public static class Blocked {
+
+        @Param({"10"})
+        public int width;
+
+        @Param({"20"})
+        public int height;
+
+        Board board;
+        Shape shape;
+
+        @Setup
+        public void setUp() {
+            board = new Board(width, height);
+            shape = new Shape(Shape.PIECE.LONGPIECE);
+            PieceTable table = PieceTable.of(Shape.PIECE.LONGPIECE);
+            for (int rotation = 0; rotation < PieceTable.ROTATIONS; rotation++) {
+                int x = -table.minX(rotation);
+                if (table.maxX(rotation) == table.minX(rotation)
+                        && !board.canPlace(table, PieceTable.nextRotation(rotation), x, 0)) {
+                    shape.place(Shape.PIECE.LONGPIECE, rotation, x, -table.minY(rotation));
+                    break;
+                }
+            }
+            shape.draw(board);
+        }
+    }
+
+    @Benchmark
+    public boolean move(Moving state) {
+        if (state.shape.move(state.direction, state.board))
+            return true;
+        state.shape.erase(state.board);
+        PieceFactory.respawn(state.shape, Shape.PIECE.TPIECE, state.board.getWidth());
+        state.shape.draw(state.board);
+        return false;
+    }
+
+    @Benchmark
+    public boolean rotateBlocked(Blocked state) {
+        return state.shape.move(Shape.DIRECTION.ROTATE, state.board);
+    }
+}
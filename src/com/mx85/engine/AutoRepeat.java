@@ -0,0 +1,43 @@
+package com.mx85.engine;
+
+/*
+ * Auto-repeat timing for held LEFT and RIGHT, in simulation ticks. A held key moves once
+ * on press, waits the delayed auto shift (DAS) and then repeats every ARR ticks; an ARR
+ * of zero slides the piece straight to the wall once DAS has elapsed.
+ */
+public class AutoRepeat {
+
+    public static final int DEFAULT_DAS = 10; //about 167ms at 60 ticks per second
+    public static final int DEFAULT_ARR = 2;  //about 33ms at 60 ticks per second
+
+    private final int das;
+    private final int arr;
+
+    public AutoRepeat(int das, int arr) {
+        if (das < 0 || arr < 0)
+            throw new IllegalArgumentException("auto-repeat timings must not be negative: das=" + das + " arr=" + arr);
+        this.das = das;
+        this.arr = arr;
+    }
+
+    public static AutoRepeat defaults() {
+        return new AutoRepeat(DEFAULT_DAS, DEFAULT_ARR);
+    }
+
+    public int getDas() {
+        return das;
+    }
+
+    public int getArr() {
+        return arr;
+    }
+
+    //how many moves a key held for the given number of ticks makes on this tick, -1 meaning all the way to the wall
+    public int movesAt(int heldTicks) {
+        if (heldTicks < das)
+            return 0;
+        if (arr == 0)
+            return -1;
+        return (heldTicks - das) % arr == 0 ? 1 : 0;
+    }
+}
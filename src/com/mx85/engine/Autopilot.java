@@ -0,0 +1,14 @@
+package com.mx85.engine;
+
+/*
+ * Plays a live Simulation instead of (or alongside) the keyboard. Once per tick, before
+ * the game steps, the simulation thread asks the autopilot for Commands and applies
+ * them like submitted input, so they are recorded and a replay of an autoplayed game
+ * plays back like any other. An autopilot is only ever called from the simulation
+ * thread.
+ */
+public interface Autopilot {
+
+    //write the commands to apply this tick into commands, returns how many there are
+    int steer(Game game, int[] commands);
+}
@@ -0,0 +1,668 @@
+package com.mx85.engine;
+
+import java.util.Arrays;
+
+/*
+ * UI-free game board. Occupancy is kept as one bitmask per row (bit x is set when
+ * column x is filled) and the colour of every cell as a packed byte index, so a
+ * collision test is a couple of mask operations and no AWT class is ever loaded.
+ * The Swing frame only mirrors what is stored here.
+ *
+ * Rows wider than 64 columns take several consecutive longs, so stress boards of a
+ * thousand columns and thousands of rows are just bigger primitive arrays.
+ *
+ * Every column also knows the row of its highest locked cell and of its lowest hole (a
+ * free cell with a locked one above it). Both are updated as locks report their rows
+ * and as rows are cleared, and dropRow() uses them to find where a piece lands in one
+ * step per column instead of moving it down a row at a time.
+ *
+ * The occupancy also has a Zobrist hash, kept up to date cell by cell: every row keeps
+ * the XOR of the keys of its filled columns, and the board hash is the XOR of those row
+ * hashes mixed with a key of their row. A row hash moves with its row, so a line clear
+ * only re-mixes the rows that moved instead of rehashing cells. Colours are not hashed,
+ * two boards with the same cells filled have the same hash.
+ *
+ * For snapshots every row also remembers an immutable copy of itself (a Row) until it
+ * changes. Saving a board hands out those copies and only makes new ones for the rows
+ * that changed since, and rows keep their copy when a line clear moves them down, so
+ * snapshots taken a few pieces apart share nearly all their rows. Restoring only
+ * writes back the rows that are not already the ones of the snapshot.
+ */
+public class Board {
+
+    public static final byte EMPTY = 0;
+    public static final int NO_HOLE = -1;
+    public static final byte GARBAGE = (byte) (Shape.PIECE.values().length + 1); //colour of rows raised by an opponent
+    private static final long COLUMN_SEED = 0x9e3779b97f4a7c15L;
+    private static final long ROW_SEED = 0xd1b54a32d192ed03L;
+
+    private final int width;
+    private final int height;
+    private final int words;     //longs per row
+    private final long lastWord; //mask of the columns used in the last long of a row
+
+    private final long[] rows;   //occupancy masks, row y takes words [y * words, (y + 1) * words), row 0 is the top of the board
+    private final byte[] colors; //colour index per cell, row-major (y * width + x)
+    private final long[] columnKeys; //random key per column
+    private final long[] rowHashes; //per row: XOR of the column keys of its filled cells
+    private final Row[] shared;     //per row: an immutable copy of its contents, null once it changed since
+    private final Row emptyRow;
+    private long hash;           //XOR of rowKey(y, rowHashes[y]) over all rows
+    private int stackTop;        //no locked cell is above this row, rows above it never need to be moved
+    /*per column x: at x the row of its highest locked cell, the board height when it has none, and at width + x the row
+    * of its lowest free cell under a locked one, NO_HOLE when there is none. one array so a copy is one arraycopy
+    */
+    private final int[] columns;
+    private final long[] seen;       //per row word, scratch of the column updates: columns met in the rows so far
+
+    //bounding box of the cells changed since the last clearDirty(), empty when dirtyLeft > dirtyRight
+    private int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;
+
+    public Board(int width, int height) {
+        if (width < 1)
+            throw new IllegalArgumentException("width must be positive: " + width);
+        if (height < 1)
+            throw new IllegalArgumentException("height must be positive: " + height);
+        if ((long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("board too large: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.words = (width + 63) >>> 6;
+        this.lastWord = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+        this.rows = new long[height * words];
+        this.colors = new byte[width * height];
+        this.rowHashes = new long[height];
+        this.columnKeys = new long[width];
+        for (int x = 0; x < width; x++) {
+            columnKeys[x] = columnKey(x);
+        }
+        this.emptyRow = new Row(new long[words], new byte[width], 0);
+        this.shared = new Row[height];
+        Arrays.fill(shared, emptyRow);
+        this.stackTop = height;
+        this.columns = new int[2 * width];
+        this.seen = new long[words];
+        resetColumns();
+        markDirty(0, 0, width - 1, height - 1);
+    }
+
+    //colour index stored for cells filled by the given piece type, EMPTY is reserved for free cells
+    public static byte colorIndex(Shape.PIECE piece) {
+        return (byte) (piece.ordinal() + 1);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return words;
+    }
+
+    //true when (x, y) lies on the board and nothing occupies it
+    public boolean isFree(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height)
+            return false;
+        return (rows[y * words + (x >>> 6)] & (1L << x)) == 0;
+    }
+
+    /*true when the piece fits with its rotation box at (x, y), tested one row mask at a time
+    * instead of cell by cell; the box itself may hang over the edge as long as no cell does
+    */
+    public boolean canPlace(PieceTable piece, int rotation, int x, int y) {
+        if (x + piece.minX(rotation) < 0 || x + piece.maxX(rotation) >= width)
+            return false;
+        if (y + piece.minY(rotation) < 0 || y + piece.maxY(rotation) >= height)
+            return false;
+        for (int r = piece.minY(rotation); r <= piece.maxY(rotation); r++) {
+            long mask = piece.rowMask(rotation, r);
+            if (x < 0) {
+                if ((rows[(y + r) * words] & (mask >>> -x)) != 0)
+                    return false;
+                continue;
+            }
+            int word = (y + r) * words + (x >>> 6);
+            int shift = x & 63;
+            if ((rows[word] & (mask << shift)) != 0)
+                return false;
+            //a piece straddling two longs spills its high columns into the next one, which the bounds check guarantees exists
+            long spill = shift == 0 ? 0 : mask >>> (64 - shift);
+            if (spill != 0 && (rows[word + 1] & spill) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    //filled cells only count towards the stack top once a lock reports their rows through clearFullRows
+    public void fill(int x, int y, byte color) {
+        int word = y * words + (x >>> 6);
+        if ((rows[word] & (1L << x)) == 0)
+            toggleHash(x, y);
+        rows[word] |= 1L << x;
+        colors[y * width + x] = color;
+        shared[y] = null;
+        markDirty(x, y, x, y);
+    }
+
+    public void clear(int x, int y) {
+        int word = y * words + (x >>> 6);
+        if ((rows[word] & (1L << x)) != 0)
+            toggleHash(x, y);
+        rows[word] &= ~(1L << x);
+        colors[y * width + x] = EMPTY;
+        shared[y] = null;
+        markDirty(x, y, x, y);
+    }
+
+    //a cell changed between free and filled
+    private void toggleHash(int x, int y) {
+        hash ^= rowKey(y, rowHashes[y]);
+        rowHashes[y] ^= columnKeys[x];
+        hash ^= rowKey(y, rowHashes[y]);
+    }
+
+    /*what a row adds to the board hash, nothing while it is empty. the row hash is already random, so one multiply
+    * and shift is enough to make the same cells in another row count differently
+    */
+    private static long rowKey(int y, long rowHash) {
+        if (rowHash == 0)
+            return 0;
+        long z = (rowHash + ROW_SEED * (y + 1)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long columnKey(int x) {
+        return mix(COLUMN_SEED * (x + 1));
+    }
+
+    //SplitMix64 finalizer, turns column numbers into the random keys of the hash
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    //Zobrist hash of the filled cells, 0 for an empty board; equal boards of the same size have equal hashes
+    public long getHash() {
+        return hash;
+    }
+
+    public byte getColor(int x, int y) {
+        return colors[y * width + x];
+    }
+
+    //one long of a row's occupancy mask, word w holds columns [64 * w, 64 * w + 63]
+    public long getRowWord(int y, int word) {
+        return rows[y * words + word];
+    }
+
+    public boolean isRowFull(int y) {
+        int base = y * words;
+        for (int w = 0; w < words - 1; w++) {
+            if (rows[base + w] != -1L)
+                return false;
+        }
+        return rows[base + words - 1] == lastWord;
+    }
+
+    //row of the highest locked cell, or the board height when nothing has locked yet
+    public int getStackTop() {
+        return stackTop;
+    }
+
+    //row of the highest locked cell in column x, or the board height when the column is empty
+    public int getColumnTop(int x) {
+        return columns[x];
+    }
+
+    //number of rows from the bottom of the board up to and including the highest locked cell of column x
+    public int getColumnHeight(int x) {
+        return height - columns[x];
+    }
+
+    //row of the lowest free cell of column x that has a locked cell above it, NO_HOLE when there is none
+    public int getLowestHole(int x) {
+        return columns[width + x];
+    }
+
+    /*row the rotation box of a piece at (x, y) comes to rest on when it drops straight down, the piece must fit there
+    * and may be drawn or not. a column whose cells are all above its stack top lands on that top; a piece tucked under
+    * an overhang cannot sink below the lowest hole of that column, so only the rows down to that bound are tested
+    */
+    public int dropRow(PieceTable piece, int rotation, int x, int y) {
+        int landing = height;
+        boolean tucked = false;
+        for (int c = piece.minX(rotation); c <= piece.maxX(rotation); c++) {
+            int cell = y + piece.bottom(rotation, c);
+            int column = x + c;
+            int lowest;
+            if (cell < columns[column]) {
+                lowest = columns[column] - 1;
+            } else {
+                tucked = true;
+                lowest = Math.max(cell, columns[width + column]);
+            }
+            landing = Math.min(landing, y + lowest - cell);
+        }
+        if (!tucked)
+            return landing;
+        int row = y;
+        while (row < landing && fitsOver(piece, rotation, x, y, row + 1)) {
+            row++;
+        }
+        return row;
+    }
+
+    //whether the piece fits with its rotation box at (x, to) when its own cells at (x, from) do not count
+    private boolean fitsOver(PieceTable piece, int rotation, int x, int from, int to) {
+        for (int i = 0; i < PieceTable.CELLS; i++) {
+            int cellX = piece.cellX(rotation, i);
+            int cellY = to + piece.cellY(rotation, i);
+            if (isFree(x + cellX, cellY))
+                continue;
+            int own = cellY - from; //row of the box that covers the cell at the piece's own position
+            if (cellY >= height || own >= piece.getSize() || (piece.rowMask(rotation, own) & (1L << cellX)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /*called after every lock with the rows the locked piece covers. removes every full row between top and bottom
+    * (inclusive) in one compaction pass and returns how many were removed. a locked piece can only complete the rows
+    * it covers, so only those are tested; the rows in that window are packed downwards one by one and then everything
+    * between the top of the stack and the window drops in a single bulk move
+    */
+    public int clearFullRows(int top, int bottom) {
+        reportRows(top, bottom);
+        return clearRows(top, bottom);
+    }
+
+    /*the same for a piece drawn with its rotation box at (x, y) that locks there: only the columns it covers change,
+    * and each by one unbroken run of cells, so their tops and holes follow from the piece table without reading cells
+    */
+    public int settle(PieceTable piece, int rotation, int x, int y) {
+        for (int c = piece.minX(rotation); c <= piece.maxX(rotation); c++) {
+            int column = x + c;
+            int first = y + piece.top(rotation, c);
+            int last = y + piece.bottom(rotation, c);
+            int oldTop = columns[column];
+            int hole = columns[width + column];
+            if (first < oldTop) {
+                //stacked on the column, the run may leave free cells between it and the old top
+                columns[column] = first;
+                if (hole == NO_HOLE && last < oldTop - 1)
+                    columns[width + column] = oldTop - 1;
+            } else if (hole >= first && hole <= last) {
+                //tucked under an overhang, filling the lowest hole
+                columns[width + column] = deepestHole(column, first - 1);
+            }
+        }
+        return clearRows(y + piece.minY(rotation), y + piece.maxY(rotation));
+    }
+
+    private int clearRows(int top, int bottom) {
+        if (top < stackTop)
+            stackTop = top;
+        int write = bottom;
+        long moved = 0; //hash of the rows that may move, in their old places
+        for (int read = bottom; read >= top; read--) {
+            moved ^= rowKey(read, rowHashes[read]);
+            if (isRowFull(read))
+                continue;
+            if (write != read) {
+                System.arraycopy(rows, read * words, rows, write * words, words);
+                System.arraycopy(colors, read * width, colors, write * width, width);
+                rowHashes[write] = rowHashes[read];
+                shared[write] = shared[read];
+            }
+            write--;
+        }
+        int cleared = write - top + 1;
+        if (cleared == 0)
+            return 0;
+        int from = stackTop;
+        for (int y = from; y < top; y++) {
+            moved ^= rowKey(y, rowHashes[y]);
+        }
+        System.arraycopy(rows, from * words, rows, (from + cleared) * words, (top - from) * words);
+        System.arraycopy(colors, from * width, colors, (from + cleared) * width, (top - from) * width);
+        System.arraycopy(rowHashes, from, rowHashes, from + cleared, top - from);
+        System.arraycopy(shared, from, shared, from + cleared, top - from);
+        Arrays.fill(rows, from * words, (from + cleared) * words, 0);
+        Arrays.fill(colors, from * width, (from + cleared) * width, EMPTY);
+        Arrays.fill(rowHashes, from, from + cleared, 0);
+        Arrays.fill(shared, from, from + cleared, emptyRow);
+        for (int y = from + cleared; y <= bottom; y++) {
+            moved ^= rowKey(y, rowHashes[y]);
+        }
+        hash ^= moved;
+        markDirty(0, from, width - 1, bottom);
+        stackTop = Math.min(from + cleared, height);
+        shiftColumns(top, bottom, cleared);
+        return cleared;
+    }
+
+    //every cell of rows top to bottom is locked now, each column only needs the highest of them
+    private void reportRows(int top, int bottom) {
+        Arrays.fill(seen, 0);
+        for (int y = top; y <= bottom; y++) {
+            for (int w = 0; w < words; w++) {
+                long row = rows[y * words + w];
+                long fresh = row & ~seen[w];
+                seen[w] |= row;
+                while (fresh != 0) {
+                    reportCell((w << 6) + Long.numberOfTrailingZeros(fresh), y);
+                    fresh &= fresh - 1;
+                }
+            }
+        }
+    }
+
+    /*the filled cell (x, y) is locked now, along with the other cells being reported: a column whose top rises over
+    * free cells gains them as holes, and a column whose lowest hole got filled looks for the next one above it
+    */
+    private void reportCell(int x, int y) {
+        int oldTop = columns[x];
+        int hole = columns[width + x];
+        if (y < oldTop) {
+            columns[x] = y;
+            if (hole == NO_HOLE || !isFree(x, hole))
+                columns[width + x] = deepestHole(x, hole == NO_HOLE ? oldTop - 1 : hole - 1);
+        } else if (hole != NO_HOLE && !isFree(x, hole)) {
+            columns[width + x] = deepestHole(x, hole - 1);
+        }
+    }
+
+    /*cleared full rows were taken out of the window top to bottom: columns topped above the window move down with
+    * the stack, the others find their top again below the window's new rows. a hole never sits in a full row, so a
+    * hole above the window moves down too, one in the window is found again from its bottom up (everything under
+    * it is filled), and one below the window stays unless the rows that covered it are gone
+    */
+    private void shiftColumns(int top, int bottom, int cleared) {
+        for (int x = 0; x < width; x++) {
+            int columnTop = columns[x];
+            if (columnTop > bottom)
+                continue;
+            if (columnTop < top) {
+                columnTop += cleared;
+            } else {
+                columnTop = top + cleared;
+                while (columnTop < height && isFree(x, columnTop)) {
+                    columnTop++;
+                }
+            }
+            columns[x] = columnTop;
+            int hole = columns[width + x];
+            if (hole == NO_HOLE)
+                continue;
+            if (hole < top)
+                hole += cleared;
+            else if (hole <= bottom)
+                hole = deepestHole(x, bottom);
+            else if (hole < columnTop)
+                hole = NO_HOLE;
+            columns[width + x] = hole;
+        }
+    }
+
+    //the first free cell of column x going up from row from to just under the column top, NO_HOLE when there is none
+    private int deepestHole(int x, int from) {
+        for (int y = from; y > columns[x]; y--) {
+            if (isFree(x, y))
+                return y;
+        }
+        return NO_HOLE;
+    }
+
+    /*count the column tops and lowest holes again from the cells, every filled cell counting as locked: one pass down
+    * for the tops and one pass up for the holes, a row word at a time
+    */
+    public void recountColumns() {
+        resetColumns();
+        Arrays.fill(seen, 0);
+        for (int y = 0; y < height; y++) {
+            for (int w = 0; w < words; w++) {
+                long row = rows[y * words + w];
+                long fresh = row & ~seen[w];
+                seen[w] |= row;
+                while (fresh != 0) {
+                    columns[(w << 6) + Long.numberOfTrailingZeros(fresh)] = y;
+                    fresh &= fresh - 1;
+                }
+            }
+        }
+        //seen now holds the columns that have a top, each is settled by the lowest free cell going up
+        for (int y = height - 1; y >= 0; y--) {
+            boolean pending = false;
+            for (int w = 0; w < words; w++) {
+                long free = ~rows[y * words + w] & seen[w];
+                seen[w] &= ~free;
+                pending |= seen[w] != 0;
+                while (free != 0) {
+                    int x = (w << 6) + Long.numberOfTrailingZeros(free);
+                    free &= free - 1;
+                    if (y > columns[x])
+                        columns[width + x] = y;
+                }
+            }
+            if (!pending)
+                break;
+        }
+    }
+
+    private void resetColumns() {
+        Arrays.fill(columns, 0, width, height);
+        Arrays.fill(columns, width, 2 * width, NO_HOLE);
+    }
+
+    /*lock a piece with its rotation box at (x, y) the way a game does: fill its cells and clear the rows it completed,
+    * returns the number of rows cleared. the piece must fit there
+    */
+    public int lock(PieceTable piece, int rotation, int x, int y, byte color) {
+        for (int i = 0; i < PieceTable.CELLS; i++) {
+            fill(x + piece.cellX(rotation, i), y + piece.cellY(rotation, i), color);
+        }
+        return settle(piece, rotation, x, y);
+    }
+
+    /*push the stack up by count rows and fill the count bottom rows with garbage, full but for the hole column, as an
+    * opponent's attack does. returns false when locked cells were pushed off the top, which tops the game out. the
+    * falling piece must not be drawn
+    */
+    public boolean raise(int count, int hole, byte color) {
+        if (count <= 0)
+            return true;
+        count = Math.min(count, height);
+        boolean fits = stackTop >= count;
+        int from = Math.max(stackTop, count);
+        System.arraycopy(rows, from * words, rows, (from - count) * words, (height - from) * words);
+        System.arraycopy(colors, from * width, colors, (from - count) * width, (height - from) * width);
+        System.arraycopy(rowHashes, from, rowHashes, from - count, height - from);
+        System.arraycopy(shared, from, shared, from - count, height - from);
+        long garbageHash = 0;
+        for (int x = 0; x < width; x++) {
+            if (x != hole)
+                garbageHash ^= columnKeys[x];
+        }
+        for (int y = height - count; y < height; y++) {
+            Arrays.fill(rows, y * words, (y + 1) * words, 0);
+            for (int x = 0; x < width; x++) {
+                if (x != hole)
+                    rows[y * words + (x >>> 6)] |= 1L << x;
+                colors[y * width + x] = x == hole ? EMPTY : color;
+            }
+            rowHashes[y] = garbageHash;
+            shared[y] = null;
+        }
+        //every row moved, so the hash is mixed again from the row hashes rather than patched
+        hash = 0;
+        for (int y = 0; y < height; y++) {
+            hash ^= rowKey(y, rowHashes[y]);
+        }
+        stackTop = Math.max(0, stackTop - count);
+        markDirty(0, stackTop, width - 1, height - 1);
+        recountColumns();
+        return fits;
+    }
+
+    //make this board a copy of another one of the same size, cells, colours, stack top and columns, without allocating
+    public void copyFrom(Board other) {
+        if (other.width != width || other.height != height)
+            throw new IllegalArgumentException("cannot copy a " + other.width + "x" + other.height + " board into a "
+                    + width + "x" + height + " one");
+        System.arraycopy(other.rows, 0, rows, 0, rows.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.rowHashes, 0, rowHashes, 0, rowHashes.length);
+        System.arraycopy(other.shared, 0, shared, 0, shared.length);
+        hash = other.hash;
+        stackTop = other.stackTop;
+        System.arraycopy(other.columns, 0, columns, 0, columns.length);
+        markDirty(0, 0, width - 1, height - 1);
+    }
+
+    public void reset() {
+        Arrays.fill(rows, 0);
+        Arrays.fill(colors, EMPTY);
+        Arrays.fill(rowHashes, 0);
+        Arrays.fill(shared, emptyRow);
+        hash = 0;
+        stackTop = height;
+        resetColumns();
+        markDirty(0, 0, width - 1, height - 1);
+    }
+
+    //fill rows with an immutable copy of every row, only the rows that changed since the last save are copied
+    public void save(Row[] rows) {
+        for (int y = 0; y < height; y++) {
+            Row row = shared[y];
+            if (row == null) {
+                row = new Row(Arrays.copyOfRange(this.rows, y * words, (y + 1) * words),
+                        Arrays.copyOfRange(colors, y * width, (y + 1) * width), rowHashes[y]);
+                shared[y] = row;
+            }
+            rows[y] = row;
+        }
+    }
+
+    /*put back rows saved from a board of the same size, with the stack top it had; rows that are already these are
+    * skipped. the columns are counted again with every filled cell as locked, see recountColumns()
+    */
+    public void restore(Row[] saved, int stackTop) {
+        if (saved.length != height)
+            throw new IllegalArgumentException("cannot restore " + saved.length + " rows into a board of " + height);
+        long hash = 0;
+        for (int y = 0; y < height; y++) {
+            Row row = saved[y];
+            if (shared[y] != row) {
+                if (row.colors.length != width)
+                    throw new IllegalArgumentException("cannot restore a row of " + row.colors.length + " columns into "
+                            + width);
+                System.arraycopy(row.words, 0, rows, y * words, words);
+                System.arraycopy(row.colors, 0, colors, y * width, width);
+                rowHashes[y] = row.hash;
+                shared[y] = row;
+                markDirty(0, y, width - 1, y);
+            }
+            hash ^= rowKey(y, row.hash);
+        }
+        this.hash = hash;
+        this.stackTop = stackTop;
+        recountColumns();
+    }
+
+    //an immutable row for a board of colors.length columns, such as one read back from a file
+    public static Row row(byte[] colors) {
+        int words = (colors.length + 63) >>> 6;
+        long[] mask = new long[words];
+        long hash = 0;
+        for (int x = 0; x < colors.length; x++) {
+            if (colors[x] != EMPTY) {
+                mask[x >>> 6] |= 1L << x;
+                hash ^= columnKey(x);
+            }
+        }
+        return new Row(mask, colors.clone(), hash);
+    }
+
+    /*
+     * One board row frozen at some point: its occupancy words, cell colours and hash.
+     * Shared between the board and any number of snapshots, so it is never written.
+     */
+    public static final class Row {
+
+        private final long[] words;
+        private final byte[] colors;
+        private final long hash;
+
+        private Row(long[] words, byte[] colors, long hash) {
+            this.words = words;
+            this.colors = colors;
+            this.hash = hash;
+        }
+
+        public byte getColor(int x) {
+            return colors[x];
+        }
+
+        public int getWidth() {
+            return colors.length;
+        }
+
+        //true when no cell of the row is filled
+        public boolean isEmpty() {
+            for (long word : words) {
+                if (word != 0)
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private void markDirty(int left, int top, int right, int bottom) {
+        if (dirtyLeft > dirtyRight) {
+            dirtyLeft = left;
+            dirtyTop = top;
+            dirtyRight = right;
+            dirtyBottom = bottom;
+            return;
+        }
+        if (left < dirtyLeft)
+            dirtyLeft = left;
+        if (top < dirtyTop)
+            dirtyTop = top;
+        if (right > dirtyRight)
+            dirtyRight = right;
+        if (bottom > dirtyBottom)
+            dirtyBottom = bottom;
+    }
+
+    //true when cells changed since the last clearDirty(), renderers only redraw the dirty box
+    public boolean isDirty() {
+        return dirtyLeft <= dirtyRight;
+    }
+
+    public int getDirtyLeft() {
+        return dirtyLeft;
+    }
+
+    public int getDirtyTop() {
+        return dirtyTop;
+    }
+
+    public int getDirtyRight() {
+        return dirtyRight;
+    }
+
+    public int getDirtyBottom() {
+        return dirtyBottom;
+    }
+
+    public void clearDirty() {
+        dirtyLeft = 1;
+        dirtyRight = 0;
+    }
+}
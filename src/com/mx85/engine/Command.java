@@ -0,0 +1,49 @@
+package com.mx85.engine;
+
+/*
+ * Player commands encoded as plain ints so they can be queued, recorded and replayed
+ * without allocating and without AWT. A command is a type, optionally with the RELEASE
+ * bit set when the key (or a bot's virtual key) is let go; held LEFT, RIGHT and SOFT_DROP
+ * keep acting until they are released.
+ */
+public final class Command {
+
+    public static final int NONE = 0;
+    public static final int LEFT = 1;
+    public static final int RIGHT = 2;
+    public static final int ROTATE = 3;
+    public static final int SOFT_DROP = 4;
+    public static final int PAUSE = 5;
+    public static final int HARD_DROP = 6;
+
+    public static final int TYPES = 7;
+    public static final int RELEASE = 0x80;
+
+    private static final String[] NAMES = {"NONE", "LEFT", "RIGHT", "ROTATE", "SOFT_DROP", "PAUSE", "HARD_DROP"};
+
+    private Command() {
+    }
+
+    public static int release(int command) {
+        return command | RELEASE;
+    }
+
+    public static boolean isRelease(int command) {
+        return (command & RELEASE) != 0;
+    }
+
+    public static int type(int command) {
+        return command & ~RELEASE;
+    }
+
+    public static boolean isValid(int command) {
+        int type = type(command);
+        return type > NONE && type < TYPES && (command & ~(RELEASE | 0x7f)) == 0;
+    }
+
+    public static String toString(int command) {
+        if (!isValid(command))
+            return "INVALID(" + command + ")";
+        return isRelease(command) ? NAMES[type(command)] + " released" : NAMES[type(command)];
+    }
+}
@@ -0,0 +1,85 @@
+package com.mx85.engine;
+
+import com.mx85.metrics.Histogram;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The fixed-timestep schedule of a tick thread, shared by Simulation and the shards of a
+ * GameServer. Ticks are due every tickNanos on a System.nanoTime schedule; ticks that
+ * were missed because the thread ran late are caught up, up to MAX_CATCH_UP at once
+ * (proportionally more when ticks are shorter than TICK_NANOS), and a thread further
+ * behind than that skips the backlog and counts it as dropped.
+ *
+ * How late every tick started and how long it took go into the histograms it was given.
+ * Only the tick thread may call anything but the getters.
+ */
+public final class FixedTimestep {
+
+    public static final int MAX_CATCH_UP = 5;
+
+    //one tick of the owner, returns whether more ticks may follow right away (false when it went idle)
+    public interface Step {
+        boolean tick();
+    }
+
+    private final Histogram lateness;
+    private final Histogram duration;
+    private long nextTick = System.nanoTime();
+    private volatile long droppedTicks; //written by the tick thread only, like busyNanos
+    private volatile long busyNanos;
+
+    public FixedTimestep(Histogram lateness, Histogram duration) {
+        this.lateness = lateness;
+        this.duration = duration;
+    }
+
+    //make the next tick due now, when the thread starts or comes back from idling
+    public void restart() {
+        nextTick = System.nanoTime();
+    }
+
+    //park until the next tick is due or the thread is woken, returns false without parking when it is due already
+    public boolean park(Object blocker) {
+        long wait = nextTick - System.nanoTime();
+        if (wait <= 0)
+            return false;
+        LockSupport.parkNanos(blocker, wait);
+        return true;
+    }
+
+    //run the ticks that are due, catching up on missed ones, and skip the backlog when too far behind; returns the ticks run
+    public int runDue(Step step, long tickNanos) {
+        int maxCatchUp = (int) Math.max(MAX_CATCH_UP, MAX_CATCH_UP * Simulation.TICK_NANOS / tickNanos);
+        int caughtUp = 0;
+        boolean going = true;
+        long now = System.nanoTime();
+        while (going && now >= nextTick && caughtUp < maxCatchUp) {
+            lateness.record(now - nextTick);
+            long start = System.nanoTime();
+            going = step.tick();
+            long end = System.nanoTime();
+            duration.record(end - start);
+            busyNanos += end - start;
+            nextTick += tickNanos;
+            caughtUp++;
+            now = end;
+        }
+        if (going && now >= nextTick) {
+            //too far behind to catch up, skip the backlog rather than spiralling
+            droppedTicks += (now - nextTick) / tickNanos + 1;
+            nextTick = now + tickNanos;
+        }
+        return caughtUp;
+    }
+
+    //ticks skipped because the thread fell too far behind
+    public long getDroppedTicks() {
+        return droppedTicks;
+    }
+
+    //time spent in ticks
+    public long getBusyNanos() {
+        return busyNanos;
+    }
+}
@@ -0,0 +1,446 @@
+package com.mx85.engine;
+
+import com.mx85.metrics.GameEvents;
+
+import java.util.Arrays;
+
+/*
+ * Headless game rules: the board, the falling and next shapes and the score. This
+ * is what GameLooper used to do against the JButton grid; the Swing frame now drives
+ * one of these and mirrors it, and anything without a screen (stress runs, servers,
+ * bots) can step it directly on any thread.
+ */
+public class Game {
+
+    public static final int POINTS_PER_LINE = 10;
+    public static final int LINES_PER_LEVEL = 10;
+    public static final int DEFAULT_PREVIEW = 3;
+    public static final int MIN_WIDTH = 4; //the long piece lies flat at its widest
+    public static final int MIN_HEIGHT = PieceFactory.SPAWN_TOP + PieceTable.CELLS; //room for a long piece standing at the spawn row
+
+    private final Board board;
+    private final GravityCurve gravity;
+    private final AutoRepeat autoRepeat;
+    private final PieceQueue queue;
+    private final Shape currentShape; //respawned in place for every new piece
+
+    private int score;
+    private int lines;
+    private int pieces;
+    private int lastLinesCleared;
+    private final int[] clears = new int[PieceTable.CELLS + 1]; //locks by number of rows they cleared, a piece spans at most four rows
+    private final int[] pieceTypes = new int[Shape.PIECE.values().length]; //pieces dealt by type, including the falling one
+    private boolean gameOver;
+
+    private long ticks;
+    private int gravityTicks; //ticks since the falling piece last dropped a row
+    private boolean softDrop;
+
+    private int held;        //bit per Command type that is currently pressed
+    private int shift;       //LEFT or RIGHT while one of them is held, the most recently pressed wins
+    private int shiftTicks;  //ticks the shift key has been held, drives DAS and ARR
+
+    private int garbage;     //rows an opponent sent, pushed under the stack when the falling piece locks
+    private int garbageHole; //column left open in them
+
+    private int ghostY;          //row of the rotation box where the falling piece would land, see getGhostY()
+    private boolean ghostStale = true;
+
+    //a game with uniformly random pieces from a fresh seed
+    public Game(int width, int height) {
+        this(width, height, new PieceGenerators.Uniform(PieceGenerators.randomSeed()));
+    }
+
+    public Game(int width, int height, PieceGenerator generator) {
+        this(width, height, GravityCurve.classic(), AutoRepeat.defaults(), generator, DEFAULT_PREVIEW);
+    }
+
+    //preview is how many upcoming pieces are known in advance, at least one
+    public Game(int width, int height, GravityCurve gravity, AutoRepeat autoRepeat, PieceGenerator generator, int preview) {
+        if (width < MIN_WIDTH || height < MIN_HEIGHT)
+            throw new IllegalArgumentException("board must be at least " + MIN_WIDTH + "x" + MIN_HEIGHT + ": " + width + "x" + height);
+        this.gravity = gravity;
+        this.autoRepeat = autoRepeat;
+        board = new Board(width, height);
+        queue = new PieceQueue(generator, preview);
+        currentShape = PieceFactory.createRandomPiece(width, queue);
+        pieces = 1;
+        pieceTypes[currentShape.getPieceType().ordinal()]++;
+        gameOver = !currentShape.fits(board); //a game that cannot place its first piece is over before it starts
+    }
+
+    //start over on the same board without allocating, the piece sequence carries on from where it was
+    public void reset() {
+        board.reset();
+        resetCounters();
+        spawn();
+        gameOver = !currentShape.fits(board);
+    }
+
+    //start over on the same board with the piece sequence restarted from a seed
+    public void reset(long seed) {
+        board.reset();
+        queue.reset(seed);
+        resetCounters();
+        spawn();
+        gameOver = !currentShape.fits(board);
+    }
+
+    private void resetCounters() {
+        score = 0;
+        lines = 0;
+        pieces = 1;
+        lastLinesCleared = 0;
+        Arrays.fill(clears, 0);
+        Arrays.fill(pieceTypes, 0);
+        gameOver = false;
+        ticks = 0;
+        gravityTicks = 0;
+        softDrop = false;
+        held = 0;
+        shift = Command.NONE;
+        shiftTicks = 0;
+        garbage = 0;
+        garbageHole = 0;
+        ghostStale = true;
+    }
+
+    /*apply one player command at the current tick. presses of a key that is already held are dropped, which
+    * coalesces the key repeat of the operating system: held keys repeat through DAS and ARR in tick() instead.
+    * PAUSE is not part of the game and is ignored here
+    */
+    public void command(int command) {
+        if (gameOver || !Command.isValid(command))
+            return;
+        int type = Command.type(command);
+        int bit = 1 << type;
+        if (Command.isRelease(command)) {
+            held &= ~bit;
+            if (type == Command.SOFT_DROP)
+                softDrop = false;
+            if (type == shift) {
+                //fall back to the other direction if it is still held
+                int other = type == Command.LEFT ? Command.RIGHT : Command.LEFT;
+                shift = (held & (1 << other)) != 0 ? other : Command.NONE;
+                shiftTicks = 0;
+            }
+            return;
+        }
+        if ((held & bit) != 0)
+            return;
+        held |= bit;
+        switch (type) {
+            case Command.LEFT:
+                shift = Command.LEFT;
+                shiftTicks = 0;
+                move(Shape.DIRECTION.LEFT);
+                break;
+            case Command.RIGHT:
+                shift = Command.RIGHT;
+                shiftTicks = 0;
+                move(Shape.DIRECTION.RIGHT);
+                break;
+            case Command.ROTATE:
+                move(Shape.DIRECTION.ROTATE);
+                break;
+            case Command.SOFT_DROP:
+                softDrop = true;
+                break;
+            case Command.HARD_DROP:
+                hardDrop();
+                break;
+            default:
+                held &= ~bit;
+        }
+    }
+
+    //drop the falling piece straight down and lock it, the landing row comes from the column tops of the board in one step
+    public void hardDrop() {
+        if (gameOver)
+            return;
+        currentShape.drop(board);
+        lock();
+    }
+
+    //advance one fixed timestep: held keys auto-repeat, then the falling piece drops a row whenever the gravity of the current level says so
+    public void tick() {
+        if (gameOver)
+            return;
+        ticks++;
+        if (shift != Command.NONE) {
+            int moves = autoRepeat.movesAt(++shiftTicks);
+            Shape.DIRECTION direction = shift == Command.LEFT ? Shape.DIRECTION.LEFT : Shape.DIRECTION.RIGHT;
+            if (moves < 0) {
+                while (move(direction)) {
+                }
+            } else if (moves > 0) {
+                move(direction);
+            }
+        }
+        int level = getLevel();
+        int rate = softDrop ? gravity.softDropTicksPerRow(level) : gravity.ticksPerRow(level);
+        if (++gravityTicks >= rate) {
+            gravityTicks = 0;
+            move(Shape.DIRECTION.DOWN);
+        }
+    }
+
+    /*moves the falling shape, returns false when it could not move
+    * a shape that cannot move down locks: the rows it covers are checked and the next shape starts to fall
+    */
+    public boolean move(Shape.DIRECTION direction) {
+        if (gameOver)
+            return false;
+        boolean moved = currentShape.move(direction, board);
+        if (!moved && direction == Shape.DIRECTION.DOWN)
+            lock();
+        else if (moved && direction != Shape.DIRECTION.DOWN)
+            ghostStale = true; //falling further does not change where the piece lands
+        return moved;
+    }
+
+    private void lock() {
+        GameEvents.Lock event = new GameEvents.Lock();
+        if (event.isEnabled()) {
+            event.piece = currentShape.getPieceType().name();
+            event.rotation = currentShape.getRotation();
+            event.x = currentShape.getX();
+            event.y = currentShape.getY();
+            event.stackHeight = board.getHeight() - board.getStackTop();
+            event.commit();
+        }
+        gravityTicks = 0;
+        lastLinesCleared = checkRows();
+        clears[lastLinesCleared]++;
+        boolean toppedOut = garbage > 0 && !board.raise(garbage, garbageHole, Board.GARBAGE);
+        garbage = 0;
+        ghostStale = true;
+        spawn();
+        pieces++;
+        gameOver = toppedOut || !currentShape.fits(board);
+    }
+
+    /*queue rows of garbage from an opponent, full but for the hole column. they are pushed under the stack when the
+    * falling piece locks, all of them with the hole of the latest attack
+    */
+    public void addGarbage(int rows, int hole) {
+        if (gameOver || rows <= 0)
+            return;
+        if (hole < 0 || hole >= board.getWidth())
+            throw new IllegalArgumentException("hole outside the board: " + hole);
+        garbage += rows;
+        garbageHole = hole;
+    }
+
+    //rows of garbage waiting for the next lock
+    public int getGarbage() {
+        return garbage;
+    }
+
+    //the locked shape object is respawned as the next piece from the queue, so spawning allocates nothing
+    private void spawn() {
+        Shape.PIECE type = queue.next();
+        GameEvents.Spawn event = new GameEvents.Spawn();
+        event.begin();
+        PieceFactory.respawn(currentShape, type, board.getWidth());
+        pieceTypes[type.ordinal()]++;
+        if (event.shouldCommit()) {
+            event.piece = type.name();
+            event.pieces = pieces;
+            event.commit();
+        }
+    }
+
+    /*a shape can only complete the rows it covers, so only those rows are tested and cleared in one pass. a shape that
+    * locks before its first move was never drawn and leaves no cells, so its rows are read from the board instead
+    */
+    private int checkRows() {
+        GameEvents.LineClear event = new GameEvents.LineClear();
+        event.begin();
+        int cleared = currentShape.isDrawn(board)
+                ? currentShape.lock(board)
+                : board.clearFullRows(currentShape.getTop(), currentShape.getBottom());
+        if (cleared > 0) {
+            lines += cleared;
+            score += POINTS_PER_LINE * cleared;
+            if (event.shouldCommit()) {
+                event.rows = cleared;
+                event.lines = lines;
+                event.commit();
+            }
+        }
+        return cleared;
+    }
+
+    //everything needed to play on from this instant, see GameState
+    public GameState save() {
+        GameState state = new GameState();
+        state.width = board.getWidth();
+        state.height = board.getHeight();
+        state.rows = new Board.Row[state.height];
+        board.save(state.rows);
+        state.stackTop = board.getStackTop();
+        state.piece = currentShape.getPieceType();
+        state.rotation = currentShape.getRotation();
+        state.x = currentShape.getX();
+        state.y = currentShape.getY();
+        state.preview = new Shape.PIECE[queue.size()];
+        queue.save(state.preview);
+        state.generator = queue.getGenerator().getName();
+        state.generatorState = queue.getGenerator().save();
+        state.score = score;
+        state.lines = lines;
+        state.pieces = pieces;
+        state.lastLinesCleared = lastLinesCleared;
+        state.clears = clears.clone();
+        state.pieceTypes = pieceTypes.clone();
+        state.gameOver = gameOver;
+        state.ticks = ticks;
+        state.gravityTicks = gravityTicks;
+        state.softDrop = softDrop;
+        state.held = held;
+        state.shift = shift;
+        state.shiftTicks = shiftTicks;
+        state.garbage = garbage;
+        state.garbageHole = garbageHole;
+        return state;
+    }
+
+    //go back to a state saved from a game with the same board size, preview length and kind of generator
+    public void restore(GameState state) {
+        PieceGenerator generator = queue.getGenerator();
+        if (state.width != board.getWidth() || state.height != board.getHeight())
+            throw new IllegalArgumentException("cannot restore a " + state.width + "x" + state.height
+                    + " game on a " + board.getWidth() + "x" + board.getHeight() + " board");
+        if (state.preview.length != queue.size())
+            throw new IllegalArgumentException("cannot restore a preview of " + state.preview.length
+                    + " pieces into one of " + queue.size());
+        if (!state.generator.equals(generator.getName()) || state.generatorState.length != generator.save().length)
+            throw new IllegalArgumentException("cannot restore a " + state.generator + " generator into a "
+                    + generator.getName() + " one");
+        PieceTable table = PieceTable.of(state.piece);
+        int r = state.rotation;
+        if (state.garbage > 0 && (state.garbageHole < 0 || state.garbageHole >= state.width))
+            throw new IllegalArgumentException("the saved garbage hole is off the board: " + state.garbageHole);
+        if (state.x + table.minX(r) < 0 || state.x + table.maxX(r) >= state.width
+                || state.y + table.minY(r) < 0 || state.y + table.maxY(r) >= state.height)
+            throw new IllegalArgumentException("the saved piece is off the board at " + state.x + "," + state.y);
+        board.restore(state.rows, state.stackTop);
+        queue.restore(state.preview);
+        generator.restore(state.generatorState);
+        currentShape.place(state.piece, state.rotation, state.x, state.y);
+        if (!state.gameOver && currentShape.isDrawn(board)) {
+            //the saved rows hold the falling piece, which must not count as locked in the columns
+            currentShape.erase(board);
+            board.recountColumns();
+            currentShape.draw(board);
+        }
+        ghostStale = true;
+        score = state.score;
+        lines = state.lines;
+        pieces = state.pieces;
+        lastLinesCleared = state.lastLinesCleared;
+        System.arraycopy(state.clears, 0, clears, 0, clears.length);
+        System.arraycopy(state.pieceTypes, 0, pieceTypes, 0, pieceTypes.length);
+        gameOver = state.gameOver;
+        ticks = state.ticks;
+        gravityTicks = state.gravityTicks;
+        softDrop = state.softDrop;
+        held = state.held;
+        shift = state.shift;
+        shiftTicks = state.shiftTicks;
+        garbage = state.garbage;
+        garbageHole = state.garbageHole;
+    }
+
+    public Board getBoard() {
+        return board;
+    }
+
+    public Shape getCurrentShape() {
+        return currentShape;
+    }
+
+    /*row of the rotation box where the falling piece would land if it was dropped now, for the ghost piece. it is only
+    * computed again after the piece moved sideways or rotated, or a new one spawned
+    */
+    public int getGhostY() {
+        if (ghostStale) {
+            ghostY = currentShape.dropRow(board);
+            ghostStale = false;
+        }
+        return ghostY;
+    }
+
+    //the piece that falls after the current one
+    public Shape.PIECE getNextPiece() {
+        return queue.peek(0);
+    }
+
+    //the upcoming pieces, 0 being the next one and getPreviewCount() - 1 the last one known
+    public Shape.PIECE getPreviewPiece(int i) {
+        return queue.peek(i);
+    }
+
+    public int getPreviewCount() {
+        return queue.size();
+    }
+
+    public AutoRepeat getAutoRepeat() {
+        return autoRepeat;
+    }
+
+    public PieceGenerator getGenerator() {
+        return queue.getGenerator();
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    //number of pieces that have entered the board, including the falling one
+    public int getPieces() {
+        return pieces;
+    }
+
+    //rows cleared by the most recent lock
+    public int getLastLinesCleared() {
+        return lastLinesCleared;
+    }
+
+    //number of locks that cleared exactly the given number of rows, 0 to 4
+    public int getClears(int rows) {
+        return clears[rows];
+    }
+
+    //number of pieces of a type dealt so far, including the falling one
+    public int getPieceCount(Shape.PIECE type) {
+        return pieceTypes[type.ordinal()];
+    }
+
+    //most rows cleared by a single lock so far
+    public int getBestClear() {
+        for (int rows = clears.length - 1; rows > 0; rows--) {
+            if (clears[rows] > 0)
+                return rows;
+        }
+        return 0;
+    }
+
+    public int getLevel() {
+        return lines / LINES_PER_LEVEL;
+    }
+
+    //number of fixed timesteps played
+    public long getTicks() {
+        return ticks;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+}
@@ -0,0 +1,169 @@
+package com.mx85.engine;
+
+/*
+ * A copy of everything a renderer needs from one game state. Snapshots are recycled
+ * by SnapshotBuffer: the simulation thread only writes one while it is unpublished
+ * and a reader only sees it after the handoff, so readers treat it as immutable.
+ *
+ * Every row carries the sequence number of the snapshot in which it last changed,
+ * so a reader that last showed sequence n only has to look at rows newer than n.
+ *
+ * The ghost is where the falling piece would land: its type, rotation and the column
+ * and row of its rotation box, which a renderer outlines in the free cells it covers.
+ */
+public final class GameSnapshot {
+
+    private final int width;
+    private final int height;
+    private final byte[] colors;
+    private final long[] rowVersions;
+    private final Shape.PIECE[] preview;
+
+    private long sequence;
+    private int score;
+    private int lines;
+    private int pieces;
+    private int level;
+    private long ticks;
+    private long inputNanos;
+    private boolean gameOver;
+    private Shape.PIECE ghostPiece; //null when there is no ghost to show
+    private int ghostRotation;
+    private int ghostX;
+    private int ghostY;
+
+    GameSnapshot(int width, int height, int previewCount) {
+        this.width = width;
+        this.height = height;
+        this.colors = new byte[width * height];
+        this.rowVersions = new long[height];
+        this.preview = new Shape.PIECE[previewCount];
+    }
+
+    //copy the rows that changed since this snapshot was last written, and the scalar state
+    void copyFrom(Game game, long[] masterVersions, long sequence, long inputNanos) {
+        copyRows(game.getBoard(), masterVersions, sequence, inputNanos);
+        this.score = game.getScore();
+        this.lines = game.getLines();
+        this.pieces = game.getPieces();
+        this.level = game.getLevel();
+        this.ticks = game.getTicks();
+        for (int i = 0; i < preview.length; i++) {
+            preview[i] = game.getPreviewPiece(i);
+        }
+        this.gameOver = game.isGameOver();
+        Shape shape = game.getCurrentShape();
+        this.ghostPiece = gameOver ? null : shape.getPieceType();
+        this.ghostRotation = shape.getRotation();
+        this.ghostX = shape.getX();
+        this.ghostY = gameOver ? 0 : game.getGhostY();
+    }
+
+    //the same for a board mirrored from elsewhere, with the scalar state given instead of read from a game
+    void copyFrom(Board board, long[] masterVersions, long sequence, int score, int lines, int pieces, long ticks,
+                  Shape.PIECE[] preview, boolean gameOver) {
+        copyRows(board, masterVersions, sequence, 0);
+        this.score = score;
+        this.lines = lines;
+        this.pieces = pieces;
+        this.level = 0;
+        this.ticks = ticks;
+        System.arraycopy(preview, 0, this.preview, 0, this.preview.length);
+        this.gameOver = gameOver;
+        this.ghostPiece = null;
+    }
+
+    private void copyRows(Board board, long[] masterVersions, long sequence, long inputNanos) {
+        for (int y = 0; y < height; y++) {
+            if (masterVersions[y] > this.sequence) {
+                for (int x = 0; x < width; x++) {
+                    colors[y * width + x] = board.getColor(x, y);
+                }
+                rowVersions[y] = masterVersions[y];
+            }
+        }
+        this.sequence = sequence;
+        this.inputNanos = inputNanos;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public byte getColor(int x, int y) {
+        return colors[y * width + x];
+    }
+
+    //sequence number of the snapshot in which row y last changed
+    public long getRowVersion(int y) {
+        return rowVersions[y];
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getPieces() {
+        return pieces;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    //System.nanoTime() at which the oldest input applied in this snapshot was received, 0 when none was
+    public long getInputNanos() {
+        return inputNanos;
+    }
+
+    public Shape.PIECE getNextPiece() {
+        return preview[0];
+    }
+
+    //the upcoming pieces, 0 being the next one
+    public Shape.PIECE getPreviewPiece(int i) {
+        return preview[i];
+    }
+
+    public int getPreviewCount() {
+        return preview.length;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    //type of the falling piece for its ghost, null when there is none
+    public Shape.PIECE getGhostPiece() {
+        return ghostPiece;
+    }
+
+    public int getGhostRotation() {
+        return ghostRotation;
+    }
+
+    public int getGhostX() {
+        return ghostX;
+    }
+
+    //row of the rotation box of the ghost, where the falling piece would land
+    public int getGhostY() {
+        return ghostY;
+    }
+}
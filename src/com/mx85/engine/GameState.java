@@ -0,0 +1,293 @@
+package com.mx85.engine;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Everything a Game is at one instant, taken with Game.save() and put back with
+ * Game.restore(): the board, the falling piece, the preview queue, the state of the
+ * piece generator, the score and counters, and the keys held with their repeat timers.
+ * A game restored from a state plays on exactly as it would have from there.
+ *
+ * Taking one costs O(rows) plus the rows that changed since the board was last saved:
+ * the board hands out the immutable Board.Rows it shares between states, so thousands
+ * of states held by a search or an undo history mostly point at the same rows. A state
+ * is never changed once Game.save() returns it.
+ *
+ * write() encodes a state compactly (all numbers varints unless noted):
+ *
+ *   size       width, height
+ *   generator  byte name length, name in ASCII, byte count, that many longs of state
+ *   preview    byte count, one byte per piece ordinal
+ *   piece      byte ordinal, byte rotation, zigzag x, zigzag y of the rotation box
+ *   counters   score, lines, pieces, last lines cleared, byte count and that many clear
+ *              counts, byte count and that many piece type counts
+ *   input      ticks, gravity ticks, held keys, shift, shift ticks, byte flags
+ *              (1 game over, 2 soft drop)
+ *   garbage    rows waiting, hole column (since version 2)
+ *   board      stack top, first row with a filled cell, then every row from there down
+ *              as colour indexes, two cells per byte, low nibble first
+ */
+public final class GameState {
+
+    public static final int VERSION = 2; //of the encoding, version 1 had no garbage
+
+    private static final Shape.PIECE[] PIECES = Shape.PIECE.values();
+    private static final int GAME_OVER = 1;
+    private static final int SOFT_DROP = 2;
+
+    //filled in by Game.save() and read()
+    int width;
+    int height;
+    Board.Row[] rows;
+    int stackTop;
+    Shape.PIECE piece;
+    int rotation;
+    int x;
+    int y;
+    Shape.PIECE[] preview;
+    String generator;
+    long[] generatorState;
+    int score;
+    int lines;
+    int pieces;
+    int lastLinesCleared;
+    int[] clears;
+    int[] pieceTypes;
+    boolean gameOver;
+    long ticks;
+    int gravityTicks;
+    boolean softDrop;
+    int held;
+    int shift;
+    int shiftTicks;
+    int garbage;
+    int garbageHole;
+
+    GameState() {
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getGenerator() {
+        return generator;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getPieces() {
+        return pieces;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    //most bytes write() can take for this state
+    public int maxEncodedBytes() {
+        return 276 + generator.length() + 10 * generatorState.length + preview.length
+                + 5 * (clears.length + pieceTypes.length) + height * ((width + 1) / 2);
+    }
+
+    public void write(ByteBuffer out) {
+        putVarLong(out, width);
+        putVarLong(out, height);
+        byte[] name = generator.getBytes(StandardCharsets.US_ASCII);
+        out.put((byte) name.length);
+        out.put(name);
+        out.put((byte) generatorState.length);
+        for (long value : generatorState) {
+            out.putLong(value);
+        }
+        out.put((byte) preview.length);
+        for (Shape.PIECE next : preview) {
+            out.put((byte) next.ordinal());
+        }
+        out.put((byte) piece.ordinal());
+        out.put((byte) rotation);
+        putVarLong(out, zigzag(x));
+        putVarLong(out, zigzag(y));
+        putVarLong(out, score);
+        putVarLong(out, lines);
+        putVarLong(out, pieces);
+        putVarLong(out, lastLinesCleared);
+        putCounts(out, clears);
+        putCounts(out, pieceTypes);
+        putVarLong(out, ticks);
+        putVarLong(out, gravityTicks);
+        putVarLong(out, held);
+        putVarLong(out, shift);
+        putVarLong(out, shiftTicks);
+        out.put((byte) ((gameOver ? GAME_OVER : 0) | (softDrop ? SOFT_DROP : 0)));
+        putVarLong(out, garbage);
+        putVarLong(out, garbageHole);
+        putVarLong(out, stackTop);
+        //rows above the stack can still hold the falling piece, so look for the first filled row from the top
+        int first = 0;
+        while (first < height && rows[first].isEmpty()) {
+            first++;
+        }
+        putVarLong(out, first);
+        for (int row = first; row < height; row++) {
+            for (int column = 0; column < width; column += 2) {
+                int low = rows[row].getColor(column);
+                int high = column + 1 < width ? rows[row].getColor(column + 1) : 0;
+                out.put((byte) (low | high << 4));
+            }
+        }
+    }
+
+    //a state written by write(), from in's position; a damaged encoding is an IOException rather than a broken game
+    public static GameState read(ByteBuffer in) throws IOException {
+        return read(in, VERSION);
+    }
+
+    //a state written by write() of an older version of the encoding
+    public static GameState read(ByteBuffer in, int version) throws IOException {
+        if (version < 1 || version > VERSION)
+            throw new IOException("unsupported game state version " + version);
+        try {
+            GameState state = new GameState();
+            state.width = readSize(in, "width");
+            state.height = readSize(in, "height");
+            if ((long) state.width * state.height > Integer.MAX_VALUE)
+                throw new IOException("board too large: " + state.width + "x" + state.height);
+            byte[] name = new byte[in.get() & 0xff];
+            in.get(name);
+            state.generator = new String(name, StandardCharsets.US_ASCII);
+            state.generatorState = new long[in.get() & 0xff];
+            for (int i = 0; i < state.generatorState.length; i++) {
+                state.generatorState[i] = in.getLong();
+            }
+            state.preview = new Shape.PIECE[in.get() & 0xff];
+            for (int i = 0; i < state.preview.length; i++) {
+                state.preview[i] = readPiece(in);
+            }
+            state.piece = readPiece(in);
+            state.rotation = in.get() & (PieceTable.ROTATIONS - 1);
+            state.x = unzigzag(getVarLong(in));
+            state.y = unzigzag(getVarLong(in));
+            state.score = (int) getVarLong(in);
+            state.lines = (int) getVarLong(in);
+            state.pieces = (int) getVarLong(in);
+            state.lastLinesCleared = (int) getVarLong(in);
+            state.clears = readCounts(in, PieceTable.CELLS + 1);
+            state.pieceTypes = readCounts(in, PIECES.length);
+            state.ticks = getVarLong(in);
+            state.gravityTicks = (int) getVarLong(in);
+            state.held = (int) getVarLong(in);
+            state.shift = (int) getVarLong(in);
+            state.shiftTicks = (int) getVarLong(in);
+            int flags = in.get();
+            state.gameOver = (flags & GAME_OVER) != 0;
+            state.softDrop = (flags & SOFT_DROP) != 0;
+            if (version >= 2) {
+                state.garbage = (int) getVarLong(in);
+                state.garbageHole = (int) getVarLong(in);
+            }
+            state.stackTop = (int) getVarLong(in);
+            int first = (int) getVarLong(in);
+            if (state.stackTop < 0 || state.stackTop > state.height || first < 0 || first > state.height)
+                throw new IOException("rows out of range: stack top " + state.stackTop + ", first row " + first);
+            if (state.lastLinesCleared < 0 || state.lastLinesCleared >= state.clears.length)
+                throw new IOException("bad lines cleared: " + state.lastLinesCleared);
+            state.rows = new Board.Row[state.height];
+            byte[] colors = new byte[state.width];
+            for (int row = 0; row < state.height; row++) {
+                for (int column = 0; row >= first && column < state.width; column += 2) {
+                    int cells = in.get();
+                    colors[column] = readColor(cells & 0xf);
+                    if (column + 1 < state.width)
+                        colors[column + 1] = readColor(cells >>> 4 & 0xf);
+                }
+                state.rows[row] = Board.row(colors);
+            }
+            return state;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("saved game is cut off");
+        }
+    }
+
+    private static void putCounts(ByteBuffer out, int[] counts) {
+        out.put((byte) counts.length);
+        for (int count : counts) {
+            putVarLong(out, count);
+        }
+    }
+
+    private static int[] readCounts(ByteBuffer in, int expected) throws IOException {
+        int n = in.get() & 0xff;
+        if (n != expected)
+            throw new IOException("expected " + expected + " counts, found " + n);
+        int[] counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            counts[i] = (int) getVarLong(in);
+        }
+        return counts;
+    }
+
+    private static int readSize(ByteBuffer in, String what) throws IOException {
+        long size = getVarLong(in);
+        if (size < 1 || size > Integer.MAX_VALUE)
+            throw new IOException("bad " + what + ": " + size);
+        return (int) size;
+    }
+
+    private static Shape.PIECE readPiece(ByteBuffer in) throws IOException {
+        int piece = in.get() & 0xff;
+        if (piece >= PIECES.length)
+            throw new IOException("bad piece " + piece);
+        return PIECES[piece];
+    }
+
+    private static byte readColor(int color) throws IOException {
+        if (color > Board.GARBAGE)
+            throw new IOException("bad cell colour " + color);
+        return (byte) color;
+    }
+
+    private static long zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("varint too long");
+    }
+}
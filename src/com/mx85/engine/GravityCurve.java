@@ -0,0 +1,44 @@
+package com.mx85.engine;
+
+/*
+ * How many simulation ticks a piece waits before falling one row, per level. Gravity is
+ * counted in ticks rather than milliseconds so a game steps exactly the same way however
+ * late the ticks actually run.
+ */
+public class GravityCurve {
+
+    private final int[] ticksPerRow;
+    private final int softDropTicks;
+
+    //ticksPerRow[level] for each level, the last entry applies to every level above it
+    public GravityCurve(int[] ticksPerRow, int softDropTicks) {
+        if (ticksPerRow.length == 0 || softDropTicks < 1)
+            throw new IllegalArgumentException("gravity needs at least one level and a positive soft drop");
+        for (int ticks : ticksPerRow) {
+            if (ticks < 1)
+                throw new IllegalArgumentException("ticks per row must be positive: " + ticks);
+        }
+        this.ticksPerRow = ticksPerRow.clone();
+        this.softDropTicks = softDropTicks;
+    }
+
+    /*level 0 falls every 12 ticks (200ms at 60 ticks per second, the old normal speed) and every level
+    * is about 15% faster down to one row per tick; soft drop keeps the old 50ms high speed
+    */
+    public static GravityCurve classic() {
+        int[] ticks = new int[20];
+        for (int level = 0; level < ticks.length; level++) {
+            ticks[level] = Math.max(1, (int) Math.round(12 * Math.pow(0.85, level)));
+        }
+        return new GravityCurve(ticks, 3);
+    }
+
+    public int ticksPerRow(int level) {
+        return ticksPerRow[Math.min(level, ticksPerRow.length - 1)];
+    }
+
+    //soft drop is never slower than normal gravity
+    public int softDropTicksPerRow(int level) {
+        return Math.min(softDropTicks, ticksPerRow(level));
+    }
+}
@@ -0,0 +1,59 @@
+package com.mx85.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded single-producer/single-consumer ring of int-encoded commands. The producer (the
+ * EDT, a bot or a replay reader) offers commands without locking or allocating, and the
+ * simulation thread drains everything queued once per tick. Each index is only ever
+ * written by one side, so plain ordered writes are enough.
+ */
+public class InputRing {
+
+    private final int[] buffer;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); //next slot to read, written by the consumer
+    private final AtomicLong tail = new AtomicLong(); //next slot to write, written by the producer
+    private long headCache; //producer's last view of head, saves reading the consumer's counter on every offer
+
+    //capacity is rounded up to a power of two
+    public InputRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new int[size];
+        mask = size - 1;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    //producer side: false when the ring is full and the command was dropped
+    public boolean offer(int command) {
+        long t = tail.get();
+        if (t - headCache >= buffer.length) {
+            headCache = head.get();
+            if (t - headCache >= buffer.length)
+                return false;
+        }
+        buffer[(int) t & mask] = command;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    //consumer side: move up to out.length queued commands into out and return how many were moved
+    public int drainTo(int[] out) {
+        long h = head.get();
+        int n = (int) Math.min(tail.get() - h, out.length);
+        for (int i = 0; i < n; i++) {
+            out[i] = buffer[(int) (h + i) & mask];
+        }
+        head.lazySet(h + n);
+        return n;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+}
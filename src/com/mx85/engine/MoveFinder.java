@@ -0,0 +1,176 @@
+package com.mx85.engine;
+
+import java.util.Arrays;
+
+/*
+ * Finds how to steer a piece into a placement found by a PlacementEnumerator. Most
+ * placements are reached by turning the piece where it is, shifting it over and
+ * dropping it, which takes a few mask tests to check, so that is tried first. The rest
+ * (tucks and spins under overhangs) get the shortest sequence of Shape.DIRECTION moves,
+ * searched breadth first over (rotation, x, y) states. From every state rotation and
+ * sideways moves are tried before moving down, so among equally short paths the one
+ * that turns and shifts the piece as high up as possible is returned, which is what
+ * a player racing gravity wants.
+ *
+ * The target may be given in any rotation covering the same cells, such as the
+ * canonical rotation a PlacementEnumerator reports. One finder per thread; the visited
+ * states are stamped with a search number instead of being cleared, so a search
+ * allocates nothing. The board must not have the piece drawn on it.
+ */
+public class MoveFinder {
+
+    private static final int R = PieceTable.ROTATIONS;
+    private static final Shape.DIRECTION[] DIRECTIONS = {
+            Shape.DIRECTION.ROTATE, Shape.DIRECTION.LEFT, Shape.DIRECTION.RIGHT, Shape.DIRECTION.DOWN};
+
+    private final int width;
+    private final int height;
+    private final int[] seen;   //search number that last reached each state
+    private final int[] from;   //state each state was first reached from
+    private final byte[] move;  //index into DIRECTIONS of the move that reached each state
+    private final int[] queue;
+    private int search;
+
+    private Shape.DIRECTION[] path = new Shape.DIRECTION[64];
+    private int length;
+
+    public MoveFinder(int width, int height) {
+        this.width = width;
+        this.height = height;
+        //the rotation box can hang up to three columns over either edge and up to three rows over the top
+        int states = R * (height + 3) * (width + 6);
+        seen = new int[states];
+        from = new int[states];
+        move = new byte[states];
+        queue = new int[states];
+    }
+
+    /*search a path for the piece from its rotation box at (x, y) in rotation to the target box position and rotation,
+    * returns the number of moves or -1 when the target cannot be reached; the moves are then read with move(i)
+    */
+    public int find(Board board, Shape.PIECE type, int x, int y, int rotation, int targetX, int targetY, int targetRotation) {
+        if (board.getWidth() != width || board.getHeight() != height)
+            throw new IllegalArgumentException("finder for " + width + "x" + height + " given a "
+                    + board.getWidth() + "x" + board.getHeight() + " board");
+        length = 0;
+        PieceTable table = PieceTable.of(type);
+        if (!board.canPlace(table, rotation, x, y))
+            return -1;
+        //compare in cell space, where rotations covering the same cells coincide
+        int canonical = table.canonical(targetRotation);
+        int left = targetX + table.minX(targetRotation);
+        int top = targetY + table.minY(targetRotation);
+        if (direct(board, table, x, y, rotation, canonical, left, top))
+            return length;
+        if (++search == 0) {
+            Arrays.fill(seen, 0);
+            search = 1;
+        }
+        int start = state(rotation, x, y);
+        seen[start] = search;
+        queue[0] = start;
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int s = queue[head];
+            int r = s % R;
+            int sx = s / R % (width + 6) - 3;
+            int sy = s / R / (width + 6) - 3;
+            if (table.canonical(r) == canonical && sx + table.minX(r) == left && sy + table.minY(r) == top)
+                return trace(start, s);
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int nx = sx, ny = sy, nr = r;
+                switch (DIRECTIONS[d]) {
+                    case ROTATE:
+                        nr = PieceTable.nextRotation(r);
+                        break;
+                    case LEFT:
+                        nx--;
+                        break;
+                    case RIGHT:
+                        nx++;
+                        break;
+                    case DOWN:
+                        ny++;
+                        break;
+                }
+                if (!board.canPlace(table, nr, nx, ny))
+                    continue;
+                int next = state(nr, nx, ny);
+                if (seen[next] == search)
+                    continue;
+                seen[next] = search;
+                from[next] = s;
+                move[next] = (byte) d;
+                queue[tail++] = next;
+            }
+        }
+        return -1;
+    }
+
+    //turn until the cells match the target's, shift to its column and drop, true when that lands on the target
+    private boolean direct(Board board, PieceTable table, int x, int y, int rotation, int canonical, int left, int top) {
+        int n = 0;
+        int r = rotation;
+        for (int turns = 0; table.canonical(r) != canonical; turns++) {
+            int next = PieceTable.nextRotation(r);
+            if (turns == PieceTable.ROTATIONS || !board.canPlace(table, next, x, y))
+                return false;
+            r = next;
+            n = add(n, Shape.DIRECTION.ROTATE);
+        }
+        int targetX = left - table.minX(r);
+        Shape.DIRECTION side = targetX < x ? Shape.DIRECTION.LEFT : Shape.DIRECTION.RIGHT;
+        int step = targetX < x ? -1 : 1;
+        while (x != targetX) {
+            if (!board.canPlace(table, r, x + step, y))
+                return false;
+            x += step;
+            n = add(n, side);
+        }
+        int targetY = top - table.minY(r);
+        while (y < targetY && board.canPlace(table, r, x, y + 1)) {
+            y++;
+            n = add(n, Shape.DIRECTION.DOWN);
+        }
+        if (y != targetY || board.canPlace(table, r, x, y + 1))
+            return false;
+        length = n;
+        return true;
+    }
+
+    private int add(int n, Shape.DIRECTION direction) {
+        if (n == path.length)
+            path = Arrays.copyOf(path, path.length * 2);
+        path[n] = direction;
+        return n + 1;
+    }
+
+    //walk back from the target to the start and store the moves in order
+    private int trace(int start, int target) {
+        int n = 0;
+        for (int s = target; s != start; s = from[s]) {
+            n++;
+        }
+        if (n > path.length)
+            path = new Shape.DIRECTION[Math.max(n, path.length * 2)];
+        length = n;
+        for (int s = target; s != start; s = from[s]) {
+            path[--n] = DIRECTIONS[move[s]];
+        }
+        return length;
+    }
+
+    private int state(int rotation, int x, int y) {
+        return ((y + 3) * (width + 6) + x + 3) * R + rotation;
+    }
+
+    //number of moves found by the last search
+    public int length() {
+        return length;
+    }
+
+    //the i-th move of the path found by the last search
+    public Shape.DIRECTION move(int i) {
+        return path[i];
+    }
+}
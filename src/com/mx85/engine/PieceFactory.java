@@ -0,0 +1,26 @@
+package com.mx85.engine;
+
+public class PieceFactory {
+
+    //new pieces appear in this row, centred on the board
+    public static final int SPAWN_TOP = 1;
+
+    //a new shape at the spawn position for the next piece of the queue, games only call this once and respawn it afterwards
+    public static Shape createRandomPiece(int boardWidth, PieceQueue queue) {
+        Shape piece = new Shape(queue.next());
+        respawn(piece, piece.getPieceType(), boardWidth);
+        return piece;
+    }
+
+    //pieces spawn with their leftmost cell in the middle column, pulled left when the board is too narrow for them
+    public static void respawn(Shape piece, Shape.PIECE type, int boardWidth) {
+        piece.spawn(type, spawnColumn(type, boardWidth), SPAWN_TOP);
+    }
+
+    //column of the leftmost cell of a new piece of the type
+    public static int spawnColumn(Shape.PIECE type, int boardWidth) {
+        PieceTable table = PieceTable.of(type);
+        int pieceWidth = table.maxX(0) - table.minX(0) + 1;
+        return Math.max(0, Math.min(boardWidth / 2, boardWidth - pieceWidth));
+    }
+}
@@ -0,0 +1,28 @@
+package com.mx85.engine;
+
+/*
+ * Source of the piece sequence for one game. Implementations keep their own seeded
+ * SplitMix, so every game draws from private state (no contention between thousands
+ * of headless games) and a seed always reproduces the same sequence. The whole state
+ * can be saved as a few longs and restored, so a saved game deals on as it would have.
+ */
+public interface PieceGenerator {
+
+    //the next piece type in the sequence
+    Shape.PIECE next();
+
+    //restart the sequence from a seed
+    void reset(long seed);
+
+    //seed of the current sequence
+    long getSeed();
+
+    //everything the generator needs to continue the sequence from here, as a few longs
+    long[] save();
+
+    //continue from a state returned by save() of a generator of the same kind
+    void restore(long[] state);
+
+    //short name such as "uniform", "bag" or "history", as accepted by PieceGenerators.create
+    String getName();
+}
@@ -0,0 +1,209 @@
+package com.mx85.engine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * The built-in piece generators and a factory to pick one by name.
+ *
+ *   uniform - every piece independently with equal chance, like the original Math.random() draw
+ *   bag     - every piece type once per bag in shuffled order (the 7-bag idea over our five types)
+ *   history - uniform, but rerolls up to HISTORY_ROLLS times when the piece is among the last HISTORY_SIZE
+ */
+public final class PieceGenerators {
+
+    private static final Shape.PIECE[] PIECES = Shape.PIECE.values();
+
+    private PieceGenerators() {
+    }
+
+    public static PieceGenerator create(String name, long seed) {
+        if (name.equals("uniform"))
+            return new Uniform(seed);
+        if (name.equals("bag"))
+            return new Bag(seed);
+        if (name.equals("history"))
+            return new History(seed);
+        throw new IllegalArgumentException("unknown piece generator: " + name);
+    }
+
+    //a seed for games that do not need to be reproduced, drawn from the calling thread's own generator
+    public static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    //pieces packed three bits each, for saving the small arrays the generators keep; null packs as 7
+    private static long pack(Shape.PIECE[] pieces) {
+        long packed = 0;
+        for (int i = pieces.length - 1; i >= 0; i--) {
+            packed = packed << 3 | (pieces[i] == null ? 7 : pieces[i].ordinal());
+        }
+        return packed;
+    }
+
+    private static void unpack(long packed, Shape.PIECE[] pieces) {
+        for (int i = 0; i < pieces.length; i++) {
+            int piece = (int) (packed & 7);
+            pieces[i] = piece == 7 ? null : PIECES[piece];
+            packed >>>= 3;
+        }
+    }
+
+    //the generators save their seed and random state first, then what they add to it
+    private abstract static class Seeded implements PieceGenerator {
+
+        protected final SplitMix random;
+        private long seed;
+
+        Seeded(long seed) {
+            this.seed = seed;
+            this.random = new SplitMix(seed);
+        }
+
+        @Override
+        public void reset(long seed) {
+            this.seed = seed;
+            random.setState(seed);
+        }
+
+        @Override
+        public long getSeed() {
+            return seed;
+        }
+
+        @Override
+        public long[] save() {
+            return new long[] {seed, random.getState()};
+        }
+
+        @Override
+        public void restore(long[] state) {
+            seed = state[0];
+            random.setState(state[1]);
+        }
+    }
+
+    public static class Uniform extends Seeded {
+
+        public Uniform(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public Shape.PIECE next() {
+            return PIECES[random.nextInt(PIECES.length)];
+        }
+
+        @Override
+        public String getName() {
+            return "uniform";
+        }
+    }
+
+    public static class Bag extends Seeded {
+
+        private final Shape.PIECE[] bag = PIECES.clone();
+        private int index;
+
+        public Bag(long seed) {
+            super(seed);
+            index = bag.length;
+        }
+
+        @Override
+        public void reset(long seed) {
+            super.reset(seed);
+            System.arraycopy(PIECES, 0, bag, 0, bag.length);
+            index = bag.length;
+        }
+
+        //Fisher-Yates shuffle of the bag in place whenever it runs empty
+        @Override
+        public Shape.PIECE next() {
+            if (index == bag.length) {
+                for (int i = bag.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    Shape.PIECE swap = bag[i];
+                    bag[i] = bag[j];
+                    bag[j] = swap;
+                }
+                index = 0;
+            }
+            return bag[index++];
+        }
+
+        @Override
+        public long[] save() {
+            return new long[] {getSeed(), random.getState(), pack(bag), index};
+        }
+
+        @Override
+        public void restore(long[] state) {
+            super.restore(state);
+            unpack(state[2], bag);
+            index = (int) state[3];
+        }
+
+        @Override
+        public String getName() {
+            return "bag";
+        }
+    }
+
+    public static class History extends Seeded {
+
+        public static final int HISTORY_SIZE = 4;
+        public static final int HISTORY_ROLLS = 4;
+
+        private final Shape.PIECE[] history = new Shape.PIECE[HISTORY_SIZE];
+        private int oldest;
+
+        public History(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public void reset(long seed) {
+            super.reset(seed);
+            for (int i = 0; i < HISTORY_SIZE; i++) {
+                history[i] = null;
+            }
+            oldest = 0;
+        }
+
+        @Override
+        public Shape.PIECE next() {
+            Shape.PIECE piece = PIECES[random.nextInt(PIECES.length)];
+            for (int roll = 1; roll < HISTORY_ROLLS && inHistory(piece); roll++) {
+                piece = PIECES[random.nextInt(PIECES.length)];
+            }
+            history[oldest] = piece;
+            oldest = (oldest + 1) % HISTORY_SIZE;
+            return piece;
+        }
+
+        private boolean inHistory(Shape.PIECE piece) {
+            for (int i = 0; i < HISTORY_SIZE; i++) {
+                if (history[i] == piece)
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long[] save() {
+            return new long[] {getSeed(), random.getState(), pack(history), oldest};
+        }
+
+        @Override
+        public void restore(long[] state) {
+            super.restore(state);
+            unpack(state[2], history);
+            oldest = (int) state[3];
+        }
+
+        @Override
+        public String getName() {
+            return "history";
+        }
+    }
+}
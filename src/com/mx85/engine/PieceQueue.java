@@ -0,0 +1,69 @@
+package com.mx85.engine;
+
+/*
+ * The upcoming pieces of a game: a fixed-size ring that is always kept full from a
+ * PieceGenerator, so the next N pieces can be previewed without allocating.
+ */
+public class PieceQueue {
+
+    private final PieceGenerator generator;
+    private final Shape.PIECE[] upcoming;
+    private int head;
+
+    public PieceQueue(PieceGenerator generator, int lookahead) {
+        if (lookahead < 1)
+            throw new IllegalArgumentException("lookahead must be at least 1: " + lookahead);
+        this.generator = generator;
+        this.upcoming = new Shape.PIECE[lookahead];
+        fill();
+    }
+
+    private void fill() {
+        head = 0;
+        for (int i = 0; i < upcoming.length; i++) {
+            upcoming[i] = generator.next();
+        }
+    }
+
+    //restart the generator from a seed and refill the queue
+    public void reset(long seed) {
+        generator.reset(seed);
+        fill();
+    }
+
+    //take the next piece and draw a new one at the far end
+    public Shape.PIECE next() {
+        Shape.PIECE piece = upcoming[head];
+        upcoming[head] = generator.next();
+        head = (head + 1) % upcoming.length;
+        return piece;
+    }
+
+    //the piece that will come out after i more calls to next(), 0 being the very next one
+    public Shape.PIECE peek(int i) {
+        return upcoming[(head + i) % upcoming.length];
+    }
+
+    //the upcoming pieces in the order they will come out
+    public void save(Shape.PIECE[] pieces) {
+        for (int i = 0; i < upcoming.length; i++) {
+            pieces[i] = peek(i);
+        }
+    }
+
+    //put back pieces saved from a queue of the same size, the generator is restored separately
+    public void restore(Shape.PIECE[] pieces) {
+        if (pieces.length != upcoming.length)
+            throw new IllegalArgumentException("cannot restore " + pieces.length + " pieces into a queue of " + upcoming.length);
+        System.arraycopy(pieces, 0, upcoming, 0, upcoming.length);
+        head = 0;
+    }
+
+    public int size() {
+        return upcoming.length;
+    }
+
+    public PieceGenerator getGenerator() {
+        return generator;
+    }
+}
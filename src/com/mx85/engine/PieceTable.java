@@ -0,0 +1,208 @@
+package com.mx85.engine;
+
+import java.util.Arrays;
+
+/*
+ * Immutable rotation tables, one per piece type. Every rotation is stored both as
+ * four cell offsets and as one bitmask per row, relative to the top left corner of
+ * the piece's rotation box. The tables are written out below as pictures and are
+ * checked against rotate() when the class loads, so the rotation math lives in one
+ * place and a typo in a picture fails fast instead of producing a wobbling piece.
+ */
+public final class PieceTable {
+
+    public static final int ROTATIONS = 4;
+    public static final int CELLS = 4;
+
+    private static final PieceTable[] TABLES = new PieceTable[Shape.PIECE.values().length];
+
+    static {
+        define(Shape.PIECE.LPIECE, 3,
+                ".#.", ".#.", ".##",
+                "...", "###", "#..",
+                "##.", ".#.", ".#.",
+                "..#", "###", "...");
+        define(Shape.PIECE.ZPIECE, 3,
+                ".##", "##.", "...",
+                ".#.", ".##", "..#",
+                "...", ".##", "##.",
+                "#..", "##.", ".#.");
+        define(Shape.PIECE.TPIECE, 3,
+                "...", "###", ".#.",
+                ".#.", "##.", ".#.",
+                ".#.", "###", "...",
+                ".#.", ".##", ".#.");
+        define(Shape.PIECE.LONGPIECE, 4,
+                ".#..", ".#..", ".#..", ".#..",
+                "....", "####", "....", "....",
+                "..#.", "..#.", "..#.", "..#.",
+                "....", "....", "####", "....");
+        define(Shape.PIECE.CUBEPIECE, 2,
+                "##", "##",
+                "##", "##",
+                "##", "##",
+                "##", "##");
+    }
+
+    private final Shape.PIECE type;
+    private final int size;
+    private final int[] cellX = new int[ROTATIONS * CELLS];
+    private final int[] cellY = new int[ROTATIONS * CELLS];
+    private final long[] rowMasks;
+    private final int[] minX = new int[ROTATIONS];
+    private final int[] maxX = new int[ROTATIONS];
+    private final int[] minY = new int[ROTATIONS];
+    private final int[] maxY = new int[ROTATIONS];
+    private final int[] tops;     //per rotation and box column: row of the highest cell in that column, size for none
+    private final int[] bottoms;  //per rotation and box column: row of the lowest cell in that column, -1 for none
+    private final int[] canonical = new int[ROTATIONS];
+
+    private PieceTable(Shape.PIECE type, int size, String[] rows) {
+        this.type = type;
+        this.size = size;
+        this.rowMasks = new long[ROTATIONS * size];
+        this.tops = new int[ROTATIONS * size];
+        this.bottoms = new int[ROTATIONS * size];
+        Arrays.fill(tops, size);
+        Arrays.fill(bottoms, -1);
+        for (int r = 0; r < ROTATIONS; r++) {
+            int cell = 0;
+            minX[r] = minY[r] = size;
+            maxX[r] = maxY[r] = -1;
+            for (int y = 0; y < size; y++) {
+                String row = rows[r * size + y];
+                for (int x = 0; x < size; x++) {
+                    if (row.charAt(x) != '#')
+                        continue;
+                    if (cell == CELLS)
+                        throw new IllegalStateException(type + " rotation " + r + " has more than " + CELLS + " cells");
+                    cellX[r * CELLS + cell] = x;
+                    cellY[r * CELLS + cell] = y;
+                    cell++;
+                    rowMasks[r * size + y] |= 1L << x;
+                    tops[r * size + x] = Math.min(tops[r * size + x], y);
+                    bottoms[r * size + x] = Math.max(bottoms[r * size + x], y);
+                    minX[r] = Math.min(minX[r], x);
+                    maxX[r] = Math.max(maxX[r], x);
+                    minY[r] = Math.min(minY[r], y);
+                    maxY[r] = Math.max(maxY[r], y);
+                }
+            }
+            if (cell != CELLS)
+                throw new IllegalStateException(type + " rotation " + r + " has " + cell + " cells");
+        }
+        for (int r = 0; r < ROTATIONS; r++) {
+            canonical[r] = 0;
+            while (!sameCells(canonical[r], r)) {
+                canonical[r]++;
+            }
+        }
+    }
+
+    //whether two rotations cover the same cells up to a translation, such as all four rotations of the cube
+    private boolean sameCells(int a, int b) {
+        if (maxY[a] - minY[a] != maxY[b] - minY[b])
+            return false;
+        for (int row = 0; row <= maxY[a] - minY[a]; row++) {
+            if (rowMask(a, minY[a] + row) >>> minX[a] != rowMask(b, minY[b] + row) >>> minX[b])
+                return false;
+        }
+        return true;
+    }
+
+    private static void define(Shape.PIECE type, int size, String... rows) {
+        PieceTable table = new PieceTable(type, size, rows);
+        table.verify();
+        TABLES[type.ordinal()] = table;
+    }
+
+    public static PieceTable of(Shape.PIECE type) {
+        return TABLES[type.ordinal()];
+    }
+
+    //the one place rotation is defined: a clockwise quarter turn inside a size x size box
+    public static int rotateX(int x, int y, int size) {
+        return size - 1 - y;
+    }
+
+    public static int rotateY(int x, int y, int size) {
+        return x;
+    }
+
+    public static int nextRotation(int rotation) {
+        return (rotation + 1) & (ROTATIONS - 1);
+    }
+
+    //every rotation must be the clockwise turn of the previous one and the masks must match the cells
+    private void verify() {
+        for (int r = 0; r < ROTATIONS; r++) {
+            int next = nextRotation(r);
+            long[] rotated = new long[size];
+            for (int i = 0; i < CELLS; i++) {
+                int x = cellX(r, i);
+                int y = cellY(r, i);
+                rotated[rotateY(x, y, size)] |= 1L << rotateX(x, y, size);
+            }
+            for (int y = 0; y < size; y++) {
+                if (rotated[y] != rowMask(next, y))
+                    throw new IllegalStateException(type + " rotation " + next + " is not rotation " + r + " turned clockwise");
+            }
+        }
+    }
+
+    public Shape.PIECE getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int cellX(int rotation, int cell) {
+        return cellX[rotation * CELLS + cell];
+    }
+
+    public int cellY(int rotation, int cell) {
+        return cellY[rotation * CELLS + cell];
+    }
+
+    //bitmask of the cells in one row of the rotation box, bit x is column x of the box
+    public long rowMask(int rotation, int row) {
+        return rowMasks[rotation * size + row];
+    }
+
+    public int minX(int rotation) {
+        return minX[rotation];
+    }
+
+    public int maxX(int rotation) {
+        return maxX[rotation];
+    }
+
+    public int minY(int rotation) {
+        return minY[rotation];
+    }
+
+    public int maxY(int rotation) {
+        return maxY[rotation];
+    }
+
+    //row of the highest cell in one column of the rotation box, the box size when the column has none
+    public int top(int rotation, int column) {
+        return tops[rotation * size + column];
+    }
+
+    /*row of the lowest cell in one column of the rotation box, -1 when the column has none. the cells of a piece in
+    * one column are always one unbroken run from top() to bottom()
+    */
+    public int bottom(int rotation, int column) {
+        return bottoms[rotation * size + column];
+    }
+
+    /*the lowest rotation covering the same cells as this one up to a translation: 0 for every cube rotation,
+    * 0 and 1 for the long and Z pieces, which look the same upside down
+    */
+    public int canonical(int rotation) {
+        return canonical[rotation];
+    }
+}
@@ -0,0 +1,266 @@
+package com.mx85.engine;
+
+import java.util.Arrays;
+
+/*
+ * Finds every position a piece can lock in from where it is: all states reachable with
+ * the Shape.DIRECTION moves (left, right, clockwise rotation without kicks, down) in
+ * which the piece cannot move down any further. Rotations that cover the same cells,
+ * like the four cube rotations or the two upright long pieces, are reported once, as
+ * the canonical rotation of the PieceTable.
+ *
+ * States are kept in cell space: for rotation r, bit lx of row ty stands for the piece
+ * with its leftmost cell in column lx and its top cell in row ty, so translated
+ * rotations share one fit mask and one locked mask. Boards up to MAX_FLOOD_WIDTH columns
+ * flood whole rows at a time: the states reached in a row are one long per rotation,
+ * grown sideways and across rotations with shifts and then moved down a row, so every
+ * row is visited once. Wider boards fall back to a breadth first search over single
+ * states with a visited bitset.
+ *
+ * One enumerator per thread; it keeps its masks, queue and result buffer between calls,
+ * so an enumeration allocates nothing. The board must not have the piece drawn on it.
+ */
+public class PlacementEnumerator {
+
+    private static final int R = PieceTable.ROTATIONS;
+    private static final int BOX_OFFSET = 3; //how far a rotation box can hang over the left edge, box column x is bit x + 3
+    public static final int MAX_FLOOD_WIDTH = Long.SIZE - BOX_OFFSET;
+
+    private final int width;
+    private final int height;
+    private final Placements placements = new Placements();
+
+    //row flood, boards up to MAX_FLOOD_WIDTH columns
+    private final long[] fit;     //per canonical rotation and row: columns where the leftmost cell can go
+    private final long[] locked;  //per canonical rotation and row: columns where the leftmost cell locks
+    private final long[] reach = new long[R]; //per rotation: box columns reached in the row being swept
+    private final long[] fits = new long[R];  //per rotation: box columns that fit in the row being swept
+    private final boolean[] fitDone = new boolean[R];
+
+    //state search, wider boards
+    private long[] visited;
+    private long[] emitted;
+    private int[] queue;
+
+    public PlacementEnumerator(int width, int height) {
+        this.width = width;
+        this.height = height;
+        if (width <= MAX_FLOOD_WIDTH) {
+            fit = new long[R * height];
+            locked = new long[R * height];
+        } else {
+            fit = locked = null;
+        }
+    }
+
+    //placements of a piece that just spawned on the board, as PieceFactory places it
+    public Placements enumerate(Board board, Shape.PIECE type) {
+        PieceTable table = PieceTable.of(type);
+        return enumerate(board, type, PieceFactory.spawnColumn(type, board.getWidth()) - table.minX(0),
+                PieceFactory.SPAWN_TOP - table.minY(0), 0);
+    }
+
+    //placements of a piece whose rotation box is at (x, y) in the given rotation, empty when it does not fit there
+    public Placements enumerate(Board board, Shape.PIECE type, int x, int y, int rotation) {
+        if (board.getWidth() != width || board.getHeight() != height)
+            throw new IllegalArgumentException("enumerator for " + width + "x" + height + " given a "
+                    + board.getWidth() + "x" + board.getHeight() + " board");
+        placements.clear();
+        PieceTable table = PieceTable.of(type);
+        if (!board.canPlace(table, rotation, x, y))
+            return placements;
+        if (fit != null)
+            flood(board, table, x + table.minX(rotation), y + table.minY(rotation), rotation);
+        else
+            search(board, table, x + table.minX(rotation), y + table.minY(rotation), rotation);
+        return placements;
+    }
+
+    /*one sweep from the start row down. in box space a rotation keeps the row, so all four rotations of a row are
+    * grown sideways and across rotations until they stop changing, and then only move down to the next row
+    */
+    private void flood(Board board, PieceTable table, int startX, int startY, int startRotation) {
+        for (int r = 0; r < R; r++) {
+            fitDone[r] = false;
+        }
+        for (int r = 0; r < R; r++) {
+            int c = table.canonical(r);
+            if (!fitDone[c]) {
+                computeFit(board, table, c);
+                fitDone[c] = true;
+            }
+        }
+        Arrays.fill(locked, 0);
+        for (int r = 0; r < R; r++) {
+            reach[r] = 0;
+            fits[r] = fitAt(table, r, startY - table.minY(startRotation));
+        }
+        reach[startRotation] = 1L << (startX - table.minX(startRotation) + BOX_OFFSET);
+        for (int y = startY - table.minY(startRotation); ; y++) {
+            //bit r set while rotation r has columns that were not spread sideways yet
+            int pending = (1 << R) - 1;
+            while (pending != 0) {
+                int r = Integer.numberOfTrailingZeros(pending);
+                pending &= pending - 1;
+                long row = spread(reach[r], fits[r]);
+                reach[r] = row;
+                int next = PieceTable.nextRotation(r);
+                long rotated = row & fits[next] & ~reach[next];
+                if (rotated != 0) {
+                    reach[next] |= rotated;
+                    pending |= 1 << next;
+                }
+            }
+            long down = 0;
+            for (int r = 0; r < R; r++) {
+                long fitsBelow = fitAt(table, r, y + 1);
+                long row = reach[r];
+                long lock = row & ~fitsBelow;
+                if (lock != 0) {
+                    //into cell space, where translated rotations coincide
+                    int c = table.canonical(r);
+                    locked[c * height + y + table.minY(r)] |= lock >>> (BOX_OFFSET - table.minX(r));
+                }
+                reach[r] = row & fitsBelow;
+                fits[r] = fitsBelow;
+                down |= reach[r];
+            }
+            if (down == 0)
+                break;
+        }
+        for (int c = 0; c < R; c++) {
+            if (table.canonical(c) != c)
+                continue;
+            for (int ty = 0; ty < height; ty++) {
+                long row = locked[c * height + ty];
+                while (row != 0) {
+                    int lx = Long.numberOfTrailingZeros(row);
+                    row &= row - 1;
+                    placements.add(lx - table.minX(c), ty - table.minY(c), c);
+                }
+            }
+        }
+    }
+
+    //box columns (bit x + BOX_OFFSET) where the piece fits in rotation r with its rotation box in row y
+    private long fitAt(PieceTable table, int r, int y) {
+        int ty = y + table.minY(r);
+        if (ty < 0 || ty >= height)
+            return 0;
+        return fit[table.canonical(r) * height + ty] << (BOX_OFFSET - table.minX(r));
+    }
+
+    /*left and right moves: every run of fitting columns that holds a reached column is reached all the way.
+    * adding the seeds to the runs carries each seed to the top of its run, the shift cascade fills downwards
+    */
+    private static long spread(long seeds, long fits) {
+        long up = ((fits + seeds) ^ fits) & fits | seeds;
+        long down = seeds;
+        long open = fits;
+        down |= open & (down >>> 1);
+        open &= open >>> 1;
+        down |= open & (down >>> 2);
+        open &= open >>> 2;
+        down |= open & (down >>> 4);
+        open &= open >>> 4;
+        down |= open & (down >>> 8);
+        open &= open >>> 8;
+        down |= open & (down >>> 16);
+        open &= open >>> 16;
+        down |= open & (down >>> 32);
+        return up | down;
+    }
+
+    //for every row, the columns where the leftmost cell of the piece can go without overlapping anything
+    private void computeFit(Board board, PieceTable table, int r) {
+        int tall = table.maxY(r) - table.minY(r) + 1;
+        int positions = width - (table.maxX(r) - table.minX(r));
+        long columns = positions >= Long.SIZE ? -1L : (1L << positions) - 1;
+        for (int ty = 0; ty < height; ty++) {
+            if (ty + tall > height) {
+                fit[r * height + ty] = 0;
+                continue;
+            }
+            long blocked = 0;
+            for (int k = 0; k < tall; k++) {
+                long piece = table.rowMask(r, table.minY(r) + k) >>> table.minX(r);
+                long occupied = board.getRowWord(ty + k, 0);
+                //a filled cell in column b blocks the piece at every column b - c for a piece cell at c
+                while (piece != 0) {
+                    blocked |= occupied >>> Long.numberOfTrailingZeros(piece);
+                    piece &= piece - 1;
+                }
+            }
+            fit[r * height + ty] = ~blocked & columns;
+        }
+    }
+
+    //breadth first search over single (rotation, lx, ty) states, for boards too wide for one long per row
+    private void search(Board board, PieceTable table, int startX, int startY, int startRotation) {
+        int states = R * height * width;
+        if (visited == null) {
+            visited = new long[(states + 63) >>> 6];
+            emitted = new long[(states + 63) >>> 6];
+            queue = new int[1024];
+        }
+        int tail = 0;
+        queue[tail++] = state(startRotation, startX, startY);
+        mark(visited, queue[0]);
+        for (int head = 0; head < tail; head++) {
+            int s = queue[head];
+            int r = s / (height * width);
+            int ty = s / width % height;
+            int lx = s % width;
+            int x = lx - table.minX(r);
+            int y = ty - table.minY(r);
+            if (!board.canPlace(table, r, x, y + 1)) {
+                //the same cells in the canonical rotation, translated rotations share lx and ty
+                int c = table.canonical(r);
+                int placed = state(c, lx, ty);
+                if (!isMarked(emitted, placed)) {
+                    mark(emitted, placed);
+                    placements.add(lx - table.minX(c), ty - table.minY(c), c);
+                }
+            } else {
+                tail = visit(table, r, x, y + 1, tail, board);
+            }
+            tail = visit(table, r, x - 1, y, tail, board);
+            tail = visit(table, r, x + 1, y, tail, board);
+            tail = visit(table, PieceTable.nextRotation(r), x, y, tail, board);
+        }
+        //clear only the bits this search set, so the next one starts clean without sweeping the whole bitset
+        for (int i = 0; i < tail; i++) {
+            visited[queue[i] >>> 6] = 0;
+        }
+        for (int i = 0; i < placements.size(); i++) {
+            int c = placements.rotation(i);
+            emitted[state(c, placements.x(i) + table.minX(c), placements.y(i) + table.minY(c)) >>> 6] = 0;
+        }
+    }
+
+    //queue the state with its rotation box at (x, y) if the piece fits there and it was not seen yet
+    private int visit(PieceTable table, int r, int x, int y, int tail, Board board) {
+        if (!board.canPlace(table, r, x, y))
+            return tail;
+        int s = state(r, x + table.minX(r), y + table.minY(r));
+        if (isMarked(visited, s))
+            return tail;
+        mark(visited, s);
+        if (tail == queue.length)
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        queue[tail] = s;
+        return tail + 1;
+    }
+
+    private int state(int rotation, int lx, int ty) {
+        return (rotation * height + ty) * width + lx;
+    }
+
+    private static void mark(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static boolean isMarked(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mx85.engine;
+
+import java.util.Arrays;
+
+/*
+ * Reusable result buffer of a PlacementEnumerator: the placements found by the last
+ * enumeration as rotation box positions and rotations, packed into one int array that
+ * only grows, so enumerating again allocates nothing once the buffer is big enough.
+ */
+public final class Placements {
+
+    private static final int FIELDS = 3;
+
+    private int[] data = new int[64 * FIELDS];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(int x, int y, int rotation) {
+        if ((size + 1) * FIELDS > data.length)
+            data = Arrays.copyOf(data, data.length * 2);
+        data[size * FIELDS] = x;
+        data[size * FIELDS + 1] = y;
+        data[size * FIELDS + 2] = rotation;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //column of the rotation box, as Shape.getX()
+    public int x(int i) {
+        return data[i * FIELDS];
+    }
+
+    //row of the rotation box, as Shape.getY()
+    public int y(int i) {
+        return data[i * FIELDS + 1];
+    }
+
+    public int rotation(int i) {
+        return data[i * FIELDS + 2];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Placements{");
+        for (int i = 0; i < size; i++) {
+            text.append(i == 0 ? "" : ", ").append('(').append(x(i)).append(',').append(y(i)).append(" r").append(rotation(i)).append(')');
+        }
+        return text.append('}').toString();
+    }
+}
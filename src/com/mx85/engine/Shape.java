@@ -0,0 +1,164 @@
+package com.mx85.engine;
+
+/*
+ * The active piece. A shape is just its type, rotation and position; the cells come
+ * from the immutable PieceTable of its type, so moving, rotating and respawning a
+ * shape mutate these fields in place and never allocate.
+ */
+public class Shape {
+
+    public enum PIECE {
+        LPIECE,
+        ZPIECE,
+        TPIECE,
+        LONGPIECE,
+        CUBEPIECE,
+    }
+
+    public enum DIRECTION {
+        DOWN,
+        RIGHT,
+        LEFT,
+        ROTATE,
+    }
+
+    protected PIECE type;
+    protected PieceTable table;
+    protected int rotation;
+    protected int x; //column of the left edge of the rotation box
+    protected int y; //row of the top edge of the rotation box
+    protected byte color;
+
+    public Shape(PIECE type) {
+        spawn(type, 0, 0);
+    }
+
+    //reuse this shape as a new piece in its first rotation, with its leftmost cell in column left and its top cell in row top
+    public void spawn(PIECE type, int left, int top) {
+        this.type = type;
+        this.table = PieceTable.of(type);
+        this.rotation = 0;
+        this.x = left - table.minX(0);
+        this.y = top - table.minY(0);
+        this.color = Board.colorIndex(type);
+    }
+
+    //put this shape back where a snapshot saw it, with its rotation box at (x, y); it is not drawn
+    public void place(PIECE type, int rotation, int x, int y) {
+        this.type = type;
+        this.table = PieceTable.of(type);
+        this.rotation = rotation;
+        this.x = x;
+        this.y = y;
+        this.color = Board.colorIndex(type);
+    }
+
+    public void erase(Board board) {
+        for (int i = 0; i < PieceTable.CELLS; i++) {
+            board.clear(x + table.cellX(rotation, i), y + table.cellY(rotation, i));
+        }
+    }
+
+    public void draw(Board board) {
+        for (int i = 0; i < PieceTable.CELLS; i++) {
+            board.fill(x + table.cellX(rotation, i), y + table.cellY(rotation, i), color);
+        }
+    }
+
+    //true when the shape could be drawn where it is now, the shape itself must not be drawn on the board
+    public boolean fits(Board board) {
+        return board.canPlace(table, rotation, x, y);
+    }
+
+    //true when the cells of the shape hold its colour on the board, as they do from its first move on
+    public boolean isDrawn(Board board) {
+        for (int i = 0; i < PieceTable.CELLS; i++) {
+            if (board.getColor(x + table.cellX(rotation, i), y + table.cellY(rotation, i)) != color)
+                return false;
+        }
+        return true;
+    }
+
+    //move the shape straight down to the row it comes to rest on in one step, see Board.dropRow
+    public void drop(Board board) {
+        int row = board.dropRow(table, rotation, x, y);
+        erase(board);
+        y = row;
+        draw(board);
+    }
+
+    //the shape locks where it is drawn: its cells count as locked on the board and the rows it completed are cleared
+    public int lock(Board board) {
+        return board.settle(table, rotation, x, y);
+    }
+
+    //row of the rotation box where the shape would come to rest if it dropped now, the board is not touched
+    public int dropRow(Board board) {
+        return board.dropRow(table, rotation, x, y);
+    }
+
+    public boolean move(DIRECTION direction, Board board) {
+        int nextX = x;
+        int nextY = y;
+        int nextRotation = rotation;
+        switch (direction) {
+            case DOWN:
+                nextY++;
+                break;
+            case RIGHT:
+                nextX++;
+                break;
+            case LEFT:
+                nextX--;
+                break;
+            case ROTATE:
+                nextRotation = PieceTable.nextRotation(rotation);
+                break;
+        }
+        erase(board);
+        boolean moved = board.canPlace(table, nextRotation, nextX, nextY);
+        if (moved) {
+            x = nextX;
+            y = nextY;
+            rotation = nextRotation;
+        }
+        draw(board);
+        return moved;
+    }
+
+    public PIECE getPieceType() {
+        return type;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    //board row of the shape's highest cell
+    public int getTop() {
+        return y + table.minY(rotation);
+    }
+
+    //board row of the shape's lowest cell
+    public int getBottom() {
+        return y + table.maxY(rotation);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()+"{" +
+                "type=" + type +
+                ", rotation=" + rotation +
+                ", x=" + x +
+                ", y=" + y +
+                '}';
+    }
+}
@@ -0,0 +1,448 @@
+package com.mx85.engine;
+
+import com.mx85.metrics.Counter;
+import com.mx85.metrics.GameEvents;
+import com.mx85.metrics.Gauge;
+import com.mx85.metrics.Histogram;
+import com.mx85.metrics.MetricsRegistry;
+import com.mx85.replay.ReplayReader;
+import com.mx85.replay.ReplayWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Runs a Game on its own thread with a fixed timestep: the game is ticked TICKS_PER_SECOND
+ * times a second on a FixedTimestep schedule, and ticks that were missed because the
+ * thread ran late are caught up (up to FixedTimestep.MAX_CATCH_UP at once) instead of
+ * silently dropped.
+ * After every step the state is published through a SnapshotBuffer, so the UI paints at
+ * its own frame rate without ever touching the game itself.
+ *
+ * Input arrives as int-encoded Commands through a single-producer ring that is drained
+ * once per tick, so a flood of key events costs the producer nothing but ring writes.
+ *
+ * Tick lateness, tick duration and input-to-display latency are recorded in histograms.
+ * Those, the tick and input counts and the score of the game as last published can be
+ * exported through a MetricsRegistry, and every tick is a GameEvents.Tick for the flight
+ * recorder.
+ *
+ * An Autopilot can steer the game: its commands are applied at the start of every tick
+ * as if they had been submitted.
+ *
+ * Every command applied can be recorded with the tick it was applied at, and a recording
+ * can be played back instead of taking input, at any multiple of the normal speed.
+ *
+ * Anything else that has to touch the game, such as saving it or loading a saved state,
+ * is handed to execute() and runs on the simulation thread between two ticks.
+ */
+public class Simulation implements Runnable {
+
+    public static final int TICKS_PER_SECOND = 60;
+    public static final long TICK_NANOS = 1_000_000_000L / TICKS_PER_SECOND;
+    private static final int INPUT_CAPACITY = 256;
+    public static final double MIN_SPEED = 0.125;
+    public static final double MAX_SPEED = 64;
+
+    private final Game game;
+    private final SnapshotBuffer snapshots;
+    private final InputRing inputs = new InputRing(INPUT_CAPACITY);
+    private final int[] batch = new int[INPUT_CAPACITY]; //simulation thread only
+    private final int[] steering = new int[INPUT_CAPACITY]; //simulation thread only, commands of the autopilot
+    private volatile Autopilot autopilot; //null when only the player steers
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingInputNanos = new AtomicLong(); //arrival of the oldest input not yet applied, 0 when none
+
+    private final Histogram tickLateness = new Histogram("tick lateness");
+    private final Histogram tickDuration = new Histogram("tick duration");
+    private final Histogram inputLatency = new Histogram("input to display");
+    private final FixedTimestep timestep = new FixedTimestep(tickLateness, tickDuration);
+    private final FixedTimestep.Step stepper = new FixedTimestep.Step() {
+        @Override
+        public boolean tick() {
+            long stamp = step();
+            if (stepInputNanos == 0)
+                stepInputNanos = stamp;
+            return !isIdle();
+        }
+    };
+    private long stepInputNanos; //simulation thread only, arrival of the first inputs applied by the ticks being run
+    private final AtomicLong droppedInputs = new AtomicLong();
+    private final Counter ticks = new Counter();
+    private final Counter submitted = new Counter();
+    private int applied; //simulation thread only, commands applied in the current tick
+    private volatile int publishedScore; //the game as last published, for the metrics
+    private volatile int publishedLines;
+    private volatile int publishedPieces;
+    private volatile int publishedLevel;
+
+    private ReplayWriter recorder;  //simulation thread only once started, null when not recording
+    private ReplayReader playback;  //simulation thread only once started, null when playing live
+    private boolean playbackEnded;
+    private volatile long tickNanos = TICK_NANOS;
+
+    private volatile boolean running;
+    private volatile boolean paused; //written by the simulation thread only, when it applies PAUSE
+    private Thread thread;
+
+    public Simulation(Game game) {
+        this.game = game;
+        this.snapshots = new SnapshotBuffer(game.getBoard().getWidth(), game.getBoard().getHeight(), game.getPreviewCount());
+        publish(0);
+    }
+
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        running = true;
+        thread = new Thread(this, "tetris-simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //stops the simulation thread and waits a moment for it to finish the recording, if there is one
+    public synchronized void stop() {
+        running = false;
+        if (thread == null || thread == Thread.currentThread())
+            return;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //record every command applied from now on, call before start(); the recording is finished when the game ends or the simulation stops
+    public void record(ReplayWriter writer) {
+        this.recorder = writer;
+    }
+
+    //play a recording made from this game instead of taking input, call before start(); submitted commands other than PAUSE are ignored
+    public void play(ReplayReader reader) {
+        this.playback = reader;
+    }
+
+    //let a bot steer from the next tick on, null hands the game back to the player; ignored while playing a recording
+    public void setAutopilot(Autopilot autopilot) {
+        this.autopilot = autopilot;
+    }
+
+    public Autopilot getAutopilot() {
+        return autopilot;
+    }
+
+    //multiple of the normal tick rate, clamped to MIN_SPEED..MAX_SPEED
+    public void setSpeed(double speed) {
+        speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+        tickNanos = (long) (TICK_NANOS / speed);
+    }
+
+    public double getSpeed() {
+        return (double) TICK_NANOS / tickNanos;
+    }
+
+    /*queue a Command for the next tick. only one thread may submit at a time (the EDT, or a bot), the ring is
+    * single-producer; a full ring drops the command and counts it
+    */
+    public void submit(int command) {
+        submitted.increment();
+        pendingInputNanos.compareAndSet(0, System.nanoTime());
+        if (!inputs.offer(command))
+            droppedInputs.incrementAndGet();
+        if (paused) {
+            Thread t = thread;
+            if (t != null)
+                LockSupport.unpark(t); //a paused simulation only wakes up for input
+        }
+    }
+
+    //run a task on the simulation thread before the next tick, or right away when the simulation is not started
+    public void execute(Runnable task) {
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t == null) {
+            task.run();
+            return;
+        }
+        tasks.add(task);
+        LockSupport.unpark(t); //an idle simulation parks until something wakes it
+    }
+
+    /*jump to a saved state, call on the simulation thread (from a task given to execute). a recording cannot follow
+    * the jump, so it is finished at the state the game had before
+    */
+    public void restore(GameState state) {
+        finishRecording();
+        game.restore(state);
+        playbackEnded = false;
+    }
+
+    //the game itself, only to be touched on the simulation thread (from a task given to execute) once started
+    public Game getGame() {
+        return game;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    //the newest state published by the simulation thread, call from a single reader thread
+    public GameSnapshot latestSnapshot() {
+        return snapshots.latest();
+    }
+
+    //the reader calls this when a snapshot carrying an input stamp reaches the screen
+    public void inputDisplayed(long inputNanos) {
+        inputLatency.record(System.nanoTime() - inputNanos);
+    }
+
+    @Override
+    public void run() {
+        timestep.restart();
+        while (running) {
+            if (runTasks())
+                publish(0);
+            if (isIdle()) {
+                //while paused only input runs, any key press resumes the game
+                long stamp = processInput();
+                if (isIdle()) {
+                    if (stamp != 0)
+                        publish(stamp);
+                    if (game.isGameOver())
+                        finishRecording();
+                    else
+                        flushRecording();
+                    LockSupport.park(this);
+                }
+                timestep.restart();
+                continue;
+            }
+            if (timestep.park(this))
+                continue;
+            //sped up playback runs several ticks per normal tick, so it may catch up on proportionally more
+            stepInputNanos = 0;
+            timestep.runDue(stepper, tickNanos);
+            publish(stepInputNanos);
+        }
+        finishRecording();
+    }
+
+    //returns whether there were any
+    private boolean runTasks() {
+        boolean ran = false;
+        for (Runnable task; (task = tasks.poll()) != null; ) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("simulation task failed: " + e);
+            }
+            ran = true;
+        }
+        return ran;
+    }
+
+    //nothing to simulate until some input arrives
+    private boolean isIdle() {
+        return paused || game.isGameOver() || playbackEnded;
+    }
+
+    /*one fixed timestep: apply the queued commands (or the recorded ones when playing back) and those of the autopilot,
+    * then auto-repeat and gravity; returns the arrival time of the inputs applied or 0
+    */
+    private long step() {
+        GameEvents.Tick event = new GameEvents.Tick();
+        event.begin();
+        applied = 0;
+        long inputNanos = processInput();
+        if (!paused)
+            simulate();
+        ticks.increment();
+        if (event.shouldCommit()) {
+            event.tick = game.getTicks();
+            event.commands = applied;
+            event.commit();
+        }
+        return inputNanos;
+    }
+
+    //the part of a step that is skipped while paused: the recording or the autopilot, then the game's own tick
+    private void simulate() {
+        if (playback != null && !feedPlayback()) {
+            playbackEnded = true;
+            return;
+        }
+        Autopilot autopilot = this.autopilot;
+        if (autopilot != null && playback == null) {
+            int n = autopilot.steer(game, steering);
+            for (int i = 0; i < n; i++) {
+                apply(steering[i]);
+            }
+        }
+        game.tick();
+    }
+
+    //hand the state to the reader, and keep the figures the metrics export
+    private void publish(long inputNanos) {
+        snapshots.publish(game, inputNanos);
+        publishedScore = game.getScore();
+        publishedLines = game.getLines();
+        publishedPieces = game.getPieces();
+        publishedLevel = game.getLevel();
+    }
+
+    private boolean feedPlayback() {
+        try {
+            return playback.feed(game);
+        } catch (IOException e) {
+            System.err.println("replay stopped: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void flushRecording() {
+        if (recorder == null)
+            return;
+        try {
+            recorder.flush();
+        } catch (IOException e) {
+            recordingFailed(e);
+        }
+    }
+
+    //write the final state to the recording and close it, the game is not recorded any further
+    private void finishRecording() {
+        if (recorder == null)
+            return;
+        try {
+            recorder.finish(game);
+        } catch (IOException e) {
+            recordingFailed(e);
+        }
+        recorder = null;
+    }
+
+    //a failing disk must not stop the game, it just stops being recorded
+    private void recordingFailed(IOException e) {
+        System.err.println("replay recording stopped: " + e.getMessage());
+        try {
+            recorder.close();
+        } catch (IOException ignored) {
+        }
+        recorder = null;
+    }
+
+    /*drain the ring once and apply the whole batch in order. PAUSE toggles the pause here, any other key press
+    * while paused resumes the game; releases always go through so no key stays held across a pause
+    */
+    private long processInput() {
+        long inputNanos = pendingInputNanos.getAndSet(0);
+        int n = inputs.drainTo(batch);
+        for (int i = 0; i < n; i++) {
+            int command = batch[i];
+            if (command == Command.PAUSE) {
+                paused = !paused;
+                continue;
+            }
+            if (!Command.isRelease(command))
+                paused = false;
+            if (playback != null)
+                continue; //the recording steers the game, keys only pause and resume it
+            apply(command);
+        }
+        return n == 0 ? 0 : inputNanos;
+    }
+
+    //apply a command to the game and record it
+    private void apply(int command) {
+        applied++;
+        game.command(command);
+        if (recorder != null) {
+            try {
+                recorder.record(game.getTicks(), command);
+            } catch (IOException e) {
+                recordingFailed(e);
+            }
+        }
+    }
+
+    public Histogram getTickLateness() {
+        return tickLateness;
+    }
+
+    public Histogram getTickDuration() {
+        return tickDuration;
+    }
+
+    public Histogram getInputLatency() {
+        return inputLatency;
+    }
+
+    //export the timings, counts and score of this simulation, they are read on the exporting thread while the game runs
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.histogram("tetris_tick_lateness_seconds", "How late ticks started after their scheduled time",
+                tickLateness, MetricsRegistry.NANOS_TO_SECONDS);
+        registry.histogram("tetris_tick_duration_seconds", "Time spent simulating one tick", tickDuration,
+                MetricsRegistry.NANOS_TO_SECONDS);
+        registry.histogram("tetris_input_latency_seconds", "From a key press to the first frame showing its effect",
+                inputLatency, MetricsRegistry.NANOS_TO_SECONDS);
+        registry.counter("tetris_ticks_total", "Fixed timesteps simulated", ticks);
+        registry.counter("tetris_dropped_ticks_total", "Ticks skipped because the simulation fell too far behind",
+                new Gauge() {
+                    @Override
+                    public double get() {
+                        return timestep.getDroppedTicks();
+                    }
+                });
+        registry.counter("tetris_inputs_total", "Commands submitted to the simulation", submitted);
+        registry.counter("tetris_dropped_inputs_total", "Commands dropped because the input ring was full",
+                new Gauge() {
+                    @Override
+                    public double get() {
+                        return droppedInputs.get();
+                    }
+                });
+        registry.gauge("tetris_score", "Score of the game as last published", new Gauge() {
+            @Override
+            public double get() {
+                return publishedScore;
+            }
+        });
+        registry.gauge("tetris_lines", "Rows cleared in the game as last published", new Gauge() {
+            @Override
+            public double get() {
+                return publishedLines;
+            }
+        });
+        registry.gauge("tetris_pieces", "Pieces dealt in the game as last published", new Gauge() {
+            @Override
+            public double get() {
+                return publishedPieces;
+            }
+        });
+        registry.gauge("tetris_level", "Level of the game as last published", new Gauge() {
+            @Override
+            public double get() {
+                return publishedLevel;
+            }
+        });
+        registry.gauge("tetris_paused", "1 while the game is paused", new Gauge() {
+            @Override
+            public double get() {
+                return paused ? 1 : 0;
+            }
+        });
+    }
+
+    public void printStats(PrintStream out) {
+        out.println(tickLateness.summary());
+        out.println(tickDuration.summary());
+        out.println(inputLatency.summary());
+        out.println("dropped ticks: " + timestep.getDroppedTicks() + ", dropped inputs: " + droppedInputs.get());
+    }
+}
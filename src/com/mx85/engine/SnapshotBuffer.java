@@ -0,0 +1,60 @@
+package com.mx85.engine;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Lock-free triple buffer between one writer (the simulation thread) and one reader
+ * (the EDT). The writer fills its back snapshot and swaps it into the ready slot, the
+ * reader swaps its front snapshot for the ready one when that is newer. Neither side
+ * ever waits for the other and the reader always gets the latest complete state.
+ */
+public class SnapshotBuffer {
+
+    private final AtomicReference<GameSnapshot> ready;
+    private final long[] rowVersions; //writer only: sequence at which each board row last changed
+    private GameSnapshot back;        //writer only
+    private GameSnapshot front;       //reader only
+    private long sequence;            //writer only
+
+    public SnapshotBuffer(int width, int height, int previewCount) {
+        ready = new AtomicReference<GameSnapshot>(new GameSnapshot(width, height, previewCount));
+        back = new GameSnapshot(width, height, previewCount);
+        front = new GameSnapshot(width, height, previewCount);
+        rowVersions = new long[height];
+    }
+
+    /*writer side: stamp the rows the board reports dirty and hand a copy of the game state to the reader,
+    * inputNanos is when the oldest input applied since the last publish was received, or 0
+    */
+    public void publish(Game game, long inputNanos) {
+        stamp(game.getBoard());
+        back.copyFrom(game, rowVersions, sequence, inputNanos);
+        back = ready.getAndSet(back);
+    }
+
+    /*writer side for a board that mirrors a game played elsewhere, such as one rebuilt from a spectator stream; the
+    * preview holds at least as many pieces as the snapshots show
+    */
+    public void publish(Board board, int score, int lines, int pieces, long ticks, Shape.PIECE[] preview, boolean gameOver) {
+        stamp(board);
+        back.copyFrom(board, rowVersions, sequence, score, lines, pieces, ticks, preview, gameOver);
+        back = ready.getAndSet(back);
+    }
+
+    private void stamp(Board board) {
+        sequence++;
+        if (board.isDirty()) {
+            for (int y = board.getDirtyTop(); y <= board.getDirtyBottom(); y++) {
+                rowVersions[y] = sequence;
+            }
+            board.clearDirty();
+        }
+    }
+
+    //reader side: the newest published snapshot, or the one returned last time when nothing new was published
+    public GameSnapshot latest() {
+        if (ready.get().getSequence() > front.getSequence())
+            front = ready.getAndSet(front);
+        return front;
+    }
+}
@@ -0,0 +1,47 @@
+package com.mx85.engine;
+
+/*
+ * The generator behind java.util.SplittableRandom (SplitMix64 with the golden gamma),
+ * drawing exactly the same numbers for the same seed, but with its state out in the
+ * open: one long that can be saved with a game and put back, which SplittableRandom
+ * does not allow. Recordings made with SplittableRandom deal the same pieces.
+ */
+public final class SplitMix {
+
+    private static final long GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    public SplitMix(long seed) {
+        this.state = seed;
+    }
+
+    //uniform in [0, bound), the same draw as SplittableRandom.nextInt(bound)
+    public int nextInt(int bound) {
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0)
+            return r & m;
+        //reject the top of the range that would make the low values more likely
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {
+        }
+        return r;
+    }
+
+    public int nextInt() {
+        long z = state += GAMMA;
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    //everything needed to continue the sequence from here
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
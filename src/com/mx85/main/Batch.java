@@ -0,0 +1,43 @@
+package com.mx85.main;
+
+import com.mx85.engine.PieceGenerators;
+import com.mx85.sim.Autoplayer;
+import com.mx85.sim.BatchSimulator;
+import com.mx85.sim.BatchStats;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Command line entry point for the headless batch simulator: plays a number of games
+ * with a scripted strategy on all cores and prints the score, line, length, piece and
+ * clear statistics with the throughput.
+ */
+public class Batch {
+
+    //usage: Batch [games] [strategy] [generator] [width] [height] [threads] [seed] [max pieces]
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        String strategy = args.length > 1 ? args[1] : "random";
+        String generator = args.length > 2 ? args[2] : "uniform";
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : PieceGenerators.randomSeed();
+        int maxPieces = args.length > 7 ? Integer.parseInt(args[7]) : 100_000;
+
+        BatchSimulator simulator = new BatchSimulator(width, height, generator, strategy, maxPieces);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            BatchStats stats = simulator.run(pool, games, seed);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("%,d games of %s with %s pieces on %dx%d, %d threads, seed %d: %.2fs, %,.0f games/s",
+                    stats.getGames(), strategy, generator, width, height, threads, seed, seconds, stats.getGames() / seconds));
+            stats.print(System.out);
+            if (strategy.equals("beam") && Autoplayer.sharedCache() != null)
+                System.out.println(Autoplayer.sharedCache().summary());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.mx85.main;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.GameSnapshot;
+import com.mx85.engine.PieceTable;
+import com.mx85.engine.Shape;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/*
+ * Many boards of the same size in one component, laid out in a grid, each with a strip
+ * under it for its label, score and next piece. Everything is drawn into one cached
+ * image out of a shared TileAtlas, and like BoardView only the cells of a board that
+ * changed since the snapshot last shown for it are copied again, so a frame costs
+ * the boards that changed and nothing for the others; each of them schedules a repaint
+ * of just its own slot. A finished game is shaded over. Call show() on the EDT only.
+ */
+public class BoardGrid extends JComponent {
+
+    private static final int GAP = 6;
+    private static final int MAX_CELL = 20;
+    private static final Color BACKGROUND = new Color(0x202020);
+    private static final Color FINISHED = new Color(0, 0, 0, 140);
+    private static final Font FONT = new Font(Font.DIALOG, Font.PLAIN, 11);
+
+    private final int count;
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final String[] labels;
+    private final TileAtlas tiles;
+    private final TileAtlas miniTiles;     //the next piece previews, half the cell size
+    private final int stripHeight;
+    private final int slotWidth;
+    private final int slotHeight;
+    private final BufferedImage image;
+    private final FontMetrics metrics;
+
+    private final byte[] shown;            //colour index drawn for every cell of every board, board after board
+    private final long[] shownSequence;    //per board, sequence of the last snapshot drawn
+    private final int[] shownScore;
+    private final Shape.PIECE[] shownNext;
+    private final boolean[] shownFinished;
+
+    /*a grid of count boards of width x height cells with the biggest cells that fit the pixel budget, labels names
+    * the boards (the player of each, say)
+    */
+    public BoardGrid(int count, int width, int height, String[] labels, int maxWidth, int maxHeight) {
+        this.count = count;
+        this.width = width;
+        this.height = height;
+        this.labels = labels.clone();
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        Graphics2D probeGraphics = probe.createGraphics();
+        this.metrics = probeGraphics.getFontMetrics(FONT);
+        probeGraphics.dispose();
+        int bestColumns = 1;
+        int bestCell = 0;
+        for (int c = 1; c <= count; c++) {
+            int rows = (count + c - 1) / c;
+            int cell = Math.min(MAX_CELL, Math.min((maxWidth / c - GAP) / width,
+                    (maxHeight / rows - GAP - metrics.getHeight() - 4) / height));
+            if (cell > bestCell) {
+                bestCell = cell;
+                bestColumns = c;
+            }
+        }
+        this.columns = bestColumns;
+        this.tiles = TileAtlas.of(Math.max(1, bestCell));
+        this.miniTiles = TileAtlas.of(Math.max(1, tiles.getSize() / 2));
+        this.stripHeight = Math.max(metrics.getHeight(), 2 * miniTiles.getSize()) + 4;
+        this.slotWidth = width * tiles.getSize() + GAP;
+        this.slotHeight = height * tiles.getSize() + stripHeight + GAP;
+        int rows = (count + columns - 1) / columns;
+        this.image = new BufferedImage(columns * slotWidth, rows * slotHeight, BufferedImage.TYPE_INT_RGB);
+        this.shown = new byte[count * width * height];
+        this.shownSequence = new long[count];
+        this.shownScore = new int[count];
+        this.shownNext = new Shape.PIECE[count];
+        this.shownFinished = new boolean[count];
+        Arrays.fill(shownSequence, -1);
+        Arrays.fill(shownScore, -1);
+        setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+        setOpaque(true);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+            for (int b = 0; b < count; b++) {
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        tiles.draw(g, Board.EMPTY, left(b) + x * tiles.getSize(), top(b) + y * tiles.getSize());
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /*draw the cells of board b that differ from the snapshot, and its strip when the score or next piece changed,
+    * then schedule a repaint of the part of its slot that changed. only rows stamped with a newer sequence than the
+    * last snapshot shown for the board are compared at all
+    */
+    public void show(int b, GameSnapshot snapshot, boolean finished) {
+        if (snapshot.getSequence() == shownSequence[b])
+            return;
+        int cellSize = tiles.getSize();
+        int left = width, top = height, right = -1, bottom = -1;
+        boolean strip = snapshot.getScore() != shownScore[b] || snapshot.getNextPiece() != shownNext[b];
+        boolean finishing = finished && !shownFinished[b];
+        Graphics2D g = image.createGraphics();
+        try {
+            int base = b * width * height;
+            for (int y = 0; y < height; y++) {
+                if (snapshot.getRowVersion(y) <= shownSequence[b])
+                    continue;
+                for (int x = 0; x < width; x++) {
+                    byte color = snapshot.getColor(x, y);
+                    if (shown[base + y * width + x] == color)
+                        continue;
+                    shown[base + y * width + x] = color;
+                    tiles.draw(g, color, left(b) + x * cellSize, top(b) + y * cellSize);
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+            if (strip)
+                paintStrip(g, b, snapshot);
+            if (finishing) {
+                g.setColor(FINISHED);
+                g.fillRect(left(b), top(b), width * cellSize, height * cellSize);
+                shownFinished[b] = true;
+            }
+        } finally {
+            g.dispose();
+        }
+        shownSequence[b] = snapshot.getSequence();
+        if (finishing)
+            repaint(left(b), top(b), width * cellSize, height * cellSize + stripHeight);
+        else if (right >= 0 || strip) {
+            int bottomPixel = strip ? height * cellSize + stripHeight : (bottom + 1) * cellSize;
+            int topPixel = right >= 0 ? top * cellSize : height * cellSize;
+            int leftPixel = strip ? 0 : left * cellSize;
+            int rightPixel = strip ? width * cellSize : (right + 1) * cellSize;
+            repaint(left(b) + leftPixel, top(b) + topPixel, rightPixel - leftPixel, bottomPixel - topPixel);
+        }
+    }
+
+    //label and score on the left of the strip under the board, the next piece on the right
+    private void paintStrip(Graphics2D g, int b, GameSnapshot snapshot) {
+        int px = left(b);
+        int py = top(b) + height * tiles.getSize();
+        int stripWidth = width * tiles.getSize();
+        g.setColor(BACKGROUND);
+        g.fillRect(px, py, stripWidth, stripHeight);
+        int mini = miniTiles.getSize();
+        int previewLeft = px + stripWidth - 4 * mini;
+        Graphics2D text = (Graphics2D) g.create(px, py, Math.max(0, previewLeft - px - 2), stripHeight);
+        try {
+            text.setFont(FONT);
+            text.setColor(Color.white);
+            text.drawString(labels[b] + " " + snapshot.getScore(), 0, 2 + metrics.getAscent());
+        } finally {
+            text.dispose();
+        }
+        Shape.PIECE next = snapshot.getNextPiece();
+        if (next != null) {
+            //the first rotation that lies the piece down, so it fits in two rows of the strip
+            PieceTable table = PieceTable.of(next);
+            int rotation = 0;
+            while (table.maxY(rotation) - table.minY(rotation) > 1) {
+                rotation++;
+            }
+            for (int i = 0; i < PieceTable.CELLS; i++) {
+                int cx = table.cellX(rotation, i) - table.minX(rotation);
+                int cy = table.cellY(rotation, i) - table.minY(rotation);
+                miniTiles.draw(g, Board.colorIndex(next), previewLeft + cx * mini, py + 2 + cy * mini);
+            }
+        }
+        shownScore[b] = snapshot.getScore();
+        shownNext[b] = next;
+    }
+
+    private int left(int b) {
+        return (b % columns) * slotWidth + GAP / 2;
+    }
+
+    private int top(int b) {
+        return (b / columns) * slotHeight + GAP / 2;
+    }
+
+    //the clip only covers the regions passed to repaint, so only those parts of the image are copied
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.drawImage(image, 0, 0, null);
+    }
+}
@@ -0,0 +1,186 @@
+package com.mx85.main;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.GameSnapshot;
+import com.mx85.engine.PieceTable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/*
+ * The whole board as one component. Cells are drawn into a cached image and only the
+ * cells that changed since the last snapshot shown are redrawn and repainted, so a move
+ * costs a handful of fillRects instead of relaying out and painting hundreds of buttons.
+ * The ghost of the falling piece is outlined in the free cells it covers and only
+ * repainted when it moved. Call show() on the EDT only.
+ */
+public class BoardView extends JComponent {
+
+    private static final Color GRID = new Color(0xb0b0b0);
+    private static final Color OVERLAY = new Color(0, 0, 0, 170);
+
+    private final int width;
+    private final int height;
+    private final int cellSize;
+    private final BufferedImage image;
+    private final byte[] shown;    //colour index currently drawn in the image for every cell
+    private long shownSequence;    //sequence of the last snapshot drawn into the image
+    private String[] overlay;      //lines of text drawn over the board, null for none
+    private final int[] ghost = new int[PieceTable.CELLS]; //cell indices of the ghost outlined in the image, -1 for none
+    private final int[] nextGhost = new int[PieceTable.CELLS];
+    private byte ghostColor;
+
+    public BoardView(int width, int height, int cellSize) {
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+        this.image = new BufferedImage(width * cellSize, height * cellSize, BufferedImage.TYPE_INT_RGB);
+        this.shown = new byte[width * height];
+        Arrays.fill(ghost, -1);
+        setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+        setOpaque(true);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    paintCell(g, x, y, Board.EMPTY);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    //biggest cell size up to 20 pixels that keeps the board within the given pixel budget
+    public static int fitCellSize(int width, int height, int maxWidth, int maxHeight) {
+        return Math.max(1, Math.min(20, Math.min(maxWidth / width, maxHeight / height)));
+    }
+
+    /*redraw the cells that differ from the snapshot into the image and schedule a repaint of just that region,
+    * only rows stamped with a newer sequence than the last snapshot shown are compared at all
+    */
+    public void show(GameSnapshot snapshot) {
+        if (snapshot.getSequence() == shownSequence)
+            return;
+        int left = width, top = height, right = -1, bottom = -1;
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int y = 0; y < height; y++) {
+                if (snapshot.getRowVersion(y) <= shownSequence)
+                    continue;
+                for (int x = 0; x < width; x++) {
+                    byte color = snapshot.getColor(x, y);
+                    if (shown[y * width + x] == color)
+                        continue;
+                    shown[y * width + x] = color;
+                    paintCell(g, x, y, color);
+                    left = Math.min(left, x);
+                    right = Math.max(right, x);
+                    top = Math.min(top, y);
+                    bottom = Math.max(bottom, y);
+                }
+            }
+            if (findGhost(snapshot)) {
+                for (int i = 0; i < ghost.length; i++) {
+                    int cell = ghost[i];
+                    if (cell < 0)
+                        continue;
+                    if (shown[cell] == Board.EMPTY)
+                        paintCell(g, cell % width, cell / width, Board.EMPTY);
+                    left = Math.min(left, cell % width);
+                    right = Math.max(right, cell % width);
+                    top = Math.min(top, cell / width);
+                    bottom = Math.max(bottom, cell / width);
+                }
+                System.arraycopy(nextGhost, 0, ghost, 0, ghost.length);
+                for (int cell : ghost) {
+                    if (cell < 0)
+                        continue;
+                    left = Math.min(left, cell % width);
+                    right = Math.max(right, cell % width);
+                    top = Math.min(top, cell / width);
+                    bottom = Math.max(bottom, cell / width);
+                }
+            }
+            //cells redrawn above may have painted over an outline that stays, so the outline always goes on last
+            for (int cell : ghost) {
+                if (cell >= 0 && shown[cell] == Board.EMPTY)
+                    paintGhost(g, cell % width, cell / width, ghostColor);
+            }
+        } finally {
+            g.dispose();
+        }
+        shownSequence = snapshot.getSequence();
+        if (right >= 0)
+            repaint(left * cellSize, top * cellSize, (right - left + 1) * cellSize, (bottom - top + 1) * cellSize);
+    }
+
+    //the ghost cells of the snapshot into nextGhost, true when they or their colour are not the ones outlined now
+    private boolean findGhost(GameSnapshot snapshot) {
+        Arrays.fill(nextGhost, -1);
+        byte color = ghostColor;
+        if (snapshot.getGhostPiece() != null) {
+            PieceTable table = PieceTable.of(snapshot.getGhostPiece());
+            int rotation = snapshot.getGhostRotation();
+            for (int i = 0; i < PieceTable.CELLS; i++) {
+                int x = snapshot.getGhostX() + table.cellX(rotation, i);
+                int y = snapshot.getGhostY() + table.cellY(rotation, i);
+                if (x >= 0 && x < width && y >= 0 && y < height)
+                    nextGhost[i] = y * width + x;
+            }
+            color = Board.colorIndex(snapshot.getGhostPiece());
+        }
+        boolean moved = color != ghostColor || !Arrays.equals(ghost, nextGhost);
+        ghostColor = color;
+        return moved;
+    }
+
+    private void paintGhost(Graphics2D g, int x, int y, byte color) {
+        if (cellSize < 4)
+            return;
+        g.setColor(PieceColors.colorOf(color));
+        g.drawRect(x * cellSize + 2, y * cellSize + 2, cellSize - 4, cellSize - 4);
+    }
+
+    private void paintCell(Graphics2D g, int x, int y, byte color) {
+        int px = x * cellSize;
+        int py = y * cellSize;
+        g.setColor(PieceColors.colorOf(color));
+        if (cellSize < 4) {
+            g.fillRect(px, py, cellSize, cellSize);
+            return;
+        }
+        g.fillRect(px + 1, py + 1, cellSize - 1, cellSize - 1);
+        g.setColor(GRID);
+        g.drawLine(px, py, px + cellSize - 1, py);
+        g.drawLine(px, py, px, py + cellSize - 1);
+    }
+
+    //text drawn in a box over the top left of the board, such as the timing overlay; null removes it
+    public void setOverlay(String[] lines) {
+        overlay = lines;
+        repaint();
+    }
+
+    //the clip only covers the region passed to repaint, so only that part of the image is copied
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.drawImage(image, 0, 0, null);
+        String[] lines = overlay;
+        if (lines == null)
+            return;
+        FontMetrics metrics = g.getFontMetrics();
+        int textWidth = 0;
+        for (String line : lines) {
+            textWidth = Math.max(textWidth, metrics.stringWidth(line));
+        }
+        g.setColor(OVERLAY);
+        g.fillRect(0, 0, textWidth + 8, lines.length * metrics.getHeight() + 8);
+        g.setColor(Color.white);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], 4, 4 + metrics.getAscent() + i * metrics.getHeight());
+        }
+    }
+}
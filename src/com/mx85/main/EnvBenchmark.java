@@ -0,0 +1,55 @@
+package com.mx85.main;
+
+import com.mx85.sim.VectorEnv;
+
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * Measures VectorEnv throughput: steps a batch of games with random actions for a number
+ * of seconds and prints game steps per second once a second, observations included. The
+ * first second is the JIT warming up.
+ */
+public class EnvBenchmark {
+
+    //usage: EnvBenchmark [games] [width] [height] [threads] [seconds] [seed]
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 65536;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 5;
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        VectorEnv env = new VectorEnv(games, width, height, "bag", 3, pool);
+        ByteBuffer observations = ByteBuffer.allocateDirect(games * env.getObservationBytes());
+        int[] actions = new int[games];
+        float[] rewards = new float[games];
+        boolean[] dones = new boolean[games];
+        SplittableRandom random = new SplittableRandom(seed);
+        env.reset(seed, observations);
+        long episodes = 0;
+        for (int second = 0; second < seconds; second++) {
+            long start = System.nanoTime();
+            long end = start + 1_000_000_000L;
+            long steps = 0;
+            while (System.nanoTime() < end) {
+                for (int i = 0; i < games; i++) {
+                    actions[i] = random.nextInt(env.getActionCount());
+                }
+                env.step(actions, rewards, dones, observations);
+                for (int i = 0; i < games; i++) {
+                    if (dones[i])
+                        episodes++;
+                }
+                steps += games;
+            }
+            System.out.println(String.format("%,.0f game steps/s on %dx%d with %d threads",
+                    steps / ((System.nanoTime() - start) / 1e9), width, height, threads));
+        }
+        System.out.println(String.format("%,d episodes finished", episodes));
+        pool.shutdown();
+    }
+}
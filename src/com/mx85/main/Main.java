@@ -1,20 +1,140 @@
 package com.mx85.main;
 
+import com.mx85.engine.PieceGenerators;
+import com.mx85.net.GameServer;
+import com.mx85.net.LoadClient;
+import com.mx85.net.SpectatorClient;
+import com.mx85.replay.ReplayArchive;
+import com.mx85.replay.ReplayPlayer;
+import com.mx85.replay.ReplayReader;
+import com.mx85.scores.ScoreStore;
+import com.mx85.sim.Tournament;
+
 import javax.swing.*;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 public class Main {
 
+    /*usage: Main [width height], Main --stress [width] [height] [seconds] [seed] for the headless stress mode,
+    * Main --replay file... to check recordings headless, Main --watch file [speed] to watch one,
+    * Main --archive pack|top|clears|verify dir [arguments] for replay archives,
+    * Main --scores top|players|compact file [n] for the score store,
+    * Main --batch [games] [strategy] [generator] [width] [height] [threads] [seed] [max pieces] for batch statistics,
+    * Main --placements [width] [height] [seconds] [seed] to benchmark the placement enumerator,
+    * Main --env [games] [width] [height] [threads] [seconds] [seed] to benchmark the training environment,
+    * Main --server [port] [width] [height] [shards] [seed] [generator] to host versus matches over TCP,
+    * Main --load [host] [port] [clients] [seconds] [seed] [spectators] to load test a server with headless clients,
+    * Main --spectate [host] [port] [match] to watch the matches of a server,
+    * or Main --tournament [games] [strategies] [generator] [width] [height] [piece millis] [threads] [seed] [max pieces]
+    * to watch many bot games at once
+    */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--stress")) {
+            StressTest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--replay")) {
+            ReplayPlayer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--placements")) {
+            PlacementBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--env")) {
+            EnvBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--server")) {
+            GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--load")) {
+            LoadClient.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            Batch.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--archive")) {
+            ReplayArchive.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--scores")) {
+            ScoreStore.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--spectate")) {
+            spectate(args.length > 1 ? args[1] : "localhost", args.length > 2 ? Integer.parseInt(args[2]) : 7777,
+                    args.length > 3 ? Integer.parseInt(args[3]) : -1);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--tournament")) {
+            tournament(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--watch")) {
+            watch(ReplayReader.open(Paths.get(args[1])), args.length > 2 ? Double.parseDouble(args[2]) : 1);
+            return;
+        }
+        if (args.length >= 2)
+            new Main(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        else
+            new Main(20, 20);
+    }
+
 
-    public static void main(String[] args) {
-        new Main();
+    private static void watch(final ReplayReader replay, final double speed) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                new TetrisGame(replay, speed);
+            }
+        });
     }
 
+    //connect before opening the window, the first keyframe tells the size of the boards
+    private static void spectate(String host, int port, int match) throws IOException {
+        final SpectatorClient client = new SpectatorClient(new InetSocketAddress(host, port), match);
+        client.connect();
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                new SpectatorView(client);
+            }
+        });
+    }
+
+    //strategies are comma separated and take the games in turn, see Tournament
+    private static void tournament(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        String[] strategies = (args.length > 1 ? args[1] : "beam,random").split(",");
+        String generator = args.length > 2 ? args[2] : "bag";
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        long pieceMillis = args.length > 5 ? Long.parseLong(args[5]) : 100;
+        int threads = args.length > 6 ? Integer.parseInt(args[6]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 7 ? Long.parseLong(args[7]) : PieceGenerators.randomSeed();
+        int maxPieces = args.length > 8 ? Integer.parseInt(args[8]) : Integer.MAX_VALUE;
+        final Tournament tournament = new Tournament(games, strategies, generator, width, height, seed, maxPieces,
+                pieceMillis * 1_000_000L, threads);
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                new TournamentView(tournament);
+            }
+        });
+    }
 
-    public Main() {
+    public Main(final int width, final int height) {
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                new TetrisGame();
+                new TetrisGame(width, height);
             }
         });
     }
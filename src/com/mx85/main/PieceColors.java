@@ -0,0 +1,31 @@
+package com.mx85.main;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.Shape;
+
+import java.awt.*;
+
+//the swing colours of the board's colour indexes, kept out of the engine so headless games never initialise AWT
+final class PieceColors {
+
+    private static final Shape.PIECE[] PIECES = Shape.PIECE.values();
+
+    private PieceColors() {
+    }
+
+    //swing colour for a board colour index
+    static Color colorOf(byte index) {
+        if (index == Board.EMPTY)
+            return Color.lightGray;
+        if (index == Board.GARBAGE)
+            return Color.darkGray;
+        switch (PIECES[index - 1]) {
+            case LPIECE: return Color.red;
+            case ZPIECE: return Color.blue;
+            case TPIECE: return Color.yellow;
+            case LONGPIECE: return Color.green;
+            case CUBEPIECE: return Color.orange;
+            default: return Color.lightGray;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.mx85.main;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.PlacementEnumerator;
+import com.mx85.engine.Shape;
+
+import java.util.SplittableRandom;
+
+/*
+ * Measures PlacementEnumerator throughput: enumerates every piece type on a set of
+ * boards with random garbage in their lower half for a number of seconds, and prints
+ * enumerations per second once a second. The first second is the JIT warming up.
+ */
+public class PlacementBenchmark {
+
+    private static final int BOARDS = 64;
+
+    //usage: PlacementBenchmark [width] [height] [seconds] [seed]
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Board[] boards = new Board[BOARDS];
+        for (int i = 0; i < BOARDS; i++) {
+            boards[i] = new Board(width, height);
+            double density = random.nextDouble() * 0.6;
+            for (int y = height / 2; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (random.nextDouble() < density)
+                        boards[i].fill(x, y, (byte) 1);
+                }
+            }
+        }
+        Shape.PIECE[] pieces = Shape.PIECE.values();
+        PlacementEnumerator enumerator = new PlacementEnumerator(width, height);
+        long placements = 0; //summed so the work cannot be optimised away
+        for (int second = 0; second < seconds; second++) {
+            long end = System.nanoTime() + 1_000_000_000L;
+            long enumerations = 0;
+            while (System.nanoTime() < end) {
+                for (int i = 0; i < 1024; i++) {
+                    placements += enumerator.enumerate(boards[i & (BOARDS - 1)], pieces[i % pieces.length]).size();
+                }
+                enumerations += 1024;
+            }
+            System.out.println(String.format("%,d enumerations/s on %dx%d", enumerations, width, height));
+        }
+        System.out.println(String.format("%,d placements found", placements));
+    }
+}
@@ -0,0 +1,165 @@
+package com.mx85.main;
+
+import com.mx85.engine.GameSnapshot;
+import com.mx85.engine.Shape;
+
+import javax.swing.*;
+import java.awt.*;
+
+//java label displaying the score, the best score of the player and the next tetris piece
+class ResultPanel extends JPanel {
+
+    private JLabel pointsTextLabel = new JLabel("Points: ");
+    private JLabel pointsLabel = new JLabel("0");
+    private JLabel bestTextLabel = new JLabel("Best: ");
+    private JLabel bestLabel = new JLabel("0");
+    private JLabel nextLabel = new JLabel("Next: ");
+    private NextPieceType nextType = new NextPieceType();
+    private int points = 0;
+    private int best = 0;
+
+    public ResultPanel() {
+        setPreferredSize(new Dimension(40, 90));
+
+        //add labels to the panel of scores and next pieces
+        this.setLayout(new GridLayout(3, 2));
+        this.add(pointsTextLabel);
+        this.add(pointsLabel);
+        this.add(bestTextLabel);
+        this.add(bestLabel);
+        this.add(nextLabel);
+        this.add(nextType);
+    }
+
+    //show the upcoming pieces of the snapshot if any of them changed
+    public void setPieceTypes(GameSnapshot snapshot) {
+        if(nextType.setPieceTypes(snapshot))
+            nextType.repaint(); //the board no longer repaints the whole frame, so the preview repaints itself
+    }
+
+    //the kinds of piece which will fall next, drawn left to right in the order they will fall
+    private class NextPieceType extends JComponent {
+
+        private static final int PIECE_SPACING = 50; //pixels between two previewed pieces, the widest piece is 30
+
+        private Shape.PIECE[] nextPieces = new Shape.PIECE[0];
+
+        //copy the preview of the snapshot, returns whether it differs from the one shown
+        public boolean setPieceTypes(GameSnapshot snapshot) {
+            boolean changed = nextPieces.length != snapshot.getPreviewCount();
+            if(changed)
+                nextPieces = new Shape.PIECE[snapshot.getPreviewCount()];
+            for(int i = 0; i < nextPieces.length; i++) {
+                changed |= nextPieces[i] != snapshot.getPreviewPiece(i);
+                nextPieces[i] = snapshot.getPreviewPiece(i);
+            }
+            return changed;
+        }
+
+        //each previewed piece is painted by the switch below, shifted right by its place in the queue
+        @Override
+        protected void paintComponent(Graphics g) {
+            for(int i = 0; i < nextPieces.length; i++) {
+                Graphics pieceGraphics = g.create(i * PIECE_SPACING, 0, PIECE_SPACING, getHeight());
+                try {
+                    paintPiece(pieceGraphics, nextPieces[i]);
+                } finally {
+                    pieceGraphics.dispose();
+                }
+            }
+        }
+
+        /*creating the pieces to be displayed dependent on which piece is coming
+        * the possible pieces are: cube, long, L-shaped, T-shaped, and Z-shaped
+        */
+        private void paintPiece(Graphics g, Shape.PIECE nextPiece) {
+            if (nextPiece == null)
+                return; //nothing to show before the first frame
+            switch (nextPiece) {
+                case CUBEPIECE:
+                    paintCubePiece(g);
+                    break;
+                case LONGPIECE:
+                    paintLongPiece(g);
+                    break;
+                case LPIECE:
+                    paintLPiece(g);
+                    break;
+                case TPIECE:
+                    paintTPiece(g);
+                    break;
+                case ZPIECE:
+                    paintZPiece(g);
+                    break;
+            }
+        }
+
+        /*Once the switch-case chooses a piece type based on the nextPiece 
+        * these functions actually draw the pieces
+        */
+        //draw a red L-shaped piece
+        private void paintLPiece(Graphics g) {
+            g.setColor(Color.red);
+            g.fillRect(0,0,10,10);
+            g.fillRect(0,10,10,10);
+            g.fillRect(0,20,10,10);
+            g.fillRect(10,20,10,10);
+        }
+
+        //draw a yellow T-shaped piece
+        private void paintTPiece(Graphics g) {
+            g.setColor(Color.yellow);
+            g.fillRect(0,0,10,10);
+            g.fillRect(10,0,10,10);
+            g.fillRect(20,0,10,10);
+            g.fillRect(10,10,10,10);
+
+        }
+
+        //draw a blue Z-shaped piece
+        private void paintZPiece(Graphics g) {
+            g.setColor(Color.blue);
+            g.fillRect(0,0,10,10);
+            g.fillRect(10,0,10,10);
+            g.fillRect(10,10,10,10);
+            g.fillRect(20,10,10,10);
+        }
+
+        //draw an orange cube piece
+        private void paintCubePiece(Graphics g) {
+            g.setColor(Color.orange);
+            g.fillRect(0,0,10,10);
+            g.fillRect(10,0,10,10);
+            g.fillRect(0,10,10,10);
+            g.fillRect(10,10,10,10);
+        }
+
+        //draw a green long piece
+        private void paintLongPiece(Graphics g) {
+            g.setColor(Color.green);
+            g.fillRect(0,0,10,10);
+            g.fillRect(0,10,10,10);
+            g.fillRect(0,20,10,10);
+            g.fillRect(0,30,10,10);
+        }
+    }
+    //add points scored and change the label which displays the score in the JPanel
+    public void addPoints(int points) {
+        this.points += points;
+        pointsLabel.setText(Integer.toString(this.points));
+    }
+
+    public int getPoints() {
+        return points;
+    }
+
+    //show the best score the player ever finished a game with
+    public void setBest(int best) {
+        this.best = best;
+        bestLabel.setText(Integer.toString(best));
+    }
+
+    public int getBest() {
+        return best;
+    }
+}
@@ -0,0 +1,82 @@
+package com.mx85.main;
+
+import com.mx85.engine.GameSnapshot;
+import com.mx85.net.Protocol;
+import com.mx85.net.SpectatorClient;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+/*
+ * Both boards of a match watched over the network, side by side and drawn the way a
+ * local game is: a BoardView each with the score and next piece in a ResultPanel under
+ * it. Every frame picks up the newest snapshots the SpectatorClient published, so the
+ * network thread and the EDT never wait for each other.
+ */
+public class SpectatorView extends JFrame {
+
+    private static final int FRAME_DELAY = 16;
+
+    private final SpectatorClient client;
+    private final BoardView[] boards = new BoardView[2];
+    private final ResultPanel[] results = new ResultPanel[2];
+    private final long[] shown = {-1, -1};
+    private String title = "";
+
+    //call on the EDT with a client that is connected, the view starts it
+    public SpectatorView(SpectatorClient client) {
+        super("Tetris spectator");
+        this.client = client;
+        int cellSize = BoardView.fitCellSize(client.getWidth(), client.getHeight(), 600, 800);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setLayout(new GridLayout(1, 2, 8, 0));
+        for (int p = 0; p < 2; p++) {
+            boards[p] = new BoardView(client.getWidth(), client.getHeight(), cellSize);
+            results[p] = new ResultPanel();
+            JPanel panel = new JPanel(new BorderLayout());
+            panel.add(boards[p], BorderLayout.CENTER);
+            panel.add(results[p], BorderLayout.SOUTH);
+            add(panel);
+        }
+        pack();
+        setVisible(true);
+        new Timer(FRAME_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showLatest();
+            }
+        }).start();
+        client.start();
+    }
+
+    private void showLatest() {
+        for (int p = 0; p < 2; p++) {
+            GameSnapshot snapshot = client.latest(p);
+            if (snapshot.getSequence() == shown[p])
+                continue;
+            shown[p] = snapshot.getSequence();
+            boards[p].show(snapshot);
+            if (snapshot.getScore() != results[p].getPoints())
+                results[p].addPoints(snapshot.getScore() - results[p].getPoints());
+            results[p].setPieceTypes(snapshot);
+        }
+        String status = status();
+        if (!status.equals(title)) {
+            title = status;
+            setTitle(status);
+        }
+    }
+
+    private String status() {
+        String match = "Tetris spectator: match " + client.getMatchId() + ", player " + client.getPlayerId(0)
+                + " vs " + client.getPlayerId(1);
+        int winner = client.getWinner();
+        if (winner == Protocol.NONE)
+            return match + ", no winner";
+        if (winner >= 0)
+            return match + ", player " + client.getPlayerId(winner) + " won";
+        return client.isRunning() ? match : match + " (disconnected)";
+    }
+}
@@ -0,0 +1,93 @@
+package com.mx85.main;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.engine.Shape;
+
+import java.util.SplittableRandom;
+
+/*
+ * Stress mode for oversized boards (up to about 1024 columns by 4096 rows). The game
+ * runs headless against the engine board, no Swing component is ever created, and every
+ * piece is steered to a random column and rotation so the whole width fills up.
+ * Throughput is printed once per second.
+ */
+public class StressTest {
+
+    private final Game game;
+    private final SplittableRandom random;
+
+    private long moves;
+    private int games = 1;
+
+    public StressTest(int width, int height, long seed) {
+        //pieces and steering come from the same seed, so a run can be repeated exactly
+        this.game = new Game(width, height, new PieceGenerators.Uniform(seed));
+        this.random = new SplittableRandom(seed ^ 0x9e3779b97f4a7c15L);
+    }
+
+    //plays games back to back until the time is up and reports moves, pieces and lines per second
+    public void run(int seconds) {
+        Game game = this.game;
+        int width = game.getBoard().getWidth();
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long nextReport = start + 1_000_000_000L;
+        long reportedMoves = 0;
+        while (true) {
+            playPiece(width);
+            if (game.isGameOver()) {
+                report(System.nanoTime() - start);
+                game.reset();
+                games++;
+            }
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                System.out.println(String.format("%,d moves/s, stack top at row %d", moves - reportedMoves,
+                        game.getBoard().getStackTop()));
+                reportedMoves = moves;
+                nextReport += 1_000_000_000L;
+            }
+            if (now >= end)
+                break;
+        }
+        report(System.nanoTime() - start);
+    }
+
+    //rotate a random number of times, slide towards a random column and drop until the piece locks
+    private void playPiece(int width) {
+        int rotations = random.nextInt(4);
+        for (int i = 0; i < rotations; i++) {
+            move(Shape.DIRECTION.ROTATE);
+        }
+        int target = random.nextInt(width);
+        Shape.DIRECTION side = target < game.getCurrentShape().getX() ? Shape.DIRECTION.LEFT : Shape.DIRECTION.RIGHT;
+        while (game.getCurrentShape().getX() != target && move(side)) {
+        }
+        int pieces = game.getPieces();
+        while (game.getPieces() == pieces && !game.isGameOver()) {
+            move(Shape.DIRECTION.DOWN);
+        }
+    }
+
+    private boolean move(Shape.DIRECTION direction) {
+        moves++;
+        return game.move(direction);
+    }
+
+    private void report(long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.println(String.format("game %d on %dx%d: %d pieces, %d lines, score %d (%,.0f moves/s overall)",
+                games, game.getBoard().getWidth(), game.getBoard().getHeight(), game.getPieces(), game.getLines(),
+                game.getScore(), moves / seconds));
+    }
+
+    //usage: StressTest [width] [height] [seconds] [seed]
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        new StressTest(width, height, seed).run(seconds);
+    }
+}
@@ -8,12 +8,41 @@ Commented on: Monday March 6th 2017
 package com.mx85.main;
 
 // import relevant libraries 
+import com.mx85.engine.AutoRepeat;
+import com.mx85.engine.Command;
+import com.mx85.engine.Game;
+import com.mx85.engine.GravityCurve;
+import com.mx85.engine.GameSnapshot;
+import com.mx85.engine.GameState;
+import com.mx85.engine.PieceGenerator;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.engine.Simulation;
+import com.mx85.metrics.Counter;
+import com.mx85.metrics.GameEvents;
+import com.mx85.metrics.Histogram;
+import com.mx85.metrics.MetricsRegistry;
+import com.mx85.metrics.MetricsServer;
+import com.mx85.replay.Replay;
+import com.mx85.replay.ReplayReader;
+import com.mx85.replay.ReplayWriter;
+import com.mx85.replay.SaveGame;
+import com.mx85.scores.PlayerStats;
+import com.mx85.scores.ScoreRecord;
+import com.mx85.scores.ScoreStore;
+import com.mx85.sim.Autoplayer;
 import javax.swing.*;
 import javax.swing.plaf.metal.MetalLookAndFeel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
 
 //define main class to create the Tetris game and perform all logic in the game
 //also creates the board for players to see, movement of pieces on board, and scoring logic
@@ -22,23 +51,118 @@ public class TetrisGame extends JFrame {
 /*define all relevant variables
 * all private classes and variables are private as opposed to public in order to reduce coupling
 */
-    private GameLooper gameLooper; //GameLooper type is defined later in this file, gameLooper is an instance of GameLooper allowing repeated update of the board
-    private Timer timer; //this variable will be used to speed up and slow down the speed of the falling tiles
+    private GameLooper gameLooper; //GameLooper type is defined later in this file, gameLooper is an instance of GameLooper allowing repeated update of the screen
+    private Timer timer; //this variable drives the frames, every frame picks up the latest state of the game
 
-    private int normalSpeed = 200; //the normal falling speed of tiles
-    private int highSpeed = 50; //quicker flling speed of tiles
+    private int frameDelay = 16; //time between two frames, about 60 frames per second whatever the falling speed
+    private boolean showTimings = false; //whether the timing overlay is drawn over the board, toggled with F3
+    private boolean playback = false; //whether a recorded game is shown instead of a live one
+    private Autoplayer autoplayer; //the bot that plays the game while autoplay is on, created the first time it is turned on
+    private ScoreStore scores; //where finished games are kept, null when there is none or the game is a replay
+    private String player = System.getProperty("tetris.player", System.getProperty("user.name")); //name the scores are kept under
 
-    private JPanel boardPanel = new JPanel(); //variable for theactual frame where the board will be seen
+    private BoardView boardView; //the component where the board will be seen, it paints the whole board itself
     private ResultPanel resultPanel = new ResultPanel(); //will display the score of the game and the next piece
 
-    private JButton[][] cells = new JButton[20][20]; /*each unit on the screen is a cell and will be used to depict whether 
-    * or not the cell has a part of a piece on it, or if there are points to be allotted; implemented as a button 
-	*/
-    //tetris game constructor
+    private Histogram renderTime = new Histogram("render"); //time the frames that showed a new snapshot took to update the views
+    private Counter renders = new Counter(); //frames that showed a new snapshot
+
+    private Simulation simulation; /*runs the headless game on its own thread with a fixed timestep: gravity (which gets faster
+    * with every level), moves, collision, rows and scoring, the frame only ever sees the snapshots it publishes
+    */
+
+    //tetris game constructor for the classic 20x20 board
     public TetrisGame() {
+        this(20, 20);
+    }
+
+    //tetris game constructor for a board of any size, each cell is drawn up to 20 pixels wide so big boards still fit on screen
+    public TetrisGame(int width, int height) {
         super("Tetris");
-        this.setSize(400, 500); //set the size of the board
-        this.setVisible(true); //make sure the board is visible
+        //auto-repeat timings in ticks can be tuned with -Dtetris.das and -Dtetris.arr
+        AutoRepeat autoRepeat = new AutoRepeat(Integer.getInteger("tetris.das", AutoRepeat.DEFAULT_DAS),
+                Integer.getInteger("tetris.arr", AutoRepeat.DEFAULT_ARR));
+        //the randomizer and its seed can be chosen with -Dtetris.generator (uniform, bag or history) and -Dtetris.seed
+        PieceGenerator generator = PieceGenerators.create(System.getProperty("tetris.generator", "uniform"),
+                Long.getLong("tetris.seed", PieceGenerators.randomSeed()));
+        Game game = new Game(width, height, GravityCurve.classic(), autoRepeat, generator, Game.DEFAULT_PREVIEW);
+        simulation = new Simulation(game);
+        startRecording(game);
+        openScores();
+        showGame(width, height);
+        //-Dtetris.autoplay=true starts the game with the bot playing
+        if(Boolean.getBoolean("tetris.autoplay"))
+            toggleAutoplay();
+    }
+
+    //watch a recorded game at a multiple of the normal speed, + and - double and halve the speed while it plays
+    public TetrisGame(ReplayReader replay, double speed) {
+        super("Tetris replay");
+        playback = true;
+        simulation = new Simulation(replay.getHeader().createGame());
+        simulation.play(replay);
+        simulation.setSpeed(speed);
+        setTitle("Tetris replay x" + simulation.getSpeed());
+        showGame(replay.getHeader().getWidth(), replay.getHeader().getHeight());
+    }
+
+    /*every game is recorded into the directory given by -Dtetris.replays (replays by default, empty for none) so a bug
+    * report or a score can be played back later; a game that cannot be recorded is still played
+    */
+    private void startRecording(Game game) {
+        String directory = System.getProperty("tetris.replays", "replays");
+        if(directory.isEmpty())
+            return;
+        Path path = Paths.get(directory, "tetris-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + Replay.EXTENSION);
+        try {
+            Files.createDirectories(path.getParent());
+            simulation.record(ReplayWriter.create(path, game));
+            System.out.println("recording to " + path);
+        } catch (IOException e) {
+            System.err.println("not recording: " + e);
+        }
+    }
+
+    /*every finished game goes into the score store given by -Dtetris.scores (scores/scores.tsl by default, empty for
+    * none) under the name given by -Dtetris.player; a game whose scores cannot be kept is still played
+    */
+    private void openScores() {
+        String file = System.getProperty("tetris.scores", "scores/scores.tsl");
+        if(file.isEmpty())
+            return;
+        try {
+            scores = ScoreStore.open(Paths.get(file));
+            PlayerStats stats = scores.player(player);
+            if(stats != null)
+                resultPanel.setBest(stats.getBestScore());
+        } catch (IOException e) {
+            System.err.println("no score store: " + e);
+        }
+    }
+
+    /*hand the finished game to the score store, the record is taken on the simulation thread that owns the game and the
+    * store only queues it, so neither the simulation nor this frame waits for the disk
+    */
+    private void keepScore() {
+        if(scores == null)
+            return;
+        final String name = simulation.getAutopilot() != null ? player + " (bot)" : player;
+        simulation.execute(new Runnable() {
+            @Override
+            public void run() {
+                Game game = simulation.getGame();
+                if(!game.isGameOver())
+                    return; //a quick load went back to a game still going
+                scores.submit(new ScoreRecord(name, game.getScore(), game.getLines(), game.getPieces(),
+                        game.getTicks() * 1000 / Simulation.TICKS_PER_SECOND, game.getGenerator().getSeed(),
+                        System.currentTimeMillis()));
+            }
+        });
+    }
+
+    //build the frame around the simulation and start both
+    private void showGame(int width, int height) {
+        boardView = new BoardView(width, height, BoardView.fitCellSize(width, height, 1200, 800));
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); //close the game when the x button in the top right is clicked
         try {
             UIManager.setLookAndFeel(new MetalLookAndFeel()); //make the user interface metallic-looking
@@ -49,288 +173,261 @@ public class TetrisGame extends JFrame {
         this.setLayout(new GridLayout()); 
 
         this.setLayout(new BorderLayout());
-        this.add(boardPanel, BorderLayout.CENTER); //centre the board within the border
+        this.add(boardView, BorderLayout.CENTER); //centre the board within the border
         this.add(resultPanel, BorderLayout.SOUTH); // display the results near the bottom of the border
 
         /*a listener on keyboard key presses, with left and right keys controlling the direction of movement of a falling piece
-        * (referred to as Shape), up to rotate the orientation of the piece, and down to speed up the rate at which the piece falls
+        * (referred to as Shape), up to rotate the orientation of the piece, down to speed up the rate at which the piece falls
+        * while it is held and space to drop it straight down. held keys repeat inside the game (DAS and ARR), so both presses
+        * and releases are only queued for the simulation thread, which applies them once per tick
         */
         KeyboardFocusManager.getCurrentKeyboardFocusManager()
                 .addKeyEventDispatcher(new KeyEventDispatcher() {
                     @Override
                     public boolean dispatchKeyEvent(KeyEvent e) {
-                        if(e.getID() == KeyEvent.KEY_LAST) {
-                            int key = e.getKeyCode();
-                            if(!timer.isRunning())
-                                timer.start();
-                            switch (key) {
-                                case KeyEvent.VK_LEFT:
-                                    gameLooper.move(com.mx85.main.Shape.DIRECTION.LEFT); //move the tetris piece left upon left key press
-                                    break;
-                                case KeyEvent.VK_RIGHT:
-                                    gameLooper.move(com.mx85.main.Shape.DIRECTION.RIGHT); //move the tetris piece right upon right key press
-                                    break;
-                                case KeyEvent.VK_UP:
-                                    gameLooper.move(com.mx85.main.Shape.DIRECTION.ROTATE); //rotate the tetris piece upon up key press
-                                    break;
-                                case KeyEvent.VK_DOWN:
-                                    timer.setDelay(highSpeed); //speed up the falling of the tetris piece upon down key press
-                                    break;
-                                case KeyEvent.VK_P: 
-                                    timer.stop(); //pause the game when P key is pressed, as all movement is tied to the timer
-                                    break;
+                        if(e.getID() != KeyEvent.KEY_PRESSED && e.getID() != KeyEvent.KEY_RELEASED)
+                            return false;
+                        if(e.getKeyCode() == KeyEvent.VK_F3) {
+                            if(e.getID() == KeyEvent.KEY_PRESSED) {
+                                showTimings = !showTimings; //show or hide the tick and input latency overlay
+                                if(!showTimings)
+                                    boardView.setOverlay(null);
+                            }
+                            return false;
+                        }
+                        if(playback && e.getID() == KeyEvent.KEY_PRESSED && changeSpeed(e.getKeyCode()))
+                            return false;
+                        if(!playback && (e.getKeyCode() == KeyEvent.VK_F5 || e.getKeyCode() == KeyEvent.VK_F9)) {
+                            if(e.getID() == KeyEvent.KEY_PRESSED) {
+                                if(e.getKeyCode() == KeyEvent.VK_F5)
+                                    quickSave(); //put the game away as it is now
+                                else
+                                    quickLoad(); //go back to the last quick save
                             }
+                            return false;
+                        }
+                        if(!playback && e.getKeyCode() == KeyEvent.VK_A) {
+                            if(e.getID() == KeyEvent.KEY_PRESSED)
+                                toggleAutoplay(); //let the bot play the game or take it back
+                            return false;
+                        }
+                        int command = commandFor(e.getKeyCode());
+                        if(command == Command.NONE)
+                            return false;
+                        if(e.getID() == KeyEvent.KEY_RELEASED) {
+                            if(command == Command.PAUSE)
+                                return false; //pause toggles on the press only
+                            command = Command.release(command);
+                        }
+                        GameEvents.Input event = new GameEvents.Input();
+                        event.begin();
+                        simulation.submit(command);
+                        if(event.shouldCommit()) {
+                            event.command = command;
+                            event.release = Command.isRelease(command);
+                            event.commit();
                         }
                         return false;
                     }
                 });
 
-        //actually constucting the cells of the board in a 2D 20x20 array cells, making the buttons visible, colouring them opaque light grey, and then actually adding the cells to the board
-        boardPanel.setLayout(new GridLayout(20,20));
-        for(int i = 0; i < cells.length; i++) {
-            for(int j = 0; j < cells[i].length; j++) {
-                cells[j][i] = new JButton();
-                cells[j][i].setEnabled(false);
-                cells[j][i].setBackground(Color.lightGray);
-                cells[j][i].setOpaque(true);
-                boardPanel.add(cells[j][i]);
-            }
-        }
+        this.pack(); //size the frame around the board and the results
+        this.setVisible(true); //make sure the board is visible
 
-       //create a GameLooper, which is this game's update method (see below)
+       //create a GameLooper, which is this game's update method for the screen (see below), and start the game itself
        gameLooper = new GameLooper();
-       timer = new Timer(normalSpeed, gameLooper);
+       timer = new Timer(frameDelay, gameLooper);
        timer.start();
+       simulation.start();
+       startMetrics();
+
+       //finish the recording, write the last scores and print the timing histograms when the game exits, so every session leaves numbers behind
+       Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+           @Override
+           public void run() {
+               simulation.stop();
+               if(scores != null) {
+                   try {
+                       scores.close();
+                   } catch (IOException e) {
+                       System.err.println("score store not closed: " + e);
+                   }
+               }
+               simulation.printStats(System.err);
+           }
+       }, "tetris-stats"));
     }
-    //java label displaying the score and next tetris piece
-    private class ResultPanel extends JPanel {
-
-        private JLabel pointsTextLabel = new JLabel("Points: ");
-        private JLabel pointsLabel = new JLabel("0");
-        private JLabel nextLabel = new JLabel("Next: ");
-        private NextPieceType nextType = new NextPieceType();
-        private int points = 0;
-
-        public ResultPanel() {
-            setPreferredSize(new Dimension(40, 60));
-
-            //add labels to the panel of scores and next pieces
-            this.setLayout(new GridLayout(2, 2));
-            this.add(pointsTextLabel);
-            this.add(pointsLabel);
-            this.add(nextLabel);
-            this.add(nextType);
+    /*-Dtetris.metrics.port serves the timings, counts and score of the game in the Prometheus text format at
+    * http://127.0.0.1:<port>/metrics while it runs; the flight recorder events of GameEvents need no property
+    */
+    private void startMetrics() {
+        Integer port = Integer.getInteger("tetris.metrics.port");
+        if(port == null)
+            return;
+        MetricsRegistry registry = new MetricsRegistry();
+        simulation.registerMetrics(registry);
+        registry.histogram("tetris_render_seconds", "Time a frame took to show a new snapshot", renderTime,
+                MetricsRegistry.NANOS_TO_SECONDS);
+        registry.counter("tetris_renders_total", "Frames that showed a new snapshot", renders);
+        try {
+            MetricsServer server = MetricsServer.start(registry, port);
+            System.out.println("metrics at http://127.0.0.1:" + server.getPort() + MetricsServer.PATH);
+        } catch (IOException e) {
+            System.err.println("no metrics: " + e); //the game is played without them
         }
+    }
 
-        //choose the kind of piece which will be the next piece to fall
-        public void setPieceType(com.mx85.main.Shape.PIECE piece) {
-            nextType.setPieceType(piece);
+    /*turn the bot on or off, the player's keys keep working while it plays. the bot searches its moves on the simulation
+    * thread with the help of the common fork-join pool, within a time budget per piece so it keeps up with any gravity
+    */
+    private void toggleAutoplay() {
+        if(simulation.getAutopilot() != null) {
+            simulation.setAutopilot(null);
+            setTitle("Tetris");
+            return;
         }
+        if(autoplayer == null)
+            autoplayer = Autoplayer.configured(ForkJoinPool.commonPool());
+        simulation.setAutopilot(autoplayer);
+        setTitle("Tetris (autoplay)");
+    }
 
-        //choose the kind of piece which will be the next piece to fall
-        private class NextPieceType extends JComponent {
-
-            private com.mx85.main.Shape.PIECE nextPiece;
-
-            public void setPieceType(com.mx85.main.Shape.PIECE piece) {
-                this.nextPiece = piece;
-            }
+    //the file F5 saves to and F9 loads from, -Dtetris.saves names the directory (saves by default)
+    private static Path quickSavePath() {
+        return Paths.get(System.getProperty("tetris.saves", "saves"), "quick" + SaveGame.EXTENSION);
+    }
 
-            /*creating the pieces to be displayed dependent on which piece is the next piece
-            * the possible pieces are: cube, long, L-shaped, T-shaped, and Z-shaped
-            */
+    //save the game between two ticks of the simulation thread, the save is small enough to be written right there
+    private void quickSave() {
+        final Path path = quickSavePath();
+        simulation.execute(new Runnable() {
             @Override
-            protected void paintComponent(Graphics g) {
-                switch (nextPiece) {
-                    case CUBEPIECE:
-                        paintCubePiece(g);
-                        break;
-                    case LONGPIECE:
-                        paintLongPiece(g);
-                        break;
-                    case LPIECE:
-                        paintLPiece(g);
-                        break;
-                    case TPIECE:
-                        paintTPiece(g);
-                        break;
-                    case ZPIECE:
-                        paintZPiece(g);
-                        break;
+            public void run() {
+                try {
+                    SaveGame.save(path, simulation.getGame().save());
+                    System.out.println("saved to " + path);
+                } catch (IOException e) {
+                    System.err.println("not saved: " + e);
                 }
             }
+        });
+    }
 
-            /*Once the switch-case chooses a piece type based on the nextPiece 
-            * these functions actually draw the pieces
-            */
-            //draw a red L-shaped piece
-            private void paintLPiece(Graphics g) {
-                g.setColor(Color.red);
-                g.fillRect(0,0,10,10);
-                g.fillRect(0,10,10,10);
-                g.fillRect(0,20,10,10);
-                g.fillRect(10,20,10,10);
-            }
-
-            //draw a yellow T-shaped piece
-            private void paintTPiece(Graphics g) {
-                g.setColor(Color.yellow);
-                g.fillRect(0,0,10,10);
-                g.fillRect(10,0,10,10);
-                g.fillRect(20,0,10,10);
-                g.fillRect(10,10,10,10);
-
-            }
-
-            //draw a blue Z-shaped piece
-            private void paintZPiece(Graphics g) {
-                g.setColor(Color.blue);
-                g.fillRect(0,0,10,10);
-                g.fillRect(10,0,10,10);
-                g.fillRect(10,10,10,10);
-                g.fillRect(20,10,10,10);
+    //read the quick save here and jump to it between two ticks, the game goes on from the saved state
+    private void quickLoad() {
+        Path path = quickSavePath();
+        final GameState state;
+        try {
+            state = SaveGame.load(path);
+        } catch (IOException e) {
+            System.err.println("not loaded: " + e);
+            return;
+        }
+        simulation.execute(new Runnable() {
+            @Override
+            public void run() {
+                simulation.restore(state);
             }
+        });
+    }
 
-            //draw an orange cube piece
-            private void paintCubePiece(Graphics g) {
-                g.setColor(Color.orange);
-                g.fillRect(0,0,10,10);
-                g.fillRect(10,0,10,10);
-                g.fillRect(0,10,10,10);
-                g.fillRect(10,10,10,10);
-            }
+    //+ doubles and - halves the playback speed, returns whether the key was one of them
+    private boolean changeSpeed(int key) {
+        if(key == KeyEvent.VK_EQUALS || key == KeyEvent.VK_PLUS || key == KeyEvent.VK_ADD)
+            simulation.setSpeed(simulation.getSpeed() * 2);
+        else if(key == KeyEvent.VK_MINUS || key == KeyEvent.VK_SUBTRACT)
+            simulation.setSpeed(simulation.getSpeed() / 2);
+        else
+            return false;
+        setTitle("Tetris replay x" + simulation.getSpeed());
+        return true;
+    }
 
-            //draw a green long piece
-            private void paintLongPiece(Graphics g) {
-                g.setColor(Color.green);
-                g.fillRect(0,0,10,10);
-                g.fillRect(0,10,10,10);
-                g.fillRect(0,20,10,10);
-                g.fillRect(0,30,10,10);
-            }
-        }
-       //add points scored and change the label which displays the score in the JPanel
-        public void addPoints(int points) {
-            this.points += points;
-            pointsLabel.setText(Integer.toString(this.points));
+    //the game command for a key, Command.NONE for keys the game does not use
+    private static int commandFor(int key) {
+        switch (key) {
+            case KeyEvent.VK_LEFT: return Command.LEFT; //move the tetris piece left upon left key press
+            case KeyEvent.VK_RIGHT: return Command.RIGHT; //move the tetris piece right upon right key press
+            case KeyEvent.VK_UP: return Command.ROTATE; //rotate the tetris piece upon up key press
+            case KeyEvent.VK_DOWN: return Command.SOFT_DROP; //speed up the falling of the tetris piece while down is held
+            case KeyEvent.VK_SPACE: return Command.HARD_DROP; //drop the tetris piece straight down upon space key press
+            case KeyEvent.VK_P: return Command.PAUSE; //pause the game when P key is pressed, gravity stops until the next key press
+            default: return Command.NONE;
         }
     }
 
-    //this class essentially implements an update method, it will perform a series of actions to update the board
+    /*this class essentially implements an update method for the screen, every frame it picks up the latest snapshot
+    * published by the simulation thread and mirrors it, the game logic itself never runs on this thread
+    */
     private class GameLooper implements ActionListener {
 
-        private com.mx85.main.Shape currentShape;
-        private com.mx85.main.Shape nextShape;
+        private long shownSequence = -1; //sequence of the snapshot currently on screen
+        private int frames = 0; //frames shown, used to refresh the timing overlay twice a second
+        private boolean over = false; //whether the snapshot on screen is of a finished game
 
-        /*create the next piece by choosing a random piece and the next piece from the 
-        * PieceFactory class, and letting the player know which piece will fall next. 
-        * PieceFactory includes logic for creating the game pieces and testing whether or not
-        * the piece can be drawn on the board, ie. is there another piece in the way, 
-        * redrawing the pieces in the new position, and erasing the old piece position
-        */
-        public GameLooper() {
-            currentShape = PieceFactory.createRandomPiece();
-            nextShape = PieceFactory.createRandomPiece();
-            resultPanel.setPieceType(nextShape.getPieceType());
-        }
-
-        //this function continually calls the dropPiece function every fram
+        //this function is called every frame by the timer
         @Override
         public void actionPerformed(ActionEvent e) {
-            dropPiece();
-        }
-
-        /*this function calls the move function in the same class to move the piece down on the board
-        * making it seem like the piece is dropping down
-        * it then repaints the piece to actually draw it in the new position
-        */
-        public void dropPiece() {
-            move(com.mx85.main.Shape.DIRECTION.DOWN);
-            repaint();
-        }
-
-        //this function implements movement of falling pieces
-        public void move(com.mx85.main.Shape.DIRECTION direction) {
-            switch (direction) {
-                case DOWN:
-                    /*this branch checks if there is no space to move the piece into the cells below it
-                    * if there is no space, it makes the next shape in the queue begin to fall and chooses another shape to be the next shape
-                    * it sets the falling of the next shape to be of normal speed
-                    */
-                    if(!currentShape.move(com.mx85.main.Shape.DIRECTION.DOWN, cells)) {
-                        currentShape = nextShape;
-                        nextShape = PieceFactory.createRandomPiece();
-                        resultPanel.setPieceType(nextShape.getPieceType());
-                        timer.setDelay(normalSpeed);
-                        if(isGameOver(currentShape))
-                        {
-                        	timer.stop();
-                        }
-                        checkRows(); //the checkrows function is called to check whether or not the player has scored a point by clearing a line of tiles
-                    }
-                    break;
-                    //move the pieces left or right or rotate them
-                case RIGHT:
-                    currentShape.move(com.mx85.main.Shape.DIRECTION.RIGHT, cells);
-                    break;
-                case LEFT:
-                    currentShape.move(com.mx85.main.Shape.DIRECTION.LEFT, cells);
-                    break;
-                case ROTATE:
-                    currentShape.move(com.mx85.main.Shape.DIRECTION.ROTATE, cells);
-                    break;
-                default:
+            showLatest();
+            if(showTimings && frames++ % 30 == 0) {
+                showTimings();
             }
         }
 
-        /*this fucntion checks if all rows of the game space is full of tiles (not grey)
-        * if they are grey (there is not a tile there), the player does not score
+        /*this function paints the latest state of the game if it changed since the last frame
+        * the board view repaints only the cells that changed, the result panel gets the points scored since
+        * the last frame and the pieces that will fall next
         */
-        private void checkRows() {
-            for(int y = 0; y < 20; y++) {
-                boolean scored = true;
-                for(int x = 0; x < 20; x++) {
-                   if(cells[x][y].getBackground().equals(Color.lightGray)) {
-                       scored = false;
-                   }
-                }
-                //if the player scores, delete the row of tiles by calling the deleterow function and add 10 points to the score
-                if(scored) {
-                    deleteRow(y);
-                    y = y - 1;
-                    resultPanel.addPoints(10);
+        private void showLatest() {
+            GameSnapshot snapshot = simulation.latestSnapshot();
+            if(snapshot.getSequence() == shownSequence)
+                return;
+            long start = System.nanoTime();
+            GameEvents.Render event = new GameEvents.Render(); //the render pass, for the flight recorder
+            event.begin();
+            shownSequence = snapshot.getSequence();
+            boardView.show(snapshot);
+            if(snapshot.getInputNanos() != 0) {
+                simulation.inputDisplayed(snapshot.getInputNanos()); //the key press that led to this frame is now on screen
+            }
+            boolean scored = snapshot.getScore() != resultPanel.getPoints();
+            if(scored) { //a loaded game can have fewer points than the one it replaced
+                resultPanel.addPoints(snapshot.getScore() - resultPanel.getPoints());
+            }
+            resultPanel.setPieceTypes(snapshot);
+            if(snapshot.isGameOver() != over) { //the game just ended, or a quick load brought it back
+                over = snapshot.isGameOver();
+                if(over && !playback) {
+                    resultPanel.setBest(Math.max(resultPanel.getBest(), snapshot.getScore()));
+                    keepScore();
                 }
             }
+            renderTime.record(System.nanoTime() - start);
+            renders.increment();
+            if(event.shouldCommit()) {
+                event.sequence = shownSequence;
+                event.score = snapshot.getScore();
+                event.scoreChanged = scored;
+                event.commit();
+            }
         }
 
-        //this function deletes the row by setting the background color or the tile to the correct colour, the color of a tile or the colour of the board
-        private void deleteRow(int start) {
-            for(int y = start; y > 0; y--) {
-                for(int x = 0; x < 20; x++) {
-                    if(y > 0)
-                        cells[x][y].setBackground(cells[x][y-1].getBackground());
-                    else
-                        cells[x][y].setBackground(Color.lightGray);
-                }
-            }
+        //draw the level and the timing histograms over the board
+        private void showTimings() {
+            GameSnapshot snapshot = simulation.latestSnapshot();
+            boardView.setOverlay(new String[] {
+                    "level " + snapshot.getLevel() + ", tick " + snapshot.getTicks(),
+                    timing("late", simulation.getTickLateness()),
+                    timing("tick", simulation.getTickDuration()),
+                    timing("input", simulation.getInputLatency()),
+                    timing("render", renderTime),
+            });
         }
-        
-        /*this function takes the currently falling shape and checks if it falls in a place which is completely on the board
-        * if the piece is not completely on the board, the game is over and the function returns true,
-        * ie. the game is over, to the calling function
-        */
-        public boolean isGameOver(Shape currentShape)
-        {
-        	
-        	for(int i=0;i<4;i++)
-        		for (int j=0;j<4;j++)
-        	if (!cells[	currentShape.cords[0][i]][currentShape.cords[1][j]].getBackground().equals(Color.lightGray))
-        	{
-        		return true;
-        	}
-        	
-        
-        	return false;
+
+        //short form of a histogram in milliseconds so it fits over a small board
+        private String timing(String name, Histogram histogram) {
+            return String.format("%s p50 %.2f p99 %.2f max %.2f ms", name, histogram.getPercentile(50) / 1e6,
+                    histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6);
         }
     }
 }
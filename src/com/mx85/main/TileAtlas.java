@@ -0,0 +1,66 @@
+package com.mx85.main;
+
+import com.mx85.engine.Board;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Every cell colour of the board pre-rendered once into one image at a given size,
+ * tile i holding colour index i with the colours of PieceColors and the grid lines
+ * BoardView draws, so a cell is drawn as a single copy out of the atlas instead of a
+ * fill and two lines. Atlases are shared by size; use them on the EDT only.
+ */
+final class TileAtlas {
+
+    private static final Color GRID = new Color(0xb0b0b0);
+    private static final int COLORS = Board.GARBAGE + 1;
+    private static final Map<Integer, TileAtlas> BY_SIZE = new HashMap<Integer, TileAtlas>();
+
+    private final int size;
+    private final BufferedImage image;
+
+    private TileAtlas(int size) {
+        this.size = size;
+        this.image = new BufferedImage(COLORS * size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (int i = 0; i < COLORS; i++) {
+                int px = i * size;
+                g.setColor(PieceColors.colorOf((byte) i));
+                if (size < 4) {
+                    g.fillRect(px, 0, size, size);
+                    continue;
+                }
+                g.fillRect(px + 1, 1, size - 1, size - 1);
+                g.setColor(GRID);
+                g.drawLine(px, 0, px + size - 1, 0);
+                g.drawLine(px, 0, px, size - 1);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    //the atlas of tiles size pixels wide, rendered the first time it is asked for
+    static TileAtlas of(int size) {
+        TileAtlas atlas = BY_SIZE.get(size);
+        if (atlas == null) {
+            atlas = new TileAtlas(size);
+            BY_SIZE.put(size, atlas);
+        }
+        return atlas;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    //copy the tile of a colour index with its top left corner at pixel (px, py)
+    void draw(Graphics g, byte color, int px, int py) {
+        int sx = color * size;
+        g.drawImage(image, px, py, px + size, py + size, sx, 0, sx + size, size, null);
+    }
+}
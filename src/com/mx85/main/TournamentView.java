@@ -0,0 +1,93 @@
+package com.mx85.main;
+
+import com.mx85.engine.GameSnapshot;
+import com.mx85.metrics.Histogram;
+import com.mx85.sim.Tournament;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Every game of a Tournament in one window: a single BoardGrid draws all the boards, so
+ * a hundred games are one component rather than a BoardView and a ResultPanel each.
+ * Every frame picks up the newest snapshot of every game and shows the ones that moved
+ * on; the title gives the mean score of every strategy, the frame rate and the time a
+ * frame took, so a slow frame shows up at once.
+ */
+public class TournamentView extends JFrame {
+
+    private static final int FRAME_DELAY = 16;
+    private static final long TITLE_NANOS = 1_000_000_000L;
+
+    private final Tournament tournament;
+    private final BoardGrid grid;
+    private final Histogram frameTime = new Histogram("frame");
+    private long titleNanos = System.nanoTime();
+    private int frames;
+
+    //call on the EDT, the view starts the tournament
+    public TournamentView(Tournament tournament) {
+        super("Tetris tournament");
+        this.tournament = tournament;
+        String[] labels = new String[tournament.getCount()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = tournament.getPlayer(i);
+        }
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        grid = new BoardGrid(labels.length, tournament.getWidth(), tournament.getHeight(), labels, screen.width - 40,
+                screen.height - 80);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        add(grid);
+        pack();
+        setVisible(true);
+        new Timer(FRAME_DELAY, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                showLatest();
+            }
+        }).start();
+        tournament.start();
+    }
+
+    private void showLatest() {
+        long start = System.nanoTime();
+        for (int i = 0; i < grid.getCount(); i++) {
+            GameSnapshot snapshot = tournament.latest(i);
+            grid.show(i, snapshot, tournament.isFinished(snapshot));
+        }
+        long now = System.nanoTime();
+        frameTime.record(now - start);
+        frames++;
+        if (now - titleNanos >= TITLE_NANOS) {
+            setTitle(status(frames * 1e9 / (now - titleNanos)));
+            titleNanos = now;
+            frames = 0;
+            frameTime.reset();
+        }
+    }
+
+    //mean score of every strategy over its games so far, with the frame rate and frame time
+    private String status(double fps) {
+        Map<String, long[]> scores = new LinkedHashMap<String, long[]>(); //strategy to {total, games}
+        for (int i = 0; i < grid.getCount(); i++) {
+            long[] score = scores.get(tournament.getPlayer(i));
+            if (score == null) {
+                score = new long[2];
+                scores.put(tournament.getPlayer(i), score);
+            }
+            score[0] += tournament.latest(i).getScore();
+            score[1]++;
+        }
+        StringBuilder title = new StringBuilder("Tetris tournament: ").append(grid.getCount()).append(" games");
+        for (Map.Entry<String, long[]> entry : scores.entrySet()) {
+            title.append(", ").append(entry.getKey()).append(' ')
+                    .append(entry.getValue()[0] / entry.getValue()[1]);
+        }
+        return title.append(String.format(", %.0f fps, frame %.2f ms p99", fps, frameTime.getPercentile(99) / 1e6))
+                .toString();
+    }
+}
@@ -0,0 +1,28 @@
+package com.mx85.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A count that only goes up, for MetricsRegistry. Backed by a LongAdder, so threads that
+ * increment it at the same time do not fight over one cache line, and an increment from
+ * a single thread costs one uncontended add. Like a Histogram it can live in the code it
+ * counts for, and be registered later only when the metrics are exported.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long n) {
+        if (n < 0)
+            throw new IllegalArgumentException("a counter cannot go down: " + n);
+        value.add(n);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
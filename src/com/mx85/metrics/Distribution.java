@@ -0,0 +1,85 @@
+package com.mx85.metrics;
+
+/*
+ * Single-threaded counterpart of Histogram with the same log-linear buckets, for
+ * per-thread accumulators: recording is a plain array increment, and distributions
+ * filled on different threads are combined afterwards with merge().
+ */
+public class Distribution {
+
+    private final String name;
+    private final long[] counts = new long[Histogram.BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public Distribution(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts[Histogram.bucketOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    //add everything recorded into other to this one
+    public void merge(Distribution other) {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    //upper bound of the bucket holding the given percentile (0 to 100), capped at the largest value recorded
+    public long getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank)
+                return Math.min(Histogram.bucketLimit(bucket), max);
+        }
+        return max;
+    }
+
+    //one line summary in the unit the values were recorded in
+    public String summary() {
+        return String.format("%s: n=%d mean=%.1f min=%d p50=%d p90=%d p99=%d max=%d", name, count, getMean(),
+                getMin(), getPercentile(50), getPercentile(90), getPercentile(99), max);
+    }
+}
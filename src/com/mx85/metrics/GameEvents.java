@@ -0,0 +1,122 @@
+package com.mx85.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Flight recorder events for the inside of a game, to line up a stutter with what the
+ * game was doing at the time. Each is created, filled and committed where it happens,
+ * after checking isEnabled() or shouldCommit(): without a recording running (or with
+ * the event turned off in its settings) those are false and the JIT removes the event
+ * object altogether, so the instrumented paths cost nothing in normal play or in
+ * headless batches. Record with
+ *
+ *   java -XX:StartFlightRecording=filename=tetris.jfr com.mx85.main.Main
+ *
+ * and open the file in JDK Mission Control, or print it with jfr print --categories Tetris.
+ */
+public final class GameEvents {
+
+    private static final String CATEGORY = "Tetris";
+
+    private GameEvents() {
+    }
+
+    @Name("com.mx85.Tick")
+    @Label("Tick")
+    @Category(CATEGORY)
+    @Description("One fixed timestep of a simulation: input, autopilot, auto-repeat and gravity")
+    @StackTrace(false)
+    public static final class Tick extends Event {
+
+        @Label("Tick")
+        public long tick;
+
+        @Label("Commands Applied")
+        public int commands;
+    }
+
+    @Name("com.mx85.Spawn")
+    @Label("Piece Spawn")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Spawn extends Event {
+
+        @Label("Piece")
+        public String piece;
+
+        @Label("Pieces Before")
+        public int pieces;
+    }
+
+    @Name("com.mx85.Lock")
+    @Label("Piece Lock")
+    @Category(CATEGORY)
+    @Description("A piece came to rest, the rows it covers are checked next")
+    @StackTrace(false)
+    public static final class Lock extends Event {
+
+        @Label("Piece")
+        public String piece;
+
+        @Label("Rotation")
+        public int rotation;
+
+        @Label("Column")
+        public int x;
+
+        @Label("Row")
+        public int y;
+
+        @Label("Stack Height")
+        public int stackHeight;
+    }
+
+    @Name("com.mx85.LineClear")
+    @Label("Line Clear")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class LineClear extends Event {
+
+        @Label("Rows")
+        public int rows;
+
+        @Label("Lines Total")
+        public int lines;
+    }
+
+    @Name("com.mx85.Render")
+    @Label("Render Pass")
+    @Category(CATEGORY)
+    @Description("A frame that showed a new snapshot: board cells, score and preview")
+    @StackTrace(false)
+    public static final class Render extends Event {
+
+        @Label("Snapshot Sequence")
+        public long sequence;
+
+        @Label("Score")
+        public int score;
+
+        @Label("Score Changed")
+        public boolean scoreChanged;
+    }
+
+    @Name("com.mx85.Input")
+    @Label("Input Dispatch")
+    @Category(CATEGORY)
+    @Description("A key press or release handed to the simulation")
+    @StackTrace(false)
+    public static final class Input extends Event {
+
+        @Label("Command")
+        public int command;
+
+        @Label("Release")
+        public boolean release;
+    }
+}
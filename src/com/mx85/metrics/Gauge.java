@@ -0,0 +1,11 @@
+package com.mx85.metrics;
+
+/*
+ * A value read when the metrics are exported rather than pushed on every change, for
+ * MetricsRegistry. get() runs on the exporting thread, so it must only read state that
+ * is safe to read from there (volatile fields, atomics, a Counter or Histogram).
+ */
+public interface Gauge {
+
+    double get();
+}
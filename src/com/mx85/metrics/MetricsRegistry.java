@@ -0,0 +1,154 @@
+package com.mx85.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/*
+ * The metrics of a process by name, exported in the Prometheus text format (version
+ * 0.0.4) by writeTo(), which MetricsServer serves over HTTP. Three kinds are kept:
+ *
+ *   counters    Counters the code increments, or a Gauge read at export for a count
+ *               that is already kept elsewhere (exported with TYPE counter)
+ *   gauges      Gauges read at export, for values that go up and down
+ *   histograms  the lock-free Histograms the code already records into, exported as
+ *               summaries: the 0.5, 0.9, 0.99 and 0.999 quantiles, _sum and _count,
+ *               all multiplied by a scale (1e-9 for nanoseconds to seconds)
+ *
+ * Registering is for startup and may happen on any thread; exporting reads everything
+ * without stopping the threads that record, so one scrape is not an atomic view.
+ */
+public class MetricsRegistry {
+
+    private static final Pattern NAME = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    public static final double NANOS_TO_SECONDS = 1e-9;
+
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<String, Metric> byName = new ConcurrentHashMap<>();
+
+    //a new counter, by convention the name of a counter ends in _total
+    public Counter counter(String name, String help) {
+        Counter counter = new Counter();
+        counter(name, help, counter);
+        return counter;
+    }
+
+    //export a counter the code already increments
+    public void counter(String name, String help, final Counter counter) {
+        add(new Metric(name, help, "counter") {
+            @Override
+            void write(StringBuilder out) {
+                sample(out, name, "", counter.get());
+            }
+        });
+    }
+
+    //a count kept elsewhere, read at export; it must never go down
+    public void counter(String name, String help, final Gauge value) {
+        add(new Metric(name, help, "counter") {
+            @Override
+            void write(StringBuilder out) {
+                sample(out, name, "", value.get());
+            }
+        });
+    }
+
+    public void gauge(String name, String help, final Gauge value) {
+        add(new Metric(name, help, "gauge") {
+            @Override
+            void write(StringBuilder out) {
+                sample(out, name, "", value.get());
+            }
+        });
+    }
+
+    //export a histogram the code records into as a summary, its values multiplied by scale
+    public void histogram(String name, String help, final Histogram histogram, final double scale) {
+        add(new Metric(name, help, "summary") {
+            @Override
+            void write(StringBuilder out) {
+                for (double quantile : QUANTILES) {
+                    sample(out, name, "{quantile=\"" + quantile + "\"}", histogram.getPercentile(quantile * 100) * scale);
+                }
+                sample(out, name + "_sum", "", histogram.getSum() * scale);
+                sample(out, name + "_count", "", histogram.getCount());
+            }
+        });
+    }
+
+    private void add(Metric metric) {
+        if (!NAME.matcher(metric.name).matches())
+            throw new IllegalArgumentException("not a metric name: " + metric.name);
+        if (byName.putIfAbsent(metric.name, metric) != null)
+            throw new IllegalArgumentException("metric registered twice: " + metric.name);
+        metrics.add(metric);
+    }
+
+    public int size() {
+        return metrics.size();
+    }
+
+    //every metric in the Prometheus text format, in the order they were registered
+    public void writeTo(Writer out) throws IOException {
+        out.write(toString());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(metrics.size() * 128);
+        for (Metric metric : metrics) {
+            out.append("# HELP ").append(metric.name).append(' ');
+            escapeHelp(out, metric.help);
+            out.append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (Double.isNaN(value))
+            out.append("NaN");
+        else if (Double.isInfinite(value))
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        else if (value == (long) value)
+            out.append((long) value);
+        else
+            out.append(value);
+        out.append('\n');
+    }
+
+    //help text may hold anything but a raw backslash or line break
+    private static void escapeHelp(StringBuilder out, String help) {
+        for (int i = 0; i < help.length(); i++) {
+            char c = help.charAt(i);
+            if (c == '\\')
+                out.append("\\\\");
+            else if (c == '\n')
+                out.append("\\n");
+            else
+                out.append(c);
+        }
+    }
+
+    private abstract static class Metric {
+
+        final String name;
+        final String help;
+        final String type;
+
+        Metric(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        //the sample lines of the metric, after its HELP and TYPE
+        abstract void write(StringBuilder out);
+    }
+}
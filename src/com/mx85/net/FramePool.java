@@ -0,0 +1,67 @@
+package com.mx85.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+
+/*
+ * Direct buffers for the frames a shard broadcasts to spectators. A frame is encoded once
+ * and then written to every spectator from the same buffer, each write setting the
+ * window it sends, so the bytes are never copied per spectator and, being direct, not
+ * copied into a temporary buffer by the channel either. A frame is counted: a spectator
+ * whose socket took only part of it holds it until the rest is written, and the buffer
+ * goes back to the pool when the last holder lets go. Shard thread only.
+ */
+final class FramePool {
+
+    private final int capacity;
+    private final ArrayDeque<Frame> free = new ArrayDeque<>();
+
+    FramePool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    //an empty frame held once by the caller
+    Frame acquire() {
+        Frame frame = free.poll();
+        if (frame == null)
+            frame = new Frame(ByteBuffer.allocateDirect(capacity), this);
+        frame.buffer.clear();
+        frame.holders = 1;
+        return frame;
+    }
+
+    static final class Frame {
+
+        final ByteBuffer buffer; //the encoded frame is [0, size)
+        private final FramePool pool;
+        private int holders;
+        int size;
+
+        private Frame(ByteBuffer buffer, FramePool pool) {
+            this.buffer = buffer;
+            this.pool = pool;
+        }
+
+        //done writing into the buffer, from here on it is only read
+        void seal() {
+            size = buffer.position();
+        }
+
+        void retain() {
+            holders++;
+        }
+
+        void release() {
+            if (--holders == 0)
+                pool.free.push(this);
+        }
+
+        //write bytes [offset, size) to the channel, returns the offset reached
+        int writeTo(WritableByteChannel channel, int offset) throws IOException {
+            buffer.limit(size).position(offset);
+            return offset + channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.mx85.net;
+
+import com.mx85.engine.AutoRepeat;
+import com.mx85.engine.Game;
+import com.mx85.engine.GravityCurve;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.metrics.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Hosts versus matches for thousands of clients in one JVM, speaking Protocol over TCP.
+ * One IO thread accepts connections and reads every socket through a selector: it parses
+ * frames as they arrive, queues the commands of each client in that client's ring and
+ * pairs clients that said HELLO into matches, first come first served. Each match goes to
+ * the least loaded of a fixed set of Shards, tick threads that own their matches
+ * outright, so a game never needs a lock and a thousand games cost a thousand objects,
+ * not a thousand threads.
+ *
+ * Clients that say WATCH become Spectators of a match, written by the shard that plays
+ * it; the ones that asked for the newest match while none was on wait for the next.
+ *
+ * Both games of a match are dealt from seed + match number, the server's seed making a
+ * run repeatable. Tick lateness and duration, bytes per session tick and shard load are
+ * kept per shard and merged by printStats(), which also estimates how many sessions one
+ * core could carry at the load seen since the previous call.
+ */
+public class GameServer implements Runnable {
+
+    private static final int MAX_CLIENT_FRAME = Session.IN_CAPACITY / 2;
+    private static final long STATS_MILLIS = 5000;
+
+    private final int width;
+    private final int height;
+    private final String generator;
+    private final long seed;
+    private final Shard[] shards;
+    private final Thread[] shardThreads;
+
+    private ServerSocketChannel acceptor;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+
+    private Session waiting; //IO thread, the client waiting for an opponent
+    private int nextSession; //IO thread
+    private int nextMatch;   //IO thread
+    private Match newest;    //IO thread, the match started last
+    private final ArrayList<Spectator> waitingSpectators = new ArrayList<>(); //IO thread, for the next match
+    private final ConcurrentHashMap<Integer, Match> live = new ConcurrentHashMap<>(); //matches being played by id
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final AtomicInteger spectators = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong matchesStarted = new AtomicLong();
+    private final AtomicLong matchesFinished = new AtomicLong();
+    private final AtomicLong droppedInputs = new AtomicLong();
+    private final AtomicLong protocolErrors = new AtomicLong();
+    private long printedNanos = startNanos; //printStats() only
+    private long printedBusyNanos;
+
+    public GameServer(int width, int height, String generator, long seed, int shards) {
+        if (width < Game.MIN_WIDTH || height < Game.MIN_HEIGHT || maxStateBytes(width, height) > Protocol.MAX_FRAME
+                || maxSpectatorBytes(width, height) > Protocol.MAX_SPECTATOR_FRAME)
+            throw new IllegalArgumentException("board must be at least " + Game.MIN_WIDTH + "x" + Game.MIN_HEIGHT + " and send in one frame: " + width + "x" + height);
+        if (shards < 1)
+            throw new IllegalArgumentException("need at least one shard: " + shards);
+        PieceGenerators.create(generator, 0); //fail on unknown names here rather than on the IO thread
+        this.width = width;
+        this.height = height;
+        this.generator = generator;
+        this.seed = seed;
+        this.shards = new Shard[shards];
+        this.shardThreads = new Thread[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(this, maxSpectatorBytes(width, height));
+        }
+    }
+
+    //usage: GameServer [port] [width] [height] [shards] [seed] [generator], runs until killed and prints its metrics every few seconds
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7777;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int shards = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : PieceGenerators.randomSeed();
+        String generator = args.length > 5 ? args[5] : "bag";
+        GameServer server = new GameServer(width, height, generator, seed, shards);
+        server.start(new InetSocketAddress(port));
+        System.out.println("serving " + width + "x" + height + " matches on port " + server.getPort() + " with "
+                + shards + " shards, seed " + seed);
+        while (server.isRunning()) {
+            Thread.sleep(STATS_MILLIS);
+            server.printStats(System.out);
+        }
+    }
+
+    //the longest STATE frame of a board, rows included
+    static int maxStateBytes(int width, int height) {
+        return 3 + 2 + 9 * Protocol.MAX_VARINT_BYTES + height * ((width + 1) / 2);
+    }
+
+    //the longest KEYFRAME or DELTA of a match, both boards with all their rows
+    static int maxSpectatorBytes(int width, int height) {
+        return 3 + 4 * Protocol.MAX_VARINT_BYTES + 2 * Match.maxBoardBytes(width, height);
+    }
+
+    //listen on the address (port 0 picks a free one, see getPort()) and start the IO and shard threads
+    public synchronized void start(InetSocketAddress address) throws IOException {
+        if (thread != null)
+            return;
+        selector = Selector.open();
+        acceptor = ServerSocketChannel.open();
+        acceptor.bind(address, 1024);
+        acceptor.configureBlocking(false);
+        acceptor.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        for (int i = 0; i < shards.length; i++) {
+            shardThreads[i] = new Thread(shards[i], "tetris-shard-" + i);
+            shardThreads[i].setDaemon(true);
+            shardThreads[i].start();
+        }
+        thread = new Thread(this, "tetris-server-io");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    //stop accepting and playing, every client is hung up on
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (thread == null)
+            return;
+        selector.wakeup();
+        thread.join(1000);
+        for (Thread shardThread : shardThreads) {
+            shardThread.join(1000);
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                System.err.println("server stopped: " + e);
+                running = false;
+                break;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid())
+                    continue;
+                if (key.isAcceptable())
+                    accept();
+                else if (key.isReadable())
+                    read(key, (Session) key.attachment());
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Session)
+                ((Session) key.attachment()).close();
+        }
+        try {
+            acceptor.close();
+            selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = acceptor.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Session session = new Session(nextSession++, channel, this);
+                sessions.incrementAndGet();
+                accepted.incrementAndGet();
+                channel.register(selector, SelectionKey.OP_READ, session);
+            }
+        } catch (IOException e) {
+            System.err.println("accept failed: " + e);
+        }
+    }
+
+    //read what the socket has and act on every complete frame, a partial one waits for the next read
+    private void read(SelectionKey key, Session session) {
+        int read;
+        try {
+            read = session.channel.read(session.in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            key.cancel();
+            leave(session);
+            return;
+        }
+        ByteBuffer in = session.in;
+        in.flip();
+        try {
+            for (int length; (length = Protocol.nextFrame(in, MAX_CLIENT_FRAME)) > 0; ) {
+                int end = in.position() + length;
+                int type = in.get() & 0xff;
+                if (type == Protocol.HELLO) {
+                    hello(session, length > 1 ? in.get() & 0xff : 0);
+                } else if (type == Protocol.WATCH) {
+                    watch(session, length > 1 ? Protocol.getVarInt(in) : -1);
+                } else if (type == Protocol.INPUT && session.greeted && !session.watching) {
+                    while (in.position() < end) {
+                        if (!session.inputs.offer(in.get() & 0xff))
+                            droppedInputs.incrementAndGet();
+                    }
+                }
+                in.position(end);
+            }
+        } catch (IllegalStateException e) {
+            protocolErrors.incrementAndGet();
+            key.cancel();
+            leave(session);
+            return;
+        }
+        in.compact();
+    }
+
+    //welcome a client and match it with the one waiting, or make it the one waiting
+    private void hello(Session session, int version) {
+        if (session.greeted || session.isClosed())
+            return;
+        if (version != Protocol.VERSION) {
+            protocolErrors.incrementAndGet();
+            leave(session);
+            return;
+        }
+        session.greeted = true;
+        session.out = ByteBuffer.allocate(Session.OUT_CAPACITY);
+        int mark = Protocol.beginFrame(session.out, Protocol.WELCOME);
+        Protocol.putVarInt(session.out, session.id);
+        Protocol.endFrame(session.out, mark);
+        session.flush();
+        if (waiting == null || waiting.isClosed()) {
+            waiting = session;
+            return;
+        }
+        int id = nextMatch++;
+        long matchSeed = seed + id;
+        Match match = new Match(id, waiting, session, newGame(matchSeed), newGame(matchSeed), matchSeed);
+        waiting = null;
+        Shard target = shards[0];
+        for (Shard shard : shards) {
+            if (shard.matchCount.get() < target.matchCount.get())
+                target = shard;
+        }
+        matchesStarted.incrementAndGet();
+        live.put(id, match);
+        newest = match;
+        target.add(match);
+        for (Spectator spectator : waitingSpectators) {
+            if (spectator.session.isClosed())
+                spectator.close();
+            else
+                match.watch(spectator);
+        }
+        waitingSpectators.clear();
+    }
+
+    /*make a client a spectator of the match it asked for, or of the newest one (-1); asking for the newest while none
+    * is on waits for the next, asking for one that is not being played is hung up on
+    */
+    private void watch(Session session, int matchId) {
+        if (session.greeted || session.isClosed())
+            return;
+        session.greeted = true;
+        session.watching = true;
+        spectators.incrementAndGet();
+        Spectator spectator = new Spectator(session, this);
+        Match match = matchId < 0 ? newest : live.get(matchId);
+        if (match != null && !match.isOver())
+            match.watch(spectator);
+        else if (matchId < 0)
+            waitingSpectators.add(spectator);
+        else
+            spectator.close();
+    }
+
+    private Game newGame(long seed) {
+        return new Game(width, height, GravityCurve.classic(), AutoRepeat.defaults(),
+                PieceGenerators.create(generator, seed), Game.DEFAULT_PREVIEW);
+    }
+
+    //hang up on a client; a spectator still waiting for a match stops being counted right away
+    private void leave(Session session) {
+        if (waiting == session)
+            waiting = null;
+        if (session.watching) {
+            for (int i = 0; i < waitingSpectators.size(); i++) {
+                if (waitingSpectators.get(i).session == session) {
+                    waitingSpectators.remove(i).close();
+                    break;
+                }
+            }
+        }
+        session.close();
+    }
+
+    void sessionClosed() {
+        sessions.decrementAndGet();
+    }
+
+    void matchFinished(Match match) {
+        live.remove(match.id);
+        matchesFinished.incrementAndGet();
+    }
+
+    void spectatorLeft() {
+        spectators.decrementAndGet();
+    }
+
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    public long getMatchesFinished() {
+        return matchesFinished.get();
+    }
+
+    //merged metrics of all shards since the start, and the load since the previous call; call from one thread
+    public void printStats(PrintStream out) {
+        Histogram lateness = new Histogram("tick lateness");
+        Histogram duration = new Histogram("tick duration");
+        Histogram bytes = new Histogram("bytes per session tick");
+        long busy = 0;
+        long dropped = 0;
+        long spectatorBytes = 0;
+        long keyframes = 0;
+        long droppedDeltas = 0;
+        int playing = 0;
+        for (Shard shard : shards) {
+            lateness.merge(shard.tickLateness);
+            duration.merge(shard.tickDuration);
+            bytes.merge(shard.bytesPerTick);
+            busy += shard.timestep.getBusyNanos();
+            dropped += shard.timestep.getDroppedTicks();
+            playing += shard.matchCount.get();
+            spectatorBytes += shard.spectatorBytes;
+            keyframes += shard.keyframes;
+            droppedDeltas += shard.droppedDeltas;
+        }
+        long now = System.nanoTime();
+        double seconds = (now - startNanos) / 1e9;
+        double coresBusy = (double) (busy - printedBusyNanos) / Math.max(1, now - printedNanos);
+        printedNanos = now;
+        printedBusyNanos = busy;
+        int open = sessions.get();
+        int cores = Runtime.getRuntime().availableProcessors();
+        out.println(String.format("sessions: %,d open (%.1f per core on %d cores), %,d accepted; matches: %,d playing, %,d finished",
+                open, (double) open / cores, cores, accepted.get(), playing, matchesFinished.get()));
+        out.println(lateness.summary());
+        out.println(duration.summary());
+        out.println(String.format("bytes per session tick: mean=%.1f p99=%d max=%d, %.2f MB/s sent on average",
+                bytes.getMean(), bytes.getPercentile(99), bytes.getMax(), bytes.getSum() / seconds / 1e6));
+        out.println(String.format("spectators: %,d watching, %.2f MB/s sent on average, %,d keyframes, %,d deltas dropped",
+                spectators.get(), spectatorBytes / seconds / 1e6, keyframes, droppedDeltas));
+        out.println(String.format("shard load: %.2f cores busy%s; dropped ticks: %,d, dropped inputs: %,d, protocol errors: %,d",
+                coresBusy, coresBusy > 0 && open > 0 ? String.format(", about %,.0f sessions per core at full load", open / coresBusy) : "",
+                dropped, droppedInputs.get(), protocolErrors.get()));
+    }
+}
@@ -0,0 +1,212 @@
+package com.mx85.net;
+
+import com.mx85.engine.Command;
+import com.mx85.engine.Simulation;
+import com.mx85.engine.SplitMix;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/*
+ * Headless clients for load testing a GameServer, all on one thread behind a selector.
+ * Every client says HELLO, waits for its match and then mashes keys: on each tick it
+ * presses and releases a random key with probability 1 / KEY_EVERY, hard drops included,
+ * so games are short and matches keep being made and torn down. When a match ends the
+ * client connects again and queues for the next one. Spectators only WATCH the newest
+ * match and watch again when it is over. Received frames and bytes are counted and
+ * printed once a second.
+ */
+public class LoadClient {
+
+    private static final int KEY_EVERY = 8;
+    private static final int[] KEYS = {Command.LEFT, Command.RIGHT, Command.ROTATE, Command.SOFT_DROP, Command.HARD_DROP};
+
+    private final InetSocketAddress address;
+    private final Selector selector;
+    private final Client[] clients;
+    private final SplitMix random;
+
+    private long bytesReceived;
+    private long bytesSent;
+    private long states;
+    private long spectatorFrames;
+    private long keyframes;
+    private long matches;
+    private long wins;
+    private long errors;
+
+    private final int spectators;
+
+    //players and spectators are both clients, the spectators come on top of the players
+    public LoadClient(InetSocketAddress address, int clients, int spectators, long seed) throws IOException {
+        this.address = address;
+        this.selector = Selector.open();
+        this.clients = new Client[clients + spectators];
+        this.spectators = spectators;
+        this.random = new SplitMix(seed);
+    }
+
+    //usage: LoadClient [host] [port] [clients] [seconds] [seed] [spectators]
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 1;
+        int spectators = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+        new LoadClient(new InetSocketAddress(host, port), clients, spectators, seed).run(seconds);
+    }
+
+    //connect every client and play for a number of seconds, printing what came back once a second
+    public void run(int seconds) throws IOException {
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = new Client(i >= clients.length - spectators);
+            connect(clients[i]);
+        }
+        long start = System.nanoTime();
+        long nextTick = start;
+        long nextPrint = start + 1_000_000_000L;
+        long end = start + seconds * 1_000_000_000L;
+        long printedBytes = 0;
+        long printedStates = 0;
+        long printedFrames = 0;
+        while (System.nanoTime() < end) {
+            long wait = Math.max(1, (nextTick - System.nanoTime()) / 1_000_000L);
+            selector.select(wait);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isValid() && key.isReadable())
+                    read((Client) key.attachment());
+            }
+            long now = System.nanoTime();
+            if (now >= nextTick) {
+                for (Client client : clients) {
+                    if (client.playing && random.nextInt(KEY_EVERY) == 0)
+                        press(client, KEYS[random.nextInt(KEYS.length)]);
+                }
+                nextTick = Math.max(nextTick + Simulation.TICK_NANOS, now - Simulation.TICK_NANOS);
+            }
+            if (now >= nextPrint) {
+                System.out.println(String.format("%,d clients: %,d states/s, %,d spectator frames/s, %.2f MB/s received, "
+                        + "%,d matches played (%,d won), %,d keyframes, %,d errors", clients.length, states - printedStates,
+                        spectatorFrames - printedFrames, (bytesReceived - printedBytes) / 1e6, matches, wins, keyframes, errors));
+                printedStates = states;
+                printedFrames = spectatorFrames;
+                printedBytes = bytesReceived;
+                nextPrint += 1_000_000_000L;
+            }
+        }
+        for (Client client : clients) {
+            client.channel.close();
+        }
+        selector.close();
+        System.out.println(String.format("%,d bytes received, %,d sent, %,d matches", bytesReceived, bytesSent, matches));
+    }
+
+    private void connect(Client client) throws IOException {
+        client.channel = SocketChannel.open(address);
+        client.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        client.channel.configureBlocking(false);
+        client.channel.register(selector, SelectionKey.OP_READ, client);
+        client.in.clear();
+        client.playing = false;
+        client.out.clear();
+        int mark = Protocol.beginFrame(client.out, client.spectator ? Protocol.WATCH : Protocol.HELLO);
+        if (!client.spectator)
+            client.out.put((byte) Protocol.VERSION);
+        Protocol.endFrame(client.out, mark);
+        send(client);
+    }
+
+    private void press(Client client, int key) {
+        client.out.clear();
+        int mark = Protocol.beginFrame(client.out, Protocol.INPUT);
+        client.out.put((byte) key);
+        client.out.put((byte) Command.release(key));
+        Protocol.endFrame(client.out, mark);
+        send(client);
+    }
+
+    //frames are a few bytes and the socket is drained between ticks, so a short write only loses a key press
+    private void send(Client client) {
+        client.out.flip();
+        try {
+            bytesSent += client.channel.write(client.out);
+        } catch (IOException e) {
+            errors++;
+        }
+    }
+
+    private void read(Client client) {
+        int read;
+        try {
+            read = client.channel.read(client.in);
+        } catch (IOException e) {
+            read = -1;
+        }
+        if (read < 0) {
+            //the server hung up without an END, count it and queue again
+            errors++;
+            reconnect(client);
+            return;
+        }
+        bytesReceived += read;
+        ByteBuffer in = client.in;
+        in.flip();
+        boolean ended = false;
+        for (int length; !ended && (length = Protocol.nextFrame(in, Protocol.MAX_SPECTATOR_FRAME)) > 0; ) {
+            int end = in.position() + length;
+            int type = in.get() & 0xff;
+            if (type == Protocol.START) {
+                client.playing = true;
+            } else if (type == Protocol.STATE) {
+                states++;
+            } else if (type == Protocol.END) {
+                matches++;
+                if (in.get() == Protocol.WIN)
+                    wins++;
+                ended = true;
+            } else if (type == Protocol.KEYFRAME || type == Protocol.DELTA) {
+                spectatorFrames++;
+                if (type == Protocol.KEYFRAME)
+                    keyframes++;
+            } else if (type == Protocol.OVER) {
+                ended = true;
+            }
+            in.position(end);
+        }
+        in.compact();
+        if (ended)
+            reconnect(client);
+    }
+
+    private void reconnect(Client client) {
+        try {
+            client.channel.close();
+            connect(client);
+        } catch (IOException e) {
+            errors++;
+        }
+    }
+
+    private static final class Client {
+
+        final boolean spectator;
+        SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(2 * Protocol.MAX_SPECTATOR_FRAME);
+        final ByteBuffer out = ByteBuffer.allocate(64);
+        boolean playing;
+
+        Client(boolean spectator) {
+            this.spectator = spectator;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.mx85.net;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.Game;
+import com.mx85.engine.Shape;
+import com.mx85.engine.SplitMix;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * Two players on one shard, each with their own game dealt from the same seed so both
+ * get the same pieces. Every tick the commands each client sent are applied, both games
+ * are ticked, and a lock that cleared rows sends garbage to the other board: ATTACK rows
+ * with one hole, which land under the opponent's stack when their falling piece locks.
+ * The match ends when a game tops out or a player leaves; the other one wins.
+ *
+ * Spectators join through a concurrent queue and are written after the games have
+ * ticked: what changed is encoded once per tick into a DELTA from the shard's FramePool
+ * and the same buffer goes to all of them, spectators that need a KEYFRAME sharing one
+ * encoded on demand.
+ */
+final class Match {
+
+    private static final int[] ATTACK = {0, 0, 1, 2, 4}; //garbage rows sent by a lock clearing 0 to 4 rows
+    private static final int SEEN = 8; //values per player a spectator has seen, see changed()
+
+    final int id;
+    private final Session[] players;
+    private final SplitMix holes; //columns of the holes in the garbage, from the match seed
+    private final int[] batch = new int[Session.INPUT_CAPACITY];
+    private final int width;
+    private final int height;
+    private boolean started;
+
+    private final ConcurrentLinkedQueue<Spectator> joining = new ConcurrentLinkedQueue<>();
+    private final ArrayList<Spectator> spectators = new ArrayList<>(); //shard thread only
+    private final int[] seen = new int[2 * SEEN]; //pose, next piece and counters of both players in the last DELTA
+    private volatile boolean over;
+
+    Match(int id, Session first, Session second, Game firstGame, Game secondGame, long seed) {
+        this.id = id;
+        this.players = new Session[] {first, second};
+        first.game = firstGame;
+        second.game = secondGame;
+        this.holes = new SplitMix(~seed);
+        this.width = firstGame.getBoard().getWidth();
+        this.height = firstGame.getBoard().getHeight();
+    }
+
+    /*one tick of the match on its shard thread: inputs, both games, garbage, then the state each player has not seen
+    * yet; returns false once the match is over and its players are gone
+    */
+    boolean tick(Shard shard) {
+        if (!started) {
+            started = true;
+            for (int p = 0; p < 2; p++) {
+                sendStart(players[p], players[1 - p]);
+            }
+        }
+        for (int p = 0; p < 2; p++) {
+            play(players[p], players[1 - p]);
+        }
+        boolean firstOut = players[0].isClosed() || players[0].game.isGameOver();
+        boolean secondOut = players[1].isClosed() || players[1].game.isGameOver();
+        broadcast(shard);
+        if (firstOut || secondOut) {
+            //both out on the same tick is a loss for both
+            finish(players[0], !firstOut && secondOut, shard);
+            finish(players[1], !secondOut && firstOut, shard);
+            end(!firstOut ? 0 : !secondOut ? 1 : Protocol.NONE, shard);
+            return false;
+        }
+        for (int p = 0; p < 2; p++) {
+            Session player = players[p];
+            sendState(player, players[1 - p]);
+            shard.sent(player.flush());
+        }
+        return true;
+    }
+
+    //apply the commands of one player and tick their game, a lock that cleared rows attacks the opponent
+    private void play(Session player, Session opponent) {
+        Game game = player.game;
+        int n = player.inputs.drainTo(batch);
+        for (int i = 0; i < n; i++) {
+            int pieces = game.getPieces();
+            game.command(batch[i]);
+            if (game.getPieces() != pieces)
+                attack(game, opponent.game);
+        }
+        int pieces = game.getPieces();
+        game.tick();
+        if (game.getPieces() != pieces)
+            attack(game, opponent.game);
+    }
+
+    private void attack(Game game, Game opponent) {
+        int rows = ATTACK[game.getLastLinesCleared()];
+        if (rows > 0)
+            opponent.addGarbage(rows, holes.nextInt(width));
+    }
+
+    private void sendStart(Session player, Session opponent) {
+        if (!player.reserve(4 * Protocol.MAX_VARINT_BYTES + 3))
+            return;
+        ByteBuffer out = player.out;
+        int mark = Protocol.beginFrame(out, Protocol.START);
+        Protocol.putVarInt(out, id);
+        Protocol.putVarInt(out, opponent.id);
+        Protocol.putVarInt(out, width);
+        Protocol.putVarInt(out, height);
+        Protocol.endFrame(out, mark);
+    }
+
+    //a STATE with what changed since the last one, nothing when nothing did
+    private void sendState(Session player, Session opponent) {
+        Game game = player.game;
+        Board board = game.getBoard();
+        int opponentHeight = height - opponent.game.getBoard().getStackTop();
+        if (!board.isDirty() && game.getScore() == player.sentScore && game.getGarbage() == player.sentGarbage
+                && game.getPieces() == player.sentPieces && opponent.game.getScore() == player.sentOpponentScore
+                && opponentHeight == player.sentOpponentHeight)
+            return;
+        int first = board.isDirty() ? board.getDirtyTop() : 0;
+        int rows = board.isDirty() ? board.getDirtyBottom() - first + 1 : 0;
+        if (!player.reserve(GameServer.maxStateBytes(width, height)))
+            return;
+        ByteBuffer out = player.out;
+        int mark = Protocol.beginFrame(out, Protocol.STATE);
+        Protocol.putVarInt(out, (int) game.getTicks());
+        out.put((byte) game.getCurrentShape().getPieceType().ordinal());
+        out.put((byte) game.getNextPiece().ordinal());
+        Protocol.putVarInt(out, game.getScore());
+        Protocol.putVarInt(out, game.getLines());
+        Protocol.putVarInt(out, game.getGarbage());
+        Protocol.putVarInt(out, opponent.game.getScore());
+        Protocol.putVarInt(out, opponentHeight);
+        Protocol.putVarInt(out, first);
+        Protocol.putVarInt(out, rows);
+        putRows(out, board, first, rows);
+        Protocol.endFrame(out, mark);
+        board.clearDirty();
+        player.sentScore = game.getScore();
+        player.sentGarbage = game.getGarbage();
+        player.sentPieces = game.getPieces();
+        player.sentOpponentScore = opponent.game.getScore();
+        player.sentOpponentHeight = opponentHeight;
+    }
+
+    //tell a player how the match went and hang up, a client queues again on a new connection
+    private void finish(Session player, boolean won, Shard shard) {
+        if (!player.isClosed() && player.reserve(2 * Protocol.MAX_VARINT_BYTES + 4)) {
+            ByteBuffer out = player.out;
+            int mark = Protocol.beginFrame(out, Protocol.END);
+            out.put((byte) (won ? Protocol.WIN : Protocol.LOSS));
+            Protocol.putVarInt(out, player.game.getScore());
+            Protocol.putVarInt(out, player.game.getLines());
+            Protocol.endFrame(out, mark);
+            shard.sent(player.flush());
+        }
+        player.close();
+    }
+
+    //the rows as colour indexes from the first one down, two cells per byte, low nibble first
+    static void putRows(ByteBuffer out, Board board, int first, int rows) {
+        int width = board.getWidth();
+        for (int y = first; y < first + rows; y++) {
+            for (int x = 0; x < width; x += 2) {
+                int low = board.getColor(x, y);
+                int high = x + 1 < width ? board.getColor(x + 1, y) : 0;
+                out.put((byte) (low | high << 4));
+            }
+        }
+    }
+
+    //the longest board of a spectator frame, player id included
+    static int maxBoardBytes(int width, int height) {
+        return 3 + 8 * Protocol.MAX_VARINT_BYTES + height * ((width + 1) / 2);
+    }
+
+    //a board of a spectator frame, all rows or only the ones changed since the board was last cleared
+    static void putBoard(ByteBuffer out, Game game, boolean allRows) {
+        Board board = game.getBoard();
+        Shape shape = game.getCurrentShape();
+        out.put((byte) shape.getPieceType().ordinal());
+        out.put((byte) shape.getRotation());
+        Protocol.putZigZag(out, shape.getX());
+        Protocol.putZigZag(out, shape.getY());
+        out.put((byte) game.getNextPiece().ordinal());
+        Protocol.putVarInt(out, game.getScore());
+        Protocol.putVarInt(out, game.getLines());
+        Protocol.putVarInt(out, game.getGarbage());
+        int first = allRows || !board.isDirty() ? 0 : board.getDirtyTop();
+        int rows = allRows ? board.getHeight() : board.isDirty() ? board.getDirtyBottom() - first + 1 : 0;
+        Protocol.putVarInt(out, first);
+        Protocol.putVarInt(out, rows);
+        putRows(out, board, first, rows);
+    }
+
+    //add a spectator from the IO thread, it gets its KEYFRAME on the next tick; one that comes too late is hung up on
+    void watch(Spectator spectator) {
+        joining.add(spectator);
+        if (over)
+            closeJoining();
+    }
+
+    boolean isOver() {
+        return over;
+    }
+
+    /*write this tick to every spectator: the DELTA when something changed, encoded once and shared, or a KEYFRAME to
+    * the ones that have none or fell behind. one still busy with an earlier frame misses this one and needs a KEYFRAME
+    */
+    private void broadcast(Shard shard) {
+        for (Spectator spectator; (spectator = joining.poll()) != null; ) {
+            spectators.add(spectator);
+        }
+        if (spectators.isEmpty())
+            return;
+        FramePool.Frame delta = changed() ? encode(shard.frames, false) : null;
+        FramePool.Frame keyframe = null;
+        for (int i = 0; i < spectators.size(); ) {
+            Spectator spectator = spectators.get(i);
+            if (spectator.session.isClosed()) {
+                spectator.close();
+                //order does not matter, so the last spectator fills the hole
+                Spectator last = spectators.remove(spectators.size() - 1);
+                if (i < spectators.size())
+                    spectators.set(i, last);
+                continue;
+            }
+            i++;
+            if (!spectator.catchUp()) {
+                if (delta != null) {
+                    spectator.needsKeyframe = true;
+                    shard.droppedDeltas++;
+                }
+                continue;
+            }
+            if (spectator.needsKeyframe) {
+                if (keyframe == null)
+                    keyframe = encode(shard.frames, true);
+                spectator.needsKeyframe = false;
+                shard.keyframes++;
+                shard.spectatorBytes += spectator.send(keyframe);
+            } else if (delta != null) {
+                shard.spectatorBytes += spectator.send(delta);
+            }
+        }
+        if (delta != null)
+            delta.release();
+        if (keyframe != null)
+            keyframe.release();
+    }
+
+    //whether a spectator would see anything new this tick, remembering what it is about to see
+    private boolean changed() {
+        boolean changed = false;
+        for (int p = 0; p < 2; p++) {
+            Game game = players[p].game;
+            Shape shape = game.getCurrentShape();
+            int i = p * SEEN;
+            changed |= game.getBoard().isDirty();
+            changed |= see(i, shape.getPieceType().ordinal());
+            changed |= see(i + 1, shape.getRotation());
+            changed |= see(i + 2, shape.getX());
+            changed |= see(i + 3, shape.getY());
+            changed |= see(i + 4, game.getNextPiece().ordinal());
+            changed |= see(i + 5, game.getScore());
+            changed |= see(i + 6, game.getLines());
+            changed |= see(i + 7, game.getGarbage());
+        }
+        return changed;
+    }
+
+    private boolean see(int i, int value) {
+        if (seen[i] == value)
+            return false;
+        seen[i] = value;
+        return true;
+    }
+
+    private FramePool.Frame encode(FramePool frames, boolean keyframe) {
+        FramePool.Frame frame = frames.acquire();
+        ByteBuffer out = frame.buffer;
+        int mark = Protocol.beginFrame(out, keyframe ? Protocol.KEYFRAME : Protocol.DELTA);
+        if (keyframe) {
+            Protocol.putVarInt(out, id);
+            Protocol.putVarInt(out, width);
+            Protocol.putVarInt(out, height);
+        }
+        Protocol.putVarInt(out, (int) players[0].game.getTicks());
+        for (Session player : players) {
+            if (keyframe)
+                Protocol.putVarInt(out, player.id);
+            putBoard(out, player.game, keyframe);
+        }
+        Protocol.endFrame(out, mark);
+        frame.seal();
+        return frame;
+    }
+
+    //tell the spectators who won and hang up on them, the ones still behind are hung up on without it
+    private void end(int winner, Shard shard) {
+        FramePool.Frame frame = shard.frames.acquire();
+        int mark = Protocol.beginFrame(frame.buffer, Protocol.OVER);
+        frame.buffer.put((byte) winner);
+        Protocol.endFrame(frame.buffer, mark);
+        frame.seal();
+        for (Spectator spectator : spectators) {
+            if (!spectator.session.isClosed() && spectator.catchUp() && !spectator.needsKeyframe)
+                shard.spectatorBytes += spectator.send(frame);
+            spectator.close();
+        }
+        frame.release();
+        spectators.clear();
+        over = true;
+        closeJoining();
+    }
+
+    private void closeJoining() {
+        for (Spectator spectator; (spectator = joining.poll()) != null; ) {
+            spectator.close();
+        }
+    }
+
+    //hang up on both players and the spectators without a result, when the server stops
+    void close() {
+        for (Session player : players) {
+            player.close();
+        }
+        for (Spectator spectator : spectators) {
+            spectator.close();
+        }
+        spectators.clear();
+        over = true;
+        closeJoining();
+    }
+}
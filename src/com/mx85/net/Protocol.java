@@ -0,0 +1,145 @@
+package com.mx85.net;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Wire format between a GameServer and its clients over TCP. Every message is a frame:
+ *
+ *   frame    varint length of what follows, byte type, payload
+ *
+ * Client to server:
+ *
+ *   HELLO    byte protocol version; puts the client in the queue for a match
+ *   INPUT    Command bytes (presses and releases) applied in order at the next tick
+ *   WATCH    optional match id; watch that match, or without one the newest match being
+ *            played (the next one to start when none is)
+ *
+ * Server to client (varints unless noted):
+ *
+ *   WELCOME  player id
+ *   START    match id, opponent id, width, height
+ *   STATE    tick, byte falling piece, byte next piece, score, lines, garbage waiting,
+ *            opponent score, opponent stack height, first row, row count, then that many
+ *            rows from the first one down as colour indexes, two cells per byte, low
+ *            nibble first
+ *   END      byte result (WIN or LOSS), score, lines
+ *
+ * Server to spectator:
+ *
+ *   KEYFRAME match id, width, height, tick, then for each of the two players: player id, board
+ *   DELTA    tick, then for each player a board with only the rows changed since the
+ *            previous KEYFRAME or DELTA
+ *   OVER     byte winner (0 or 1 for the first or second player, NONE when there is none),
+ *            then the connection is closed
+ *
+ *   board    byte falling piece, byte rotation, zigzag varints x and y of its rotation
+ *            box, byte next piece, score, lines, garbage waiting, first row, row count,
+ *            rows as in STATE; the falling piece is drawn in the rows too
+ *
+ * A STATE is only sent on the ticks something it carries changed, and only with the rows
+ * that changed since the previous one, so a quiet game costs nothing on the wire. The same
+ * goes for a DELTA. A spectator that falls behind misses DELTAs and gets a KEYFRAME once it
+ * has caught up, so it never needs the history it missed.
+ */
+public final class Protocol {
+
+    public static final int VERSION = 1;
+    public static final int MAX_FRAME = 4096; //bytes after the length, larger frames are a protocol error
+    public static final int MAX_SPECTATOR_FRAME = 2 * MAX_FRAME + 128; //the same for frames to a spectator, which carry two boards
+
+    public static final int HELLO = 0x01;
+    public static final int INPUT = 0x02;
+    public static final int WATCH = 0x03;
+
+    public static final int WELCOME = 0x81;
+    public static final int START = 0x82;
+    public static final int STATE = 0x83;
+    public static final int END = 0x84;
+    public static final int KEYFRAME = 0x85;
+    public static final int DELTA = 0x86;
+    public static final int OVER = 0x87;
+
+    public static final int WIN = 1;
+    public static final int LOSS = 0;
+    public static final int NONE = 2;
+
+    static final int MAX_VARINT_BYTES = 5;
+
+    private Protocol() {
+    }
+
+    public static void putVarInt(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    //a varint from in, or -1 when in ends before it does (the position is then left where it was)
+    public static int getVarInt(ByteBuffer in) {
+        int start = in.position();
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES && in.hasRemaining(); shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        in.position(start);
+        return -1;
+    }
+
+    //a signed int as a varint, small magnitudes either side of zero taking one byte
+    public static void putZigZag(ByteBuffer out, int value) {
+        putVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    //a zigzag varint from in; an incomplete one is not told apart here, callers read whole frames
+    public static int getZigZag(ByteBuffer in) {
+        int value = getVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static int varIntBytes(int value) {
+        int bytes = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /*the length of the next frame of in when it is all there, with in moved past the length to the type byte; -1 when
+    * it is not all there yet, in which case in is left where it was. a length out of 1..max is an
+    * IllegalStateException, the peer does not speak the protocol
+    */
+    public static int nextFrame(ByteBuffer in, int max) {
+        int start = in.position();
+        int length = getVarInt(in);
+        if (length < 0)
+            return -1;
+        if (length == 0 || length > max)
+            throw new IllegalStateException("bad frame length " + length);
+        if (in.remaining() < length) {
+            in.position(start);
+            return -1;
+        }
+        return length;
+    }
+
+    //start a frame of the given type at the position of out, returns the mark to finish it with endFrame()
+    public static int beginFrame(ByteBuffer out, int type) {
+        int mark = out.position();
+        out.position(mark + 2); //room for a two byte length, which covers MAX_SPECTATOR_FRAME
+        out.put((byte) type);
+        return mark;
+    }
+
+    //write the length of the frame begun at mark, in two varint bytes so the body never has to move
+    public static void endFrame(ByteBuffer out, int mark) {
+        int length = out.position() - mark - 2;
+        out.put(mark, (byte) ((length & 0x7f) | 0x80));
+        out.put(mark + 1, (byte) (length >>> 7));
+    }
+}
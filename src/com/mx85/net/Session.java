@@ -0,0 +1,89 @@
+package com.mx85.net;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.InputRing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * One client connection of a GameServer. The IO thread reads it: frames are parsed as
+ * they arrive and the commands of INPUT frames go into a single-producer ring for the
+ * shard that plays the match. Until the session is matched the IO thread owns the rest
+ * too; the match is handed to its shard through a concurrent queue, and from then on
+ * the shard thread alone touches the game, the outgoing buffer and the socket writes,
+ * so no lock is ever shared between games.
+ *
+ * A session that asks to WATCH instead becomes the connection of a Spectator and only
+ * keeps its incoming buffer, so thousands of spectators cost little more than their sockets.
+ */
+final class Session {
+
+    static final int INPUT_CAPACITY = 64;
+    static final int IN_CAPACITY = 1024;
+    static final int OUT_CAPACITY = 32 * 1024; //a client that lets this much pile up is too slow and is dropped
+
+    final int id;
+    final SocketChannel channel;
+    final ByteBuffer in = ByteBuffer.allocate(IN_CAPACITY); //IO thread, in write mode between reads
+    final InputRing inputs = new InputRing(INPUT_CAPACITY);
+    ByteBuffer out; //allocated on HELLO, spectators never need one; IO thread until matched, then the shard thread
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final GameServer server;
+    boolean greeted; //IO thread, HELLO or WATCH received
+    boolean watching; //IO thread, WATCH received
+
+    //shard thread, while in a match
+    Game game;
+    int sentScore = -1;
+    int sentGarbage;
+    int sentPieces;
+    int sentOpponentScore;
+    int sentOpponentHeight;
+
+    Session(int id, SocketChannel channel, GameServer server) {
+        this.id = id;
+        this.channel = channel;
+        this.server = server;
+    }
+
+    //write out as much of the outgoing buffer as the socket takes now, returns the bytes written
+    int flush() {
+        if (out == null || out.position() == 0 || isClosed())
+            return 0;
+        out.flip();
+        int written = 0;
+        try {
+            written = channel.write(out);
+        } catch (IOException e) {
+            close();
+        }
+        out.compact();
+        return written;
+    }
+
+    //whether a frame of up to bytes more bytes fits in the outgoing buffer; a client that cannot keep up is closed
+    boolean reserve(int bytes) {
+        if (out.remaining() >= bytes)
+            return true;
+        close();
+        return false;
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    //close the connection once, from whichever thread notices first
+    void close() {
+        if (!closed.compareAndSet(false, true))
+            return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        server.sessionClosed();
+    }
+}
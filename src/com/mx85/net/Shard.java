@@ -0,0 +1,96 @@
+package com.mx85.net;
+
+import com.mx85.engine.FixedTimestep;
+import com.mx85.engine.Simulation;
+import com.mx85.metrics.Histogram;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * One tick thread of a GameServer and the matches it owns. Every match lives on exactly
+ * one shard for its whole life, so its games are only ever touched by that thread; new
+ * matches arrive through a concurrent queue drained at the start of every tick. All the
+ * matches of a shard are ticked back to back on the FixedTimestep schedule Simulation runs
+ * on: ticks that were missed are caught up (up to FixedTimestep.MAX_CATCH_UP at once) and
+ * a shard further behind than that skips the backlog and counts it.
+ *
+ * The metrics are kept per shard, so recording them is uncontended; GameServer merges them.
+ * So is the FramePool the matches encode their spectator frames into.
+ */
+final class Shard implements Runnable {
+
+    private final GameServer server;
+    private final ConcurrentLinkedQueue<Match> inbox = new ConcurrentLinkedQueue<>();
+    private final ArrayList<Match> matches = new ArrayList<>(); //shard thread only
+
+    final Histogram tickLateness = new Histogram("tick lateness");
+    final Histogram tickDuration = new Histogram("tick duration");
+    final Histogram bytesPerTick = new Histogram("bytes per session tick");
+    final AtomicInteger matchCount = new AtomicInteger(); //matches on this shard, including the ones not picked up yet
+    final FixedTimestep timestep = new FixedTimestep(tickLateness, tickDuration); //time spent ticking and ticks dropped
+    private final FixedTimestep.Step step = new FixedTimestep.Step() {
+        @Override
+        public boolean tick() {
+            Shard.this.tick();
+            return true;
+        }
+    };
+    volatile long spectatorBytes; //written by the shard thread only, like the two below
+    volatile long keyframes;
+    volatile long droppedDeltas;
+    final FramePool frames;       //shard thread only
+
+    Shard(GameServer server, int frameBytes) {
+        this.server = server;
+        this.frames = new FramePool(frameBytes);
+    }
+
+    //hand a match to this shard, it starts on the next tick
+    void add(Match match) {
+        matchCount.incrementAndGet();
+        inbox.add(match);
+    }
+
+    @Override
+    public void run() {
+        timestep.restart();
+        while (server.isRunning()) {
+            if (!timestep.park(this))
+                timestep.runDue(step, Simulation.TICK_NANOS);
+        }
+        //the server is stopping, hang up on everyone still playing
+        for (Match match; (match = inbox.poll()) != null; ) {
+            matches.add(match);
+        }
+        for (Match match : matches) {
+            match.close();
+        }
+        matches.clear();
+    }
+
+    private void tick() {
+        for (Match match; (match = inbox.poll()) != null; ) {
+            matches.add(match);
+        }
+        for (int i = 0; i < matches.size(); ) {
+            Match match = matches.get(i);
+            if (match.tick(this)) {
+                i++;
+                continue;
+            }
+            //order does not matter, so the last match fills the hole
+            Match last = matches.remove(matches.size() - 1);
+            if (i < matches.size())
+                matches.set(i, last);
+            matchCount.decrementAndGet();
+            server.matchFinished(match);
+        }
+    }
+
+    //the bytes one session wrote on this tick
+    void sent(int bytes) {
+        bytesPerTick.record(bytes);
+    }
+}
@@ -0,0 +1,73 @@
+package com.mx85.net;
+
+import java.io.IOException;
+
+/*
+ * A connection watching one match, written by the match's shard. Every frame it is sent
+ * is a shared FramePool frame; when the socket takes only part of one, the spectator
+ * holds on to it and finishes it on the next tick before anything else. Frames that come
+ * while it is still behind are not queued but dropped, and the spectator is marked to get
+ * a KEYFRAME once the socket has room again, so a slow reader costs one held frame rather
+ * than a growing backlog, and catches up on the current state instead of the history.
+ */
+final class Spectator {
+
+    final Session session;
+    private final GameServer server;
+    private boolean closed;
+    private FramePool.Frame pending; //the frame partly written, null when none
+    private int pendingOffset;
+    boolean needsKeyframe = true; //a new spectator starts from a KEYFRAME too
+
+    Spectator(Session session, GameServer server) {
+        this.session = session;
+        this.server = server;
+    }
+
+    //write what is left of the pending frame, returns whether nothing is pending anymore
+    boolean catchUp() {
+        if (pending == null)
+            return true;
+        try {
+            pendingOffset = pending.writeTo(session.channel, pendingOffset);
+        } catch (IOException e) {
+            session.close();
+            return false;
+        }
+        if (pendingOffset < pending.size)
+            return false;
+        pending.release();
+        pending = null;
+        return true;
+    }
+
+    //start writing a frame, nothing may be pending; returns the bytes written now
+    int send(FramePool.Frame frame) {
+        int written;
+        try {
+            written = frame.writeTo(session.channel, 0);
+        } catch (IOException e) {
+            session.close();
+            return 0;
+        }
+        if (written < frame.size) {
+            frame.retain();
+            pending = frame;
+            pendingOffset = written;
+        }
+        return written;
+    }
+
+    //hang up and let go of the frame held, if any; by whichever thread owns the spectator at the time
+    void close() {
+        if (closed)
+            return;
+        closed = true;
+        server.spectatorLeft();
+        if (pending != null) {
+            pending.release();
+            pending = null;
+        }
+        session.close();
+    }
+}
@@ -0,0 +1,336 @@
+package com.mx85.net;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.GameSnapshot;
+import com.mx85.engine.Shape;
+import com.mx85.engine.SnapshotBuffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/*
+ * Watches matches of a GameServer and rebuilds both boards from the spectator stream. A
+ * KEYFRAME rewrites every cell that differs, a DELTA only the rows it carries, and after
+ * each frame both boards are published through a SnapshotBuffer per player, so a renderer
+ * reads them exactly as it reads a local Simulation: on its own thread, never waiting.
+ *
+ * Without a match id the client follows the server: when a match is over it watches the
+ * newest one again. With one it stops when that match is over.
+ */
+public class SpectatorClient implements Runnable {
+
+    private static final long RETRY_MILLIS = 1000;
+
+    private final InetSocketAddress address;
+    private final int match; //the match to watch, -1 to follow the newest
+    private final ByteBuffer in = ByteBuffer.allocate(2 * Protocol.MAX_SPECTATOR_FRAME + 16);
+    private final Player[] players = new Player[2];
+    private SocketChannel channel;
+    private int frameEnd;
+    private int width;
+    private int height;
+
+    private Thread thread;
+    private volatile boolean running;
+    private volatile int matchId = -1;
+    private volatile int winner = -1; //-1 while the match is on, then 0, 1 or Protocol.NONE
+    private volatile long frames;
+    private volatile long keyframes;
+
+    public SpectatorClient(InetSocketAddress address, int match) {
+        this.address = address;
+        this.match = match;
+    }
+
+    //connect and wait for the first KEYFRAME, after which the board size is known
+    public void connect() throws IOException {
+        open();
+        int type = nextFrame();
+        if (type != Protocol.KEYFRAME)
+            throw new IOException("expected a keyframe, got frame type " + type);
+        read(type);
+    }
+
+    //read and publish the rest of the stream on a thread of its own
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        running = true;
+        thread = new Thread(this, "tetris-spectator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                if (read(nextFrame()) != Protocol.OVER)
+                    continue;
+                if (match >= 0)
+                    running = false;
+                else
+                    reopen();
+            } catch (IOException e) {
+                if (!running)
+                    break;
+                if (match >= 0) {
+                    System.err.println("spectator stopped: " + e);
+                    running = false;
+                    break;
+                }
+                System.err.println("spectator reconnecting: " + e);
+                sleep();
+                reopen();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    //the match watched now, or last
+    public int getMatchId() {
+        return matchId;
+    }
+
+    public int getPlayerId(int player) {
+        return players[player].id;
+    }
+
+    //the player who won the match watched, 0 or 1, Protocol.NONE when neither did, or -1 while it is on
+    public int getWinner() {
+        return winner;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getKeyframes() {
+        return keyframes;
+    }
+
+    //the newest state of a player's board, call from a single reader thread
+    public GameSnapshot latest(int player) {
+        return players[player].snapshots.latest();
+    }
+
+    private void open() throws IOException {
+        channel = SocketChannel.open(address);
+        in.clear().limit(0);
+        ByteBuffer hello = ByteBuffer.allocate(16);
+        int mark = Protocol.beginFrame(hello, Protocol.WATCH);
+        if (match >= 0)
+            Protocol.putVarInt(hello, match);
+        Protocol.endFrame(hello, mark);
+        hello.flip();
+        while (hello.hasRemaining()) {
+            channel.write(hello);
+        }
+    }
+
+    //watch again after a match, retrying until the server is back or the client is stopped
+    private void reopen() {
+        while (running) {
+            try {
+                channel.close();
+                open();
+                return;
+            } catch (IOException e) {
+                sleep();
+            }
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    //block until a whole frame is in, returns its type with in at its payload; the payload ends at frameEnd
+    private int nextFrame() throws IOException {
+        while (true) {
+            int length;
+            try {
+                length = Protocol.nextFrame(in, Protocol.MAX_SPECTATOR_FRAME);
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getMessage());
+            }
+            if (length > 0) {
+                frameEnd = in.position() + length;
+                frames++;
+                return in.get() & 0xff;
+            }
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0)
+                throw new EOFException("server hung up");
+        }
+    }
+
+    //apply the frame nextFrame() returned, reading no further than its end; returns its type
+    private int read(int type) throws IOException {
+        int limit = in.limit();
+        in.limit(frameEnd);
+        try {
+            if (type == Protocol.KEYFRAME)
+                keyframe();
+            else if (type == Protocol.DELTA)
+                delta();
+            else if (type == Protocol.OVER)
+                over();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated frame of type " + type);
+        }
+        in.limit(limit).position(frameEnd);
+        return type;
+    }
+
+    private void keyframe() throws IOException {
+        int id = Protocol.getVarInt(in);
+        int frameWidth = Protocol.getVarInt(in);
+        int frameHeight = Protocol.getVarInt(in);
+        if (players[0] == null) {
+            if (frameWidth < 1 || frameHeight < 1 || (long) frameWidth * frameHeight > 2L * Protocol.MAX_SPECTATOR_FRAME)
+                throw new IOException("bad board size " + frameWidth + "x" + frameHeight);
+            width = frameWidth;
+            height = frameHeight;
+            players[0] = new Player(width, height);
+            players[1] = new Player(width, height);
+        } else if (frameWidth != width || frameHeight != height) {
+            throw new IOException("board size changed to " + frameWidth + "x" + frameHeight);
+        }
+        int tick = Protocol.getVarInt(in);
+        for (Player player : players) {
+            player.id = Protocol.getVarInt(in);
+            player.read(in);
+        }
+        matchId = id;
+        winner = -1;
+        keyframes++;
+        publish(tick);
+    }
+
+    private void delta() throws IOException {
+        if (players[0] == null)
+            throw new IOException("delta before the first keyframe");
+        int tick = Protocol.getVarInt(in);
+        for (Player player : players) {
+            player.read(in);
+        }
+        publish(tick);
+    }
+
+    private void over() {
+        winner = in.get();
+        publish(players[0].ticks);
+    }
+
+    private void publish(long tick) {
+        for (int p = 0; p < 2; p++) {
+            players[p].ticks = tick;
+            players[p].publish(winner >= 0 && winner != p);
+        }
+    }
+
+    /*
+     * One board as the spectator stream describes it, mirrored into a Board so the
+     * SnapshotBuffer can stamp the rows that changed like it does for a real game.
+     */
+    static final class Player {
+
+        final Board board;
+        final SnapshotBuffer snapshots;
+        final Shape.PIECE[] next = new Shape.PIECE[1];
+        int id;
+        Shape.PIECE piece;
+        int rotation;
+        int x;
+        int y;
+        int score;
+        int lines;
+        int garbage;
+        long ticks;
+
+        Player(int width, int height) {
+            this.board = new Board(width, height);
+            this.snapshots = new SnapshotBuffer(width, height, 1);
+            this.next[0] = Shape.PIECE.values()[0];
+        }
+
+        //read a board from a frame, only the cells that differ are written
+        void read(ByteBuffer in) throws IOException {
+            piece = piece(in.get());
+            rotation = in.get() & 3;
+            x = Protocol.getZigZag(in);
+            y = Protocol.getZigZag(in);
+            next[0] = piece(in.get());
+            score = Protocol.getVarInt(in);
+            lines = Protocol.getVarInt(in);
+            garbage = Protocol.getVarInt(in);
+            int first = Protocol.getVarInt(in);
+            int rows = Protocol.getVarInt(in);
+            int width = board.getWidth();
+            if (first < 0 || rows < 0 || first + rows > board.getHeight()
+                    || in.remaining() < rows * ((width + 1) / 2))
+                throw new IOException("bad rows " + first + "+" + rows);
+            for (int row = first; row < first + rows; row++) {
+                for (int column = 0; column < width; column += 2) {
+                    int cells = in.get() & 0xff;
+                    set(column, row, cells & 15);
+                    if (column + 1 < width)
+                        set(column + 1, row, cells >>> 4);
+                }
+            }
+        }
+
+        private void set(int column, int row, int color) throws IOException {
+            if (color > Board.GARBAGE)
+                throw new IOException("bad colour " + color);
+            if (board.getColor(column, row) == color)
+                return;
+            if (color == Board.EMPTY)
+                board.clear(column, row);
+            else
+                board.fill(column, row, (byte) color);
+        }
+
+        private static Shape.PIECE piece(byte ordinal) throws IOException {
+            Shape.PIECE[] pieces = Shape.PIECE.values();
+            if (ordinal < 0 || ordinal >= pieces.length)
+                throw new IOException("bad piece " + ordinal);
+            return pieces[ordinal];
+        }
+
+        void publish(boolean gameOver) {
+            snapshots.publish(board, score, lines, 0, ticks, next, gameOver);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.mx85.replay;
+
+import java.nio.ByteBuffer;
+
+/*
+ * One fixed-width index record of a ReplayArchive: who the game was, how it ended and
+ * where its replay bytes sit in the segment. Queries read single fields of these
+ * records straight from the mapped index and only build entries for the games they
+ * return.
+ *
+ * Layout, ENTRY_BYTES per game (big-endian):
+ *
+ *   0 long id      8 long seed     16 long ticks    24 long offset in the segment
+ *  32 int length  36 int score     40 int lines     44 int pieces
+ *  48 byte most rows cleared by one piece, then reserved bytes up to 56
+ */
+public final class ArchiveEntry {
+
+    public static final int ENTRY_BYTES = 56;
+
+    static final int ID = 0;
+    static final int SEED = 8;
+    static final int TICKS = 16;
+    static final int OFFSET = 24;
+    static final int LENGTH = 32;
+    static final int SCORE = 36;
+    static final int LINES = 40;
+    static final int PIECES = 44;
+    static final int BEST_CLEAR = 48;
+
+    private final long id;
+    private final int segment;
+    private final long seed;
+    private final long ticks;
+    private final long offset;
+    private final int length;
+    private final int score;
+    private final int lines;
+    private final int pieces;
+    private final int bestClear;
+
+    ArchiveEntry(long id, int segment, long seed, long ticks, long offset, int length, int score, int lines, int pieces,
+                 int bestClear) {
+        this.id = id;
+        this.segment = segment;
+        this.seed = seed;
+        this.ticks = ticks;
+        this.offset = offset;
+        this.length = length;
+        this.score = score;
+        this.lines = lines;
+        this.pieces = pieces;
+        this.bestClear = bestClear;
+    }
+
+    //the entry whose record starts at the absolute position of index
+    static ArchiveEntry read(ByteBuffer index, int position, int segment) {
+        return new ArchiveEntry(index.getLong(position + ID), segment, index.getLong(position + SEED),
+                index.getLong(position + TICKS), index.getLong(position + OFFSET), index.getInt(position + LENGTH),
+                index.getInt(position + SCORE), index.getInt(position + LINES), index.getInt(position + PIECES),
+                index.get(position + BEST_CLEAR));
+    }
+
+    //fills out with the record from its position, reserved bytes are zero
+    void write(ByteBuffer out) {
+        int start = out.position();
+        out.putLong(id);
+        out.putLong(seed);
+        out.putLong(ticks);
+        out.putLong(offset);
+        out.putInt(length);
+        out.putInt(score);
+        out.putInt(lines);
+        out.putInt(pieces);
+        out.put((byte) bestClear);
+        while (out.position() < start + ENTRY_BYTES) {
+            out.put((byte) 0);
+        }
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    //number of the segment file holding the replay
+    public int getSegment() {
+        return segment;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    //size of the replay in bytes
+    public int getLength() {
+        return length;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getPieces() {
+        return pieces;
+    }
+
+    public int getBestClear() {
+        return bestClear;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("game %d: score %d, %d lines (best clear %d), %d pieces, %,d ticks, seed %d",
+                id, score, lines, bestClear, pieces, ticks, seed);
+    }
+}
@@ -0,0 +1,143 @@
+package com.mx85.replay;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bulk re-simulation of an archive: worker threads claim chunks of game ids from a shared
+ * counter, play each replay headless straight out of the mapped segments and check it
+ * against its end record. Every worker counts into its own Result, the results are only
+ * merged once the workers are done, so the hot loop shares nothing but the counter.
+ */
+public class ArchiveReplayer {
+
+    private static final int CHUNK = 64;
+    private static final int MAX_REPORTED = 20;
+
+    private final ReplayArchive archive;
+    private final int threads;
+    private final AtomicLong nextId = new AtomicLong();
+
+    public ArchiveReplayer(ReplayArchive archive, int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("need at least one thread: " + threads);
+        this.archive = archive;
+        this.threads = threads;
+    }
+
+    public Result run() throws InterruptedException {
+        long start = System.nanoTime();
+        final Result[] results = new Result[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final Result result = results[t] = new Result();
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(result);
+                }
+            }, "archive-replayer-" + t);
+            workers[t].start();
+        }
+        Result total = new Result();
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            total.add(results[t]);
+        }
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    private void work(Result result) {
+        long size = archive.size();
+        while (true) {
+            long first = nextId.getAndAdd(CHUNK);
+            if (first >= size)
+                return;
+            for (long id = first; id < Math.min(first + CHUNK, size); id++) {
+                play(id, result);
+            }
+        }
+    }
+
+    private void play(long id, Result result) {
+        try {
+            ReplayPlayer player = new ReplayPlayer(archive.open(id));
+            ReplayPlayer.Outcome outcome = player.play();
+            result.games++;
+            result.ticks += player.getGame().getTicks();
+            if (outcome == ReplayPlayer.Outcome.VERIFIED)
+                result.verified++;
+            else if (outcome == ReplayPlayer.Outcome.TRUNCATED)
+                result.truncated++;
+            else
+                result.fail(id + ": " + player.describe(outcome));
+        } catch (IOException | RuntimeException e) {
+            //a damaged game counts as failed, the worker goes on with the rest of its chunk
+            result.games++;
+            result.fail(id + ": " + (e instanceof IOException ? e.getMessage() : e.toString()));
+        }
+    }
+
+    //counts of one worker, or of all of them once merged
+    public static class Result {
+
+        private long games;
+        private long verified;
+        private long truncated;
+        private long failed;
+        private long ticks;
+        private long nanos;
+        private final List<String> failures = new ArrayList<String>();
+
+        private void fail(String message) {
+            failed++;
+            if (failures.size() < MAX_REPORTED)
+                failures.add(message);
+        }
+
+        private void add(Result other) {
+            games += other.games;
+            verified += other.verified;
+            truncated += other.truncated;
+            failed += other.failed;
+            ticks += other.ticks;
+            for (String failure : other.failures) {
+                if (failures.size() < MAX_REPORTED)
+                    failures.add(failure);
+            }
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getVerified() {
+            return verified;
+        }
+
+        public long getTruncated() {
+            return truncated;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public void print(PrintStream out) {
+            double seconds = Math.max(nanos / 1e9, 1e-9);
+            out.println(String.format("%,d games: %,d verified, %,d cut off, %,d failed; %,d ticks in %.2fs (%,.0f games/s, %,.0f ticks/s)",
+                    games, verified, truncated, failed, ticks, seconds, games / seconds, ticks / seconds));
+            for (String failure : failures) {
+                out.println("  " + failure);
+            }
+        }
+    }
+}
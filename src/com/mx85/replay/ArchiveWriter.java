@@ -0,0 +1,161 @@
+package com.mx85.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Appends replays to a ReplayArchive. Each replay is played headless once on the way in,
+ * which both checks it against its own end record and yields the numbers for its index
+ * entry; then its bytes go to the end of the current segment and its entry to the end of
+ * the segment's index. A new segment starts once the current one would grow past the
+ * segment size.
+ *
+ * The replay bytes are always written before the entry pointing at them, and force()
+ * makes the data durable before the index. Appends are not forced one by one, so after a
+ * crash or power loss the games appended since the last force() may be lost: reopening
+ * the archive cuts off a partial entry, drops the entries that point past the end of the
+ * data that made it to disk and cuts off any replay bytes no entry points at. Replay bytes
+ * the disk kept only in part are not detected here, verify finds them. One writer per
+ * archive at a time.
+ */
+public class ArchiveWriter implements Closeable {
+
+    public static final long DEFAULT_SEGMENT_BYTES = 256L << 20;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final ByteBuffer entry = ByteBuffer.allocate(ArchiveEntry.ENTRY_BYTES);
+
+    private int segment;
+    private FileChannel data;
+    private FileChannel index;
+    private long dataSize;
+    private long nextId;
+
+    public ArchiveWriter(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES);
+    }
+
+    //segments are mapped whole by readers, so they stay below 2GB
+    public ArchiveWriter(Path directory, long segmentBytes) throws IOException {
+        if (segmentBytes < 1 || segmentBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("segment size out of range: " + segmentBytes);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        int segments = ReplayArchive.countSegments(directory);
+        if (segments == 0) {
+            openSegment(0);
+            return;
+        }
+        openSegment(segments - 1);
+        recover();
+    }
+
+    private void openSegment(int segment) throws IOException {
+        this.segment = segment;
+        data = FileChannel.open(ReplayArchive.dataPath(directory, segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(ReplayArchive.indexPath(directory, segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (index.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(ReplayArchive.INDEX_HEADER_BYTES);
+            header.putInt(ReplayArchive.INDEX_MAGIC).putInt(ReplayArchive.INDEX_VERSION).flip();
+            writeFully(index, header, 0);
+        }
+        dataSize = data.size();
+    }
+
+    /*drop whatever an interrupted append left behind in the last segment and find the next game id: a partial entry,
+    * the entries whose replay bytes did not all reach the data file and the bytes no entry points at
+    */
+    private void recover() throws IOException {
+        long entries = (index.size() - ReplayArchive.INDEX_HEADER_BYTES) / ArchiveEntry.ENTRY_BYTES;
+        long size = data.size();
+        ByteBuffer last = ByteBuffer.allocate(ArchiveEntry.ENTRY_BYTES);
+        ArchiveEntry kept = null;
+        for (; entries > 0; entries--) {
+            last.clear();
+            readFully(index, last, ReplayArchive.INDEX_HEADER_BYTES + (entries - 1) * ArchiveEntry.ENTRY_BYTES);
+            ArchiveEntry entry = ArchiveEntry.read(last, 0, segment);
+            if (entry.getOffset() >= 0 && entry.getLength() >= 0 && entry.getOffset() + entry.getLength() <= size) {
+                kept = entry;
+                break;
+            }
+        }
+        index.truncate(ReplayArchive.INDEX_HEADER_BYTES + entries * ArchiveEntry.ENTRY_BYTES);
+        long end = 0;
+        if (kept != null) {
+            end = kept.getOffset() + kept.getLength();
+            nextId = kept.getId() + 1;
+        } else if (segment > 0) {
+            nextId = ReplayArchive.open(directory).size();
+        }
+        data.truncate(end);
+        dataSize = end;
+    }
+
+    //append a recording from a file, returns its game id
+    public long append(Path replay) throws IOException {
+        return append(Files.readAllBytes(replay));
+    }
+
+    //append one whole replay file held in memory, returns its game id; replays that do not match their own end record are refused
+    public long append(byte[] replay) throws IOException {
+        ReplayReader reader = new ReplayReader(ByteBuffer.wrap(replay));
+        ReplayPlayer player = new ReplayPlayer(reader);
+        ReplayPlayer.Outcome outcome = player.play();
+        if (outcome == ReplayPlayer.Outcome.MISMATCH)
+            throw new IOException("replay does not end in its recorded state: " + player.describe(outcome));
+        if (dataSize > 0 && dataSize + replay.length > segmentBytes) {
+            close();
+            openSegment(segment + 1);
+        }
+        long id = nextId++;
+        writeFully(data, ByteBuffer.wrap(replay), dataSize);
+        ArchiveEntry written = new ArchiveEntry(id, segment, reader.getHeader().getSeed(), player.getGame().getTicks(),
+                dataSize, replay.length, player.getGame().getScore(), player.getGame().getLines(),
+                player.getGame().getPieces(), player.getGame().getBestClear());
+        entry.clear();
+        written.write(entry);
+        entry.flip();
+        writeFully(index, entry, index.size());
+        dataSize += replay.length;
+        return id;
+    }
+
+    //make everything appended so far durable
+    public void force() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new IOException("archive index ends early");
+            position += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+}
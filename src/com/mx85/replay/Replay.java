@@ -0,0 +1,145 @@
+package com.mx85.replay;
+
+import com.mx85.engine.AutoRepeat;
+import com.mx85.engine.Board;
+import com.mx85.engine.Game;
+import com.mx85.engine.GravityCurve;
+import com.mx85.engine.PieceGenerators;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Header of a replay file: everything needed to rebuild the game a recording started
+ * from. Since the engine is deterministic, the seed and the commands applied at each
+ * tick are enough to play a whole game again.
+ *
+ * File layout, version 1 (all fixed-width numbers big-endian):
+ *
+ *   header   int magic "TRPY", byte version, int width, int height, byte generator name
+ *            length, generator name in ASCII, long seed, int das, int arr, int preview
+ *   records  varint ticks since the previous record, byte command
+ *   end      varint ticks since the previous record to the final tick, byte END, then
+ *            varint score, varint lines, varint pieces, long board checksum
+ *
+ * Records are written as they happen, so a file cut off anywhere after the header is a
+ * valid prefix of the game and plays up to the last complete record.
+ */
+public final class Replay {
+
+    public static final int MAGIC = 0x54525059; //"TRPY"
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".trp";
+
+    static final int END = 0xff; //in place of a command byte, marks the end record
+    static final int FIXED_HEADER_BYTES = 4 + 1 + 4 + 4 + 1; //up to and including the generator name length
+    static final int MAX_VARLONG_BYTES = 10;
+
+    private final int width;
+    private final int height;
+    private final String generator;
+    private final long seed;
+    private final int das;
+    private final int arr;
+    private final int preview;
+
+    public Replay(int width, int height, String generator, long seed, int das, int arr, int preview) {
+        this.width = width;
+        this.height = height;
+        this.generator = generator;
+        this.seed = seed;
+        this.das = das;
+        this.arr = arr;
+        this.preview = preview;
+    }
+
+    //the header for recording a game that has not been played yet
+    public static Replay of(Game game) {
+        AutoRepeat autoRepeat = game.getAutoRepeat();
+        return new Replay(game.getBoard().getWidth(), game.getBoard().getHeight(), game.getGenerator().getName(),
+                game.getGenerator().getSeed(), autoRepeat.getDas(), autoRepeat.getArr(), game.getPreviewCount());
+    }
+
+    //a new game in the state the recording started from
+    public Game createGame() {
+        return new Game(width, height, GravityCurve.classic(), new AutoRepeat(das, arr),
+                PieceGenerators.create(generator, seed), preview);
+    }
+
+    //FNV-1a over the colour of every cell, recorded at the end so playback can prove it reached the same board
+    public static long checksum(Board board) {
+        long hash = 0xcbf29ce484222325L;
+        for (int y = 0; y < board.getHeight(); y++) {
+            for (int x = 0; x < board.getWidth(); x++) {
+                hash ^= board.getColor(x, y);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+
+    void write(ByteBuffer out) {
+        byte[] name = generator.getBytes(StandardCharsets.US_ASCII);
+        out.putInt(MAGIC);
+        out.put((byte) VERSION);
+        out.putInt(width);
+        out.putInt(height);
+        out.put((byte) name.length);
+        out.put(name);
+        out.putLong(seed);
+        out.putInt(das);
+        out.putInt(arr);
+        out.putInt(preview);
+    }
+
+    //size of the whole header, in must hold the FIXED_HEADER_BYTES at its position
+    static int headerBytes(ByteBuffer in) {
+        int nameLength = in.get(in.position() + FIXED_HEADER_BYTES - 1) & 0xff;
+        return FIXED_HEADER_BYTES + nameLength + 8 + 4 + 4 + 4;
+    }
+
+    //in must hold headerBytes() bytes at its position
+    static Replay read(ByteBuffer in) throws IOException {
+        if (in.getInt() != MAGIC)
+            throw new IOException("not a replay file");
+        int version = in.get() & 0xff;
+        if (version != VERSION)
+            throw new IOException("unsupported replay version " + version + ", this build reads version " + VERSION);
+        int width = in.getInt();
+        int height = in.getInt();
+        byte[] name = new byte[in.get() & 0xff];
+        in.get(name);
+        return new Replay(width, height, new String(name, StandardCharsets.US_ASCII), in.getLong(), in.getInt(),
+                in.getInt(), in.getInt());
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getGenerator() {
+        return generator;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + " " + generator + " seed " + seed + " das " + das + " arr " + arr;
+    }
+}
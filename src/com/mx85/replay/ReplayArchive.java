@@ -0,0 +1,248 @@
+package com.mx85.replay;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Many replays packed into a few segment files instead of one file per game. Segment n
+ * is a data file (NNNNN.seg) holding whole replay files back to back and an index
+ * (NNNNN.idx) holding a small header and one fixed-width ArchiveEntry per replay, in
+ * game id order. Archives are only ever appended to, by an ArchiveWriter.
+ *
+ * Opening an archive maps every segment and index read-only, so queries scan the index
+ * entries in place through the page cache and replays are read straight out of the
+ * mapped data without copying. An open archive sees the games that existed when it was
+ * opened. Safe for any number of reader threads.
+ */
+public class ReplayArchive {
+
+    static final int INDEX_MAGIC = 0x54525049; //"TRPI"
+    static final int INDEX_VERSION = 1;
+    static final int INDEX_HEADER_BYTES = 8;
+
+    private final MappedByteBuffer[] data;
+    private final MappedByteBuffer[] index;
+    private final long[] firstIds; //id of the first game of every segment
+    private final int[] counts;    //games in every segment
+    private final long size;
+
+    private ReplayArchive(MappedByteBuffer[] data, MappedByteBuffer[] index) throws IOException {
+        this.data = data;
+        this.index = index;
+        this.firstIds = new long[index.length];
+        this.counts = new int[index.length];
+        long games = 0;
+        for (int i = 0; i < index.length; i++) {
+            if (index[i].getInt(0) != INDEX_MAGIC || index[i].getInt(4) != INDEX_VERSION)
+                throw new IOException("not a replay archive index: " + i);
+            firstIds[i] = games;
+            counts[i] = (index[i].limit() - INDEX_HEADER_BYTES) / ArchiveEntry.ENTRY_BYTES;
+            games += counts[i];
+        }
+        this.size = games;
+    }
+
+    public static ReplayArchive open(Path directory) throws IOException {
+        int segments = countSegments(directory);
+        MappedByteBuffer[] data = new MappedByteBuffer[segments];
+        MappedByteBuffer[] index = new MappedByteBuffer[segments];
+        for (int i = 0; i < segments; i++) {
+            data[i] = map(dataPath(directory, i));
+            index[i] = map(indexPath(directory, i));
+        }
+        return new ReplayArchive(data, index);
+    }
+
+    //the mapping stays valid after the channel is closed
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static Path dataPath(Path directory, int segment) {
+        return directory.resolve(String.format("%05d.seg", segment));
+    }
+
+    static Path indexPath(Path directory, int segment) {
+        return directory.resolve(String.format("%05d.idx", segment));
+    }
+
+    //segments are numbered from 0 without gaps
+    static int countSegments(Path directory) {
+        int segments = 0;
+        while (Files.exists(indexPath(directory, segments))) {
+            segments++;
+        }
+        return segments;
+    }
+
+    //number of games in the archive
+    public long size() {
+        return size;
+    }
+
+    public ArchiveEntry entry(long id) {
+        int segment = segmentOf(id);
+        return ArchiveEntry.read(index[segment], position(id - firstIds[segment]), segment);
+    }
+
+    //a reader over the replay bytes of a game, straight from the mapped segment; an entry pointing outside it is an IOException
+    public ReplayReader open(ArchiveEntry entry) throws IOException {
+        ByteBuffer replay = data[entry.getSegment()].duplicate();
+        if (entry.getOffset() < 0 || entry.getLength() < 0 || entry.getOffset() + entry.getLength() > replay.capacity())
+            throw new IOException("game " + entry.getId() + " points past the end of segment " + entry.getSegment() + ": "
+                    + entry.getLength() + " bytes at " + entry.getOffset() + " of " + replay.capacity());
+        replay.position((int) entry.getOffset()).limit((int) (entry.getOffset() + entry.getLength()));
+        return new ReplayReader(replay);
+    }
+
+    public ReplayReader open(long id) throws IOException {
+        return open(entry(id));
+    }
+
+    //the n highest scoring games, best first; only the score field of each entry is read while scanning
+    public List<ArchiveEntry> topScores(int n) {
+        //min-heap on score of the best n seen so far, as parallel primitive arrays
+        int[] scores = new int[n];
+        long[] ids = new long[n];
+        int heapSize = 0;
+        for (int s = 0; s < index.length && n > 0; s++) {
+            for (int i = 0; i < counts[s]; i++) {
+                int score = index[s].getInt(position(i) + ArchiveEntry.SCORE);
+                if (heapSize < n) {
+                    scores[heapSize] = score;
+                    ids[heapSize] = firstIds[s] + i;
+                    siftUp(scores, ids, heapSize++);
+                } else if (score > scores[0]) {
+                    scores[0] = score;
+                    ids[0] = firstIds[s] + i;
+                    siftDown(scores, ids, heapSize);
+                }
+            }
+        }
+        ArchiveEntry[] best = new ArchiveEntry[heapSize];
+        while (heapSize > 0) {
+            best[heapSize - 1] = entry(ids[0]);
+            heapSize--;
+            scores[0] = scores[heapSize];
+            ids[0] = ids[heapSize];
+            siftDown(scores, ids, heapSize);
+        }
+        List<ArchiveEntry> result = new ArrayList<ArchiveEntry>(best.length);
+        for (ArchiveEntry entry : best) {
+            result.add(entry);
+        }
+        return result;
+    }
+
+    //every game in which a single piece cleared at least the given number of rows, in id order
+    public List<ArchiveEntry> withClear(int rows) {
+        List<ArchiveEntry> result = new ArrayList<ArchiveEntry>();
+        for (int s = 0; s < index.length; s++) {
+            for (int i = 0; i < counts[s]; i++) {
+                if (index[s].get(position(i) + ArchiveEntry.BEST_CLEAR) >= rows)
+                    result.add(ArchiveEntry.read(index[s], position(i), s));
+            }
+        }
+        return result;
+    }
+
+    private static int position(long indexInSegment) {
+        return (int) (INDEX_HEADER_BYTES + indexInSegment * ArchiveEntry.ENTRY_BYTES);
+    }
+
+    private int segmentOf(long id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("no game " + id + " in an archive of " + size);
+        int low = 0, high = firstIds.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstIds[mid] <= id)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        return low;
+    }
+
+    private static void siftUp(int[] scores, long[] ids, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i])
+                return;
+            swap(scores, ids, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] scores, long[] ids, int size) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                return;
+            if (child + 1 < size && scores[child + 1] < scores[child])
+                child++;
+            if (scores[i] <= scores[child])
+                return;
+            swap(scores, ids, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] scores, long[] ids, int a, int b) {
+        int score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        long id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+
+    /*usage: ReplayArchive pack dir file...   append replay files to an archive
+    *        ReplayArchive top dir [n]        the n best scores, 100 by default
+    *        ReplayArchive clears dir [rows]  games where one piece cleared at least rows rows, 4 by default
+    *        ReplayArchive verify dir [threads]  re-simulate every game on all cores
+    */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("usage: ReplayArchive pack|top|clears|verify dir [arguments]");
+            return;
+        }
+        Path directory = Paths.get(args[1]);
+        if (args[0].equals("pack")) {
+            try (ArchiveWriter writer = new ArchiveWriter(directory)) {
+                for (int i = 2; i < args.length; i++) {
+                    try {
+                        System.out.println(args[i] + ": game " + writer.append(Paths.get(args[i])));
+                    } catch (IOException e) {
+                        System.out.println(args[i] + ": " + e.getMessage());
+                    }
+                }
+                writer.force();
+            }
+        } else if (args[0].equals("top")) {
+            for (ArchiveEntry entry : open(directory).topScores(args.length > 2 ? Integer.parseInt(args[2]) : 100)) {
+                System.out.println(entry);
+            }
+        } else if (args[0].equals("clears")) {
+            for (ArchiveEntry entry : open(directory).withClear(args.length > 2 ? Integer.parseInt(args[2]) : 4)) {
+                System.out.println(entry);
+            }
+        } else if (args[0].equals("verify")) {
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            new ArchiveReplayer(open(directory), threads).run().print(System.out);
+        } else {
+            System.out.println("unknown archive command: " + args[0]);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.mx85.replay;
+
+import com.mx85.engine.Game;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Headless playback: re-simulates a recording tick by tick as fast as the CPU allows,
+ * with no timing, snapshots or Swing involved, and checks that the game ends on the
+ * recorded board, score, lines and piece count.
+ */
+public class ReplayPlayer {
+
+    public enum Outcome { VERIFIED, MISMATCH, TRUNCATED }
+
+    private final Game game;
+    private final ReplayReader reader;
+    private long nanos;
+
+    public ReplayPlayer(ReplayReader reader) {
+        this.reader = reader;
+        this.game = reader.getHeader().createGame();
+    }
+
+    //play the whole recording, or as much of it as there is
+    public Outcome play() throws IOException {
+        long start = System.nanoTime();
+        while (reader.feed(game) && !game.isGameOver()) {
+            game.tick();
+        }
+        nanos = System.nanoTime() - start;
+        if (!reader.isComplete())
+            return Outcome.TRUNCATED;
+        boolean same = game.getTicks() == reader.getFinalTicks() && game.getScore() == reader.getFinalScore()
+                && game.getLines() == reader.getFinalLines() && game.getPieces() == reader.getFinalPieces()
+                && Replay.checksum(game.getBoard()) == reader.getFinalChecksum();
+        return same ? Outcome.VERIFIED : Outcome.MISMATCH;
+    }
+
+    public Game getGame() {
+        return game;
+    }
+
+    //one line on what was played and how it compares to the recording
+    public String describe(Outcome outcome) {
+        String played = String.format("%,d ticks, %d commands, %d pieces, %d lines, score %d (%,.0f ticks/s)",
+                game.getTicks(), reader.getRecords(), game.getPieces(), game.getLines(), game.getScore(),
+                game.getTicks() / Math.max(nanos / 1e9, 1e-9));
+        switch (outcome) {
+            case VERIFIED:
+                return played + ", verified";
+            case TRUNCATED:
+                return played + ", recording cut off here";
+            default:
+                return played + String.format(", MISMATCH: recorded %,d ticks, %d pieces, %d lines, score %d, board %s",
+                        reader.getFinalTicks(), reader.getFinalPieces(), reader.getFinalLines(),
+                        reader.getFinalScore(), Replay.checksum(game.getBoard()) == reader.getFinalChecksum()
+                                ? "same" : "differs");
+        }
+    }
+
+    //usage: ReplayPlayer file... plays every file and exits with status 1 if any of them does not match its recording
+    public static void main(String[] args) throws IOException {
+        boolean mismatch = false;
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            try (ReplayReader reader = ReplayReader.open(path)) {
+                ReplayPlayer player = new ReplayPlayer(reader);
+                Outcome outcome = player.play();
+                System.out.println(path + ": " + reader.getHeader() + ": " + player.describe(outcome));
+                mismatch |= outcome == Outcome.MISMATCH;
+            } catch (IOException e) {
+                System.out.println(path + ": " + e.getMessage());
+                mismatch = true;
+            }
+        }
+        if (mismatch)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,193 @@
+package com.mx85.replay;
+
+import com.mx85.engine.Command;
+import com.mx85.engine.Game;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Streams the records of a replay file through a small buffer, so a recording of any
+ * length plays in constant memory. A file that ends in the middle of a record, or
+ * without the end record, is treated as cut off: everything before that point is
+ * played and isComplete() stays false.
+ */
+public class ReplayReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel; //null when reading straight from a buffer
+    private final ByteBuffer buffer;
+    private final Replay header;
+    private boolean eof;
+
+    private boolean pending;   //a record has been read and not applied yet
+    private long tick;         //tick of the pending record, or of the last one read
+    private int command;       //command of the pending record
+    private long records;
+
+    private boolean complete;  //the end record was read in full
+    private long finalTicks;
+    private int finalScore;
+    private int finalLines;
+    private int finalPieces;
+    private long finalChecksum;
+
+    public ReplayReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.limit(0);
+        header = readHeader();
+    }
+
+    //a replay held in memory, such as a slice of a mapped archive segment; reads from data's position to its limit without copying
+    public ReplayReader(ByteBuffer data) throws IOException {
+        this.channel = null;
+        this.buffer = data.slice();
+        this.eof = true;
+        header = readHeader();
+    }
+
+    private Replay readHeader() throws IOException {
+        if (!request(Replay.FIXED_HEADER_BYTES) || !request(Replay.headerBytes(buffer)))
+            throw new EOFException("replay header is cut off");
+        Replay header = Replay.read(buffer);
+        advance();
+        return header;
+    }
+
+    public static ReplayReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new ReplayReader(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Replay getHeader() {
+        return header;
+    }
+
+    /*apply every command recorded for the current tick of the game, which must have been created from the header.
+    * returns false once the recording has nothing left for the game: the caller stops ticking it there
+    */
+    public boolean feed(Game game) throws IOException {
+        while (pending && tick <= game.getTicks()) {
+            game.command(command);
+            advance();
+        }
+        return pending || (complete && game.getTicks() < finalTicks);
+    }
+
+    //read the next record into tick and command, or the end record
+    private void advance() throws IOException {
+        pending = false;
+        long delta = readVarLong();
+        int next = delta < 0 ? -1 : readByte();
+        if (next < 0)
+            return; //cut off
+        if (next == Replay.END) {
+            readEnd(tick + delta);
+            return;
+        }
+        if (!Command.isValid(next))
+            throw new IOException("corrupt replay: " + Command.toString(next) + " in record " + records);
+        tick += delta;
+        command = next;
+        pending = true;
+        records++;
+    }
+
+    private void readEnd(long ticks) throws IOException {
+        long score = readVarLong();
+        long lines = score < 0 ? -1 : readVarLong();
+        long pieces = lines < 0 ? -1 : readVarLong();
+        if (pieces < 0 || !request(8))
+            return; //cut off inside the end record, the final state cannot be checked
+        finalTicks = ticks;
+        finalScore = (int) score;
+        finalLines = (int) lines;
+        finalPieces = (int) pieces;
+        finalChecksum = buffer.getLong();
+        complete = true;
+    }
+
+    //make at least n bytes available in the buffer, false when the file ends first
+    private boolean request(int n) throws IOException {
+        if (buffer.remaining() >= n)
+            return true;
+        if (eof)
+            return false;
+        buffer.compact();
+        while (buffer.position() < n && !eof) {
+            if (channel.read(buffer) < 0)
+                eof = true;
+        }
+        buffer.flip();
+        return buffer.remaining() >= n;
+    }
+
+    private int readByte() throws IOException {
+        if (!request(1))
+            return -1;
+        return buffer.get() & 0xff;
+    }
+
+    //an unsigned LEB128 number, -1 when the file ends before its last byte
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 7 * Replay.MAX_VARLONG_BYTES; shift += 7) {
+            int b = readByte();
+            if (b < 0)
+                return -1;
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("corrupt replay: number too long in record " + records);
+    }
+
+    //whether the recording ended normally, so the final state can be checked
+    public boolean isComplete() {
+        return complete;
+    }
+
+    //commands read so far
+    public long getRecords() {
+        return records;
+    }
+
+    public long getFinalTicks() {
+        return finalTicks;
+    }
+
+    public int getFinalScore() {
+        return finalScore;
+    }
+
+    public int getFinalLines() {
+        return finalLines;
+    }
+
+    public int getFinalPieces() {
+        return finalPieces;
+    }
+
+    public long getFinalChecksum() {
+        return finalChecksum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+}
@@ -0,0 +1,91 @@
+package com.mx85.replay;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.Simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Records a game as it is played: the header once, then one record of usually two bytes
+ * for every command applied. Records collect in a heap buffer that goes to the file
+ * channel when it fills up, or when it holds more than about a second of play, so a
+ * crashed session loses at most that last second. Not thread safe, the simulation thread
+ * owns it.
+ */
+public class ReplayWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORD_BYTES = 2 * Replay.MAX_VARLONG_BYTES + 3 * 5 + 8 + 1;
+    private static final long FLUSH_TICKS = Simulation.TICKS_PER_SECOND;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long lastTick;    //tick of the previous record, records store the difference
+    private long flushedTick; //tick of the last record that reached the channel
+    private boolean finished;
+
+    public ReplayWriter(Path path, Replay header) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        header.write(buffer);
+        flush();
+    }
+
+    //a recording of a game that has not been played yet
+    public static ReplayWriter create(Path path, Game game) throws IOException {
+        return new ReplayWriter(path, Replay.of(game));
+    }
+
+    //a command applied to the game at the given tick, before that tick ran
+    public void record(long tick, int command) throws IOException {
+        if (buffer.remaining() < MAX_RECORD_BYTES)
+            flush();
+        Replay.putVarLong(buffer, tick - lastTick);
+        buffer.put((byte) command);
+        lastTick = tick;
+        if (tick - flushedTick >= FLUSH_TICKS)
+            flush();
+    }
+
+    //write the end record with the final state of the game to check playback against, and close the file
+    public void finish(Game game) throws IOException {
+        if (finished)
+            return;
+        if (buffer.remaining() < MAX_RECORD_BYTES)
+            flush();
+        Replay.putVarLong(buffer, game.getTicks() - lastTick);
+        buffer.put((byte) Replay.END);
+        Replay.putVarLong(buffer, game.getScore());
+        Replay.putVarLong(buffer, game.getLines());
+        Replay.putVarLong(buffer, game.getPieces());
+        buffer.putLong(Replay.checksum(game.getBoard()));
+        finished = true;
+        close();
+    }
+
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        flushedTick = lastTick;
+    }
+
+    //closing without finish() leaves a truncated recording, which still plays up to its last record
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen())
+            return;
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
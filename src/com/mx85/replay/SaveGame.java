@@ -0,0 +1,58 @@
+package com.mx85.replay;
+
+import com.mx85.engine.GameState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/*
+ * A saved game on disk: one GameState, so a game can be put away and picked up again
+ * exactly where it was, piece sequence included.
+ *
+ * File layout (fixed-width numbers big-endian):
+ *
+ *   header   int magic "TSAV", byte version of the GameState encoding
+ *   state    GameState.write()
+ *
+ * A save goes to a temporary file next to the target first and is then moved over it,
+ * so a crash while saving leaves the previous save intact rather than half a new one.
+ */
+public final class SaveGame {
+
+    public static final int MAGIC = 0x54534156; //"TSAV"
+    public static final String EXTENSION = ".tsav";
+
+    private SaveGame() {
+    }
+
+    public static void save(Path path, GameState state) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(5 + state.maxEncodedBytes());
+        buffer.putInt(MAGIC);
+        buffer.put((byte) GameState.VERSION);
+        state.write(buffer);
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, Arrays.copyOf(buffer.array(), buffer.position()));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static GameState load(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 5 || buffer.getInt() != MAGIC)
+            throw new IOException(path + " is not a saved game");
+        int version = buffer.get() & 0xff;
+        GameState state = GameState.read(buffer, version);
+        if (buffer.hasRemaining())
+            throw new IOException(buffer.remaining() + " unexpected bytes after the saved game in " + path);
+        return state;
+    }
+}
@@ -0,0 +1,103 @@
+package com.mx85.scores;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Totals over every game of one player: games played, best score, and the summed score,
+ * lines, pieces and playing time the averages come from. Immutable, adding a game gives
+ * new totals.
+ *
+ * Layout in the log (big-endian): int games, int best score, long total score, long
+ * total lines, long total pieces, long total millis, short player name length and the
+ * name in UTF-8.
+ */
+public final class PlayerStats {
+
+    private final String player;
+    private final int games;
+    private final int bestScore;
+    private final long totalScore;
+    private final long totalLines;
+    private final long totalPieces;
+    private final long totalMillis;
+
+    PlayerStats(String player, int games, int bestScore, long totalScore, long totalLines, long totalPieces,
+                long totalMillis) {
+        this.player = player;
+        this.games = games;
+        this.bestScore = bestScore;
+        this.totalScore = totalScore;
+        this.totalLines = totalLines;
+        this.totalPieces = totalPieces;
+        this.totalMillis = totalMillis;
+    }
+
+    //the totals of a player's first game
+    static PlayerStats of(ScoreRecord game) {
+        return new PlayerStats(game.getPlayer(), 1, game.getScore(), game.getScore(), game.getLines(), game.getPieces(),
+                game.getDurationMillis());
+    }
+
+    PlayerStats plus(ScoreRecord game) {
+        return new PlayerStats(player, games + 1, Math.max(bestScore, game.getScore()), totalScore + game.getScore(),
+                totalLines + game.getLines(), totalPieces + game.getPieces(), totalMillis + game.getDurationMillis());
+    }
+
+    static PlayerStats read(ByteBuffer in) {
+        int games = in.getInt();
+        int best = in.getInt();
+        long score = in.getLong();
+        long lines = in.getLong();
+        long pieces = in.getLong();
+        long millis = in.getLong();
+        return new PlayerStats(ScoreLog.getString(in), games, best, score, lines, pieces, millis);
+    }
+
+    void write(ByteBuffer out) {
+        out.putInt(games);
+        out.putInt(bestScore);
+        out.putLong(totalScore);
+        out.putLong(totalLines);
+        out.putLong(totalPieces);
+        out.putLong(totalMillis);
+        ScoreLog.putString(out, player);
+    }
+
+    public String getPlayer() {
+        return player;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public long getTotalScore() {
+        return totalScore;
+    }
+
+    public long getTotalLines() {
+        return totalLines;
+    }
+
+    public long getTotalPieces() {
+        return totalPieces;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public double getMeanScore() {
+        return (double) totalScore / games;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d games, best %d, mean %.1f, %d lines, %d pieces, %.1f minutes played",
+                player, games, bestScore, getMeanScore(), totalLines, totalPieces, totalMillis / 60000.0);
+    }
+}
@@ -0,0 +1,271 @@
+package com.mx85.scores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.zip.CRC32;
+
+/*
+ * The file behind a ScoreStore: a header, then records that are only ever appended.
+ *
+ * File layout, version 1 (big-endian):
+ *
+ *   header   int magic "TSCL", int version
+ *   records  int payload length, int CRC32 of the payload, payload: byte type, then
+ *            GAME    a ScoreRecord, a finished game
+ *            TOTALS  a PlayerStats, a player's totals as of the last compaction
+ *            RANKED  a ScoreRecord kept by the last compaction for the top scores, its
+ *                    game is already in the TOTALS of its player
+ *
+ * A batch of records is written with one write and made durable with one force, so a
+ * crash can only leave a torn tail: opening the log reads records up to the first one
+ * that is cut short or fails its checksum and cuts the file off there.
+ *
+ * Compaction writes the totals of every player and the ranked games into a new file,
+ * forces it and moves it over the log in one atomic rename, so the log on disk is always
+ * either the old one or the new one. Not thread safe, the writer thread of the store
+ * owns it.
+ */
+public class ScoreLog implements Closeable {
+
+    static final int MAGIC = 0x5453434c; //"TSCL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 + 6 * 8 + 2 * 4 + 2 + ScoreRecord.MAX_PLAYER_BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final byte GAME = 1;
+    static final byte TOTALS = 2;
+    static final byte RANKED = 3;
+
+    //what the records of a log say, in the order they were written
+    interface Visitor {
+
+        //a game, counted when its player's totals do not hold it yet
+        void game(ScoreRecord game, boolean counted);
+
+        void totals(PlayerStats totals);
+    }
+
+    private final Path path;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long size;          //bytes of whole records, appends go here
+    private long records;       //records in the file
+    private long droppedBytes;  //cut off the end when the log was opened
+
+    private ScoreLog(Path path) {
+        this.path = path;
+    }
+
+    //open the log, creating it when there is none, and hand every intact record to the visitor
+    public static ScoreLog open(Path path, Visitor visitor) throws IOException {
+        ScoreLog log = new ScoreLog(path);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        Files.deleteIfExists(compactionPath(path)); //a compaction that never got to its rename
+        log.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            log.recover(visitor);
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    private void recover(Visitor visitor) throws IOException {
+        long length = channel.size();
+        if (length < HEADER_BYTES) {
+            //new, or torn before its header was complete
+            channel.truncate(0);
+            writeHeader(channel);
+            channel.force(false);
+            size = HEADER_BYTES;
+            return;
+        }
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("score log too big to read: " + path);
+        ByteBuffer in = ByteBuffer.allocate((int) length);
+        while (in.hasRemaining()) {
+            if (channel.read(in, in.position()) < 0)
+                throw new IOException("score log ends early: " + path);
+        }
+        in.flip();
+        if (in.getInt() != MAGIC || in.getInt() != VERSION)
+            throw new IOException("not a score log: " + path);
+        int end = HEADER_BYTES;
+        while (in.remaining() >= RECORD_HEADER_BYTES) {
+            int payload = in.getInt(end);
+            if (payload < 1 || payload > MAX_PAYLOAD_BYTES || payload > in.limit() - end - RECORD_HEADER_BYTES)
+                break;
+            crc.reset();
+            crc.update(in.array(), end + RECORD_HEADER_BYTES, payload);
+            if ((int) crc.getValue() != in.getInt(end + 4))
+                break;
+            in.position(end + RECORD_HEADER_BYTES);
+            if (!visit(in, visitor))
+                break;
+            end += RECORD_HEADER_BYTES + payload;
+            in.position(end);
+            records++;
+        }
+        size = end;
+        droppedBytes = length - end;
+        if (droppedBytes > 0) {
+            channel.truncate(end);
+            channel.force(false);
+        }
+    }
+
+    //hand the payload at the position of in to the visitor, false when it is not a record this version knows
+    private static boolean visit(ByteBuffer in, Visitor visitor) {
+        try {
+            byte type = in.get();
+            if (type == TOTALS)
+                visitor.totals(PlayerStats.read(in));
+            else if (type == GAME || type == RANKED)
+                visitor.game(ScoreRecord.read(in), type == GAME);
+            else
+                return false;
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return false; //a payload that passed its checksum but does not parse, written by something else
+        }
+    }
+
+    //append finished games and make them durable, one write and one force for all of them
+    public void append(Collection<ScoreRecord> games) throws IOException {
+        buffer.clear();
+        for (ScoreRecord game : games) {
+            if (buffer.remaining() < RECORD_HEADER_BYTES + MAX_PAYLOAD_BYTES)
+                size += flush(channel, size);
+            putRecord(buffer, GAME, game, null);
+            records++;
+        }
+        size += flush(channel, size);
+        channel.force(false);
+    }
+
+    /*replace the log by the totals of every player and the games that rank, which must hold everything the log says.
+    * the new log is written next to the old one and renamed over it once it is durable
+    */
+    public void compact(Collection<PlayerStats> totals, Collection<ScoreRecord> ranked) throws IOException {
+        Path next = compactionPath(path);
+        long written = HEADER_BYTES;
+        try (FileChannel out = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            buffer.clear();
+            for (PlayerStats player : totals) {
+                if (buffer.remaining() < RECORD_HEADER_BYTES + MAX_PAYLOAD_BYTES)
+                    written += flush(out, written);
+                putRecord(buffer, TOTALS, null, player);
+            }
+            for (ScoreRecord game : ranked) {
+                if (buffer.remaining() < RECORD_HEADER_BYTES + MAX_PAYLOAD_BYTES)
+                    written += flush(out, written);
+                putRecord(buffer, RANKED, game, null);
+            }
+            written += flush(out, written);
+            out.force(false);
+        }
+        channel.close();
+        try {
+            Files.move(next, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        size = written;
+        records = totals.size() + ranked.size();
+    }
+
+    //one record with its length and checksum in front, game or totals as the type says
+    private void putRecord(ByteBuffer out, byte type, ScoreRecord game, PlayerStats totals) {
+        int start = out.position();
+        out.position(start + RECORD_HEADER_BYTES);
+        out.put(type);
+        if (game != null)
+            game.write(out);
+        else
+            totals.write(out);
+        int payload = out.position() - start - RECORD_HEADER_BYTES;
+        crc.reset();
+        crc.update(out.array(), start + RECORD_HEADER_BYTES, payload);
+        out.putInt(start, payload);
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    //write out what the buffer holds at position and empty it, returns the bytes written
+    private int flush(FileChannel out, long position) throws IOException {
+        buffer.flip();
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer, position);
+        }
+        buffer.clear();
+        return bytes;
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            out.write(header, header.position());
+        }
+    }
+
+    private static Path compactionPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".compact");
+    }
+
+    static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xffff;
+        if (length > ScoreRecord.MAX_PLAYER_BYTES)
+            throw new IllegalArgumentException("player name of " + length + " bytes");
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //records in the file, the store compacts when enough games came in since the last time
+    public long getRecords() {
+        return records;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    //bytes of a torn or corrupt tail that were cut off when the log was opened
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,101 @@
+package com.mx85.scores;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * One finished game as the ScoreStore keeps it: who played, how it ended, how long it
+ * took and the seed it was dealt, so a high score can be played again with the same
+ * pieces. Immutable.
+ *
+ * Layout in the log (big-endian): long finished (epoch millis), long seed, int score,
+ * int lines, int pieces, long duration in millis, short player name length and the
+ * name in UTF-8.
+ */
+public final class ScoreRecord {
+
+    public static final int MAX_PLAYER_BYTES = 255;
+
+    private final String player;
+    private final int score;
+    private final int lines;
+    private final int pieces;
+    private final long durationMillis;
+    private final long seed;
+    private final long finishedMillis;
+
+    public ScoreRecord(String player, int score, int lines, int pieces, long durationMillis, long seed,
+                       long finishedMillis) {
+        if (player.getBytes(StandardCharsets.UTF_8).length > MAX_PLAYER_BYTES)
+            throw new IllegalArgumentException("player name longer than " + MAX_PLAYER_BYTES + " bytes: " + player);
+        this.player = player;
+        this.score = score;
+        this.lines = lines;
+        this.pieces = pieces;
+        this.durationMillis = durationMillis;
+        this.seed = seed;
+        this.finishedMillis = finishedMillis;
+    }
+
+    static ScoreRecord read(ByteBuffer in) {
+        long finished = in.getLong();
+        long seed = in.getLong();
+        int score = in.getInt();
+        int lines = in.getInt();
+        int pieces = in.getInt();
+        long duration = in.getLong();
+        return new ScoreRecord(ScoreLog.getString(in), score, lines, pieces, duration, seed, finished);
+    }
+
+    void write(ByteBuffer out) {
+        out.putLong(finishedMillis);
+        out.putLong(seed);
+        out.putInt(score);
+        out.putInt(lines);
+        out.putInt(pieces);
+        out.putLong(durationMillis);
+        ScoreLog.putString(out, player);
+    }
+
+    //true when this record ranks above the other one: the higher score, then the game that got there first
+    boolean ranksAbove(ScoreRecord other) {
+        if (score != other.score)
+            return score > other.score;
+        return finishedMillis < other.finishedMillis;
+    }
+
+    public String getPlayer() {
+        return player;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getPieces() {
+        return pieces;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    //when the game ended, in milliseconds since the epoch
+    public long getFinishedMillis() {
+        return finishedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: score %d, %d lines, %d pieces, %.1fs, seed %d",
+                player, score, lines, pieces, durationMillis / 1000.0, seed);
+    }
+}
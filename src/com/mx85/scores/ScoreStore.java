@@ -0,0 +1,285 @@
+package com.mx85.scores;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Every finished game on this machine, kept in a ScoreLog and indexed in memory: the
+ * best scores (up to a fixed number, best first) and the totals of every player, so a
+ * leaderboard query never reads the log. Opening the store reads the log once to build
+ * both.
+ *
+ * submit() only puts the game on a lock-free queue and wakes the writer thread, so the
+ * simulation thread can hand in a score between two ticks without ever waiting for the
+ * disk. The writer takes everything queued at once, appends it with one write and one
+ * force (a group commit) and only then adds it to the indexes, so a query shows what
+ * would survive a crash. After every compactEvery games it compacts the log down to the
+ * totals and the ranked games; compact() asks it to do so now. Only the writer thread
+ * ever touches the log after opening.
+ *
+ * A failing disk does not stop the games: the writer reports it once and from then on
+ * only keeps the indexes. Queries are safe from any thread.
+ */
+public class ScoreStore implements Closeable {
+
+    public static final int DEFAULT_TOP = 100;
+    public static final int DEFAULT_COMPACT_EVERY = 10_000;
+    private static final int MAX_BATCH = 1024;
+
+    private final ScoreLog log;
+    private final int top;
+    private final int compactEvery;
+    private final ConcurrentLinkedQueue<ScoreRecord> pending = new ConcurrentLinkedQueue<ScoreRecord>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong compactionsAsked = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    //guarded by this
+    private final List<ScoreRecord> ranking = new ArrayList<ScoreRecord>(); //best first, at most top
+    private final Map<String, PlayerStats> players = new HashMap<String, PlayerStats>();
+    private long committed; //games submitted that are in the log (or given up on) and in the indexes
+    private long compactionsDone; //compactions asked for that the writer got to
+
+    //writer thread only
+    private final List<ScoreRecord> batch = new ArrayList<ScoreRecord>();
+    private boolean failed;
+    private int sinceCompaction;
+
+    private ScoreStore(Path path, int top, int compactEvery) throws IOException {
+        if (top < 1 || compactEvery < 1)
+            throw new IllegalArgumentException("top and compaction interval must be positive: " + top + ", "
+                    + compactEvery);
+        this.top = top;
+        this.compactEvery = compactEvery;
+        this.log = ScoreLog.open(path, new ScoreLog.Visitor() {
+            @Override
+            public void game(ScoreRecord game, boolean counted) {
+                index(game, counted);
+                if (counted)
+                    sinceCompaction++; //games since the last compaction count towards the next one
+            }
+
+            @Override
+            public void totals(PlayerStats totals) {
+                players.put(totals.getPlayer(), totals);
+            }
+        });
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "tetris-scores");
+        writer.setDaemon(true);
+    }
+
+    public static ScoreStore open(Path path) throws IOException {
+        return open(path, DEFAULT_TOP, DEFAULT_COMPACT_EVERY);
+    }
+
+    //recover the log at path (creating it when there is none) and start the writer
+    public static ScoreStore open(Path path, int top, int compactEvery) throws IOException {
+        ScoreStore store = new ScoreStore(path, top, compactEvery);
+        store.writer.start();
+        return store;
+    }
+
+    //queue a finished game for the log, never blocks; it shows up in queries once it is durable
+    public void submit(ScoreRecord game) {
+        pending.offer(game);
+        submitted.incrementAndGet();
+        LockSupport.unpark(writer);
+    }
+
+    //wait until every game submitted so far is in the log and the indexes, not for the game threads
+    public void flush() throws InterruptedException {
+        long target = submitted.get();
+        LockSupport.unpark(writer);
+        synchronized (this) {
+            while (committed < target && writer.isAlive()) {
+                wait(100);
+            }
+        }
+    }
+
+    //compact the log now, on the writer thread after the games submitted so far; waits until it is done
+    public void compact() throws InterruptedException {
+        long target = compactionsAsked.incrementAndGet();
+        LockSupport.unpark(writer);
+        synchronized (this) {
+            while (compactionsDone < target && writer.isAlive()) {
+                wait(100);
+            }
+        }
+    }
+
+    //the writer thread: group commit whatever is queued, compact when asked to, sleep when there is nothing to do
+    private void write() {
+        while (true) {
+            boolean stopping = !running; //read first, so a game submitted before close() is still written
+            for (ScoreRecord game; batch.size() < MAX_BATCH && (game = pending.poll()) != null; ) {
+                batch.add(game);
+            }
+            if (batch.isEmpty()) {
+                long asked = compactionsAsked.get();
+                if (asked != compactionsDone) {
+                    if (!failed)
+                        compactLog();
+                    synchronized (this) {
+                        compactionsDone = asked;
+                        notifyAll();
+                    }
+                    continue;
+                }
+                if (stopping)
+                    return;
+                LockSupport.park(this);
+                continue;
+            }
+            commit();
+        }
+    }
+
+    private void commit() {
+        if (!failed) {
+            try {
+                log.append(batch);
+            } catch (IOException e) {
+                System.err.println("score log stopped, scores are only kept until exit: " + e.getMessage());
+                failed = true;
+            }
+        }
+        synchronized (this) {
+            for (ScoreRecord game : batch) {
+                index(game, true);
+            }
+            committed += batch.size();
+            notifyAll();
+        }
+        sinceCompaction += batch.size();
+        batch.clear();
+        if (!failed && sinceCompaction >= compactEvery)
+            compactLog();
+    }
+
+    //the indexes are copied under the lock and written without it, queries go on meanwhile
+    private void compactLog() {
+        List<PlayerStats> totals;
+        List<ScoreRecord> ranked;
+        synchronized (this) {
+            totals = new ArrayList<PlayerStats>(players.values());
+            ranked = new ArrayList<ScoreRecord>(ranking);
+        }
+        try {
+            log.compact(totals, ranked);
+        } catch (IOException e) {
+            System.err.println("score log not compacted: " + e.getMessage()); //the log keeps growing, nothing is lost
+        }
+        sinceCompaction = 0;
+    }
+
+    //add a game to the ranking if it makes it, and to its player's totals unless they hold it already
+    private void index(ScoreRecord game, boolean counted) {
+        if (counted) {
+            PlayerStats totals = players.get(game.getPlayer());
+            players.put(game.getPlayer(), totals == null ? PlayerStats.of(game) : totals.plus(game));
+        }
+        int low = 0, high = ranking.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (!game.ranksAbove(ranking.get(mid)))
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        if (low >= top)
+            return;
+        ranking.add(low, game);
+        if (ranking.size() > top)
+            ranking.remove(ranking.size() - 1);
+    }
+
+    //the n best games, best first
+    public synchronized List<ScoreRecord> top(int n) {
+        return new ArrayList<ScoreRecord>(ranking.subList(0, Math.min(n, ranking.size())));
+    }
+
+    //totals of a player, null for one who never finished a game
+    public synchronized PlayerStats player(String name) {
+        return players.get(name);
+    }
+
+    //every player, best score first
+    public synchronized List<PlayerStats> players() {
+        List<PlayerStats> result = new ArrayList<PlayerStats>(players.values());
+        Collections.sort(result, new Comparator<PlayerStats>() {
+            @Override
+            public int compare(PlayerStats a, PlayerStats b) {
+                return Integer.compare(b.getBestScore(), a.getBestScore());
+            }
+        });
+        return result;
+    }
+
+    //bytes of a torn tail cut off when the log was opened, see ScoreLog
+    public long getDroppedBytes() {
+        return log.getDroppedBytes();
+    }
+
+    //write what is still queued, stop the writer and close the log
+    @Override
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /*usage: ScoreStore top file [n]    the n best games, 10 by default
+    *        ScoreStore players file     the totals of every player
+    *        ScoreStore compact file     compact the log now
+    */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("usage: ScoreStore top|players|compact file [arguments]");
+            return;
+        }
+        Path path = Paths.get(args[1]);
+        try (ScoreStore store = open(path)) {
+            if (store.getDroppedBytes() > 0)
+                System.out.println("cut off " + store.getDroppedBytes() + " bytes of a torn write");
+            if (args[0].equals("top")) {
+                int rank = 1;
+                for (ScoreRecord game : store.top(args.length > 2 ? Integer.parseInt(args[2]) : 10)) {
+                    System.out.println(rank++ + ". " + game);
+                }
+            } else if (args[0].equals("players")) {
+                for (PlayerStats player : store.players()) {
+                    System.out.println(player);
+                }
+            } else if (args[0].equals("compact")) {
+                long before = store.log.getSize(); //the writer has nothing to do yet, so the size is settled
+                store.compact();
+                System.out.println("compacted " + path + " from " + before + " to " + store.log.getSize() + " bytes");
+            } else {
+                System.out.println("unknown scores command: " + args[0]);
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Autopilot;
+import com.mx85.engine.Board;
+import com.mx85.engine.Command;
+import com.mx85.engine.Game;
+import com.mx85.engine.MoveFinder;
+import com.mx85.engine.Shape;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * The bot: a BeamSearch picks where each piece should lock and a MoveFinder works out
+ * how to get it there. Headless, as a Strategy, it makes those moves directly and hard
+ * drops; live, as the Autopilot of a Simulation, it turns them into key presses once a
+ * tick. A live piece is turned and shifted as far as it can go at once, then gravity is
+ * left to bring it down to where the next sideways move or turn is possible (a tuck
+ * under an overhang) or, once only falling is left, it is hard dropped. When gravity
+ * carried the piece past the way to its target, the search runs again from where the
+ * piece is.
+ *
+ * The search and the finder are sized on the first game, so one autoplayer can be
+ * created before the board size is known, but it belongs to one thread.
+ */
+public class Autoplayer implements Strategy, Autopilot {
+
+    private static TranspositionTable sharedCache; //of the configured autoplayers, created by the first one
+
+    private final Heuristic heuristic;
+    private final TranspositionTable cache;
+    private final int beamWidth;
+    private final int depth;
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+
+    private BeamSearch search;
+    private MoveFinder finder;
+    private Board scratch; //the game board without the falling piece, for the finder
+
+    private int piece;       //Game.getPieces() of the piece the target is for, 0 before the first one
+    private boolean planned; //whether there is a target for that piece
+    private int targetX, targetY, targetRotation;
+
+    //the search runs on the pool, or on the calling thread when it is null; the cache may be null too
+    public Autoplayer(Heuristic heuristic, TranspositionTable cache, int beamWidth, int depth, long budgetNanos, ForkJoinPool pool) {
+        this.heuristic = heuristic;
+        this.cache = cache;
+        this.beamWidth = beamWidth;
+        this.depth = depth;
+        this.budgetNanos = budgetNanos;
+        this.pool = pool;
+    }
+
+    /*an autoplayer with the default weights, tuned with -Dtetris.bot.beam (boards kept per level), -Dtetris.bot.depth
+    * (pieces looked at, the current one included) and -Dtetris.bot.millis (time budget per piece). all of them share
+    * one transposition table of -Dtetris.bot.cacheMb megabytes; it is off by default, since a lookup costs about as
+    * much as scoring a 20x20 board with the default heuristic
+    */
+    public static Autoplayer configured(ForkJoinPool pool) {
+        return configured(Long.getLong("tetris.bot.millis", 5) * 1_000_000L, pool);
+    }
+
+    /*the configured autoplayer without a time budget, searching on the calling thread: every piece is searched to the
+    * full depth however long it takes, so headless games play the same for the same seed on any machine, any load and
+    * any number of threads
+    */
+    public static Autoplayer headless() {
+        return configured(0, null);
+    }
+
+    private static Autoplayer configured(long budgetNanos, ForkJoinPool pool) {
+        return new Autoplayer(new Heuristic(), sharedCache(), Integer.getInteger("tetris.bot.beam", BeamSearch.DEFAULT_BEAM),
+                Integer.getInteger("tetris.bot.depth", BeamSearch.DEFAULT_DEPTH), budgetNanos, pool);
+    }
+
+    //the table shared by the configured autoplayers, null when caching is turned off
+    public static synchronized TranspositionTable sharedCache() {
+        long megabytes = Long.getLong("tetris.bot.cacheMb", 0);
+        if (sharedCache == null && megabytes > 0)
+            sharedCache = new TranspositionTable(megabytes << 20);
+        return sharedCache;
+    }
+
+    @Override
+    public void reset(long seed) {
+        piece = 0;
+        planned = false;
+    }
+
+    //search a target and walk the piece straight there, then lock it
+    @Override
+    public void playPiece(Game game) {
+        if (!plan(game) || path(game) < 0) {
+            game.hardDrop();
+            return;
+        }
+        int moves = finder.length();
+        for (int i = 0; i < moves; i++) {
+            game.move(finder.move(i));
+        }
+        game.hardDrop();
+    }
+
+    /*the commands of one tick: every turn and sideways move up to the first row the piece has to fall first,
+    * each as a press and a release so none of them auto-repeats, and a hard drop once nothing but falling is left
+    */
+    @Override
+    public int steer(Game game, int[] commands) {
+        if (game.isGameOver())
+            return 0;
+        if (game.getPieces() != piece)
+            plan(game);
+        if (!planned)
+            return 0;
+        int moves = path(game);
+        if (moves < 0 && (!plan(game) || (moves = path(game)) < 0))
+            return 0;
+        int n = 0;
+        int i = 0;
+        for (; i < moves && finder.move(i) != Shape.DIRECTION.DOWN && n + 2 <= commands.length; i++) {
+            int command = commandFor(finder.move(i));
+            commands[n++] = command;
+            commands[n++] = Command.release(command);
+        }
+        while (i < moves && finder.move(i) == Shape.DIRECTION.DOWN) {
+            i++;
+        }
+        if (i == moves && n + 2 <= commands.length) {
+            commands[n++] = Command.HARD_DROP;
+            commands[n++] = Command.release(Command.HARD_DROP);
+        }
+        return n;
+    }
+
+    private static int commandFor(Shape.DIRECTION direction) {
+        switch (direction) {
+            case LEFT: return Command.LEFT;
+            case RIGHT: return Command.RIGHT;
+            case ROTATE: return Command.ROTATE;
+            default: return Command.SOFT_DROP;
+        }
+    }
+
+    //search a target for the falling piece from where it is, returns whether there is one
+    private boolean plan(Game game) {
+        Board board = game.getBoard();
+        if (search == null || scratch.getWidth() != board.getWidth() || scratch.getHeight() != board.getHeight()) {
+            search = new BeamSearch(board.getWidth(), board.getHeight(), heuristic, cache, beamWidth, depth, budgetNanos, pool);
+            finder = new MoveFinder(board.getWidth(), board.getHeight());
+            scratch = new Board(board.getWidth(), board.getHeight());
+        }
+        piece = game.getPieces();
+        planned = search.search(game);
+        if (planned) {
+            targetX = search.getX();
+            targetY = search.getY();
+            targetRotation = search.getRotation();
+        }
+        return planned;
+    }
+
+    //moves from the falling piece to the target, -1 when it cannot get there any more
+    private int path(Game game) {
+        Shape shape = game.getCurrentShape();
+        scratch.copyFrom(game.getBoard());
+        shape.erase(scratch);
+        return finder.find(scratch, shape.getPieceType(), shape.getX(), shape.getY(), shape.getRotation(),
+                targetX, targetY, targetRotation);
+    }
+
+    @Override
+    public String getName() {
+        return "beam";
+    }
+}
@@ -0,0 +1,113 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceGenerators;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Plays many headless games on a fork-join pool. The range of games is split in halves
+ * down to LEAF_GAMES, every leaf plays its games on the engine of the worker thread it
+ * runs on (one Game and one Strategy per worker, reset between games) and returns its own
+ * BatchStats, which are merged on the way back up. Workers share nothing but the task
+ * queues, so throughput scales with the cores.
+ *
+ * Game i is always played from seed mix(seed + i), whichever worker plays it, so a batch
+ * gives the same results for the same seed on any number of threads.
+ */
+public class BatchSimulator {
+
+    private static final int LEAF_GAMES = 64;
+
+    private final int width;
+    private final int height;
+    private final String generator;
+    private final String strategy;
+    private final int maxPieces;
+    private final ThreadLocal<Engine> engines = new ThreadLocal<Engine>();
+
+    //games longer than maxPieces are stopped there and counted as capped
+    public BatchSimulator(int width, int height, String generator, String strategy, int maxPieces) {
+        PieceGenerators.create(generator, 0);
+        Strategies.create(strategy, 0); //fail on unknown names here rather than on a worker
+        this.width = width;
+        this.height = height;
+        this.generator = generator;
+        this.strategy = strategy;
+        this.maxPieces = maxPieces;
+    }
+
+    public BatchStats run(ForkJoinPool pool, long games, long seed) {
+        return pool.invoke(new Batch(seed, 0, games));
+    }
+
+    //the engine of the calling worker thread, created the first time the worker plays a game
+    private Engine engine() {
+        Engine engine = engines.get();
+        if (engine == null) {
+            engine = new Engine(new Game(width, height, PieceGenerators.create(generator, 0)),
+                    Strategies.create(strategy, 0));
+            engines.set(engine);
+        }
+        return engine;
+    }
+
+    //SplitMix64 finalizer, spreads consecutive game numbers over unrelated seeds
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Engine {
+
+        final Game game;
+        final Strategy strategy;
+
+        Engine(Game game, Strategy strategy) {
+            this.game = game;
+            this.strategy = strategy;
+        }
+    }
+
+    private final class Batch extends RecursiveTask<BatchStats> {
+
+        private final long seed;
+        private final long from;
+        private final long to;
+
+        Batch(long seed, long from, long to) {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BatchStats compute() {
+            if (to - from <= LEAF_GAMES)
+                return play();
+            long middle = (from + to) >>> 1;
+            Batch left = new Batch(seed, from, middle);
+            left.fork();
+            BatchStats right = new Batch(seed, middle, to).compute();
+            return left.join().merge(right);
+        }
+
+        private BatchStats play() {
+            BatchStats stats = new BatchStats();
+            Engine engine = engine();
+            Game game = engine.game;
+            for (long i = from; i < to; i++) {
+                long gameSeed = mix(seed + i);
+                game.reset(gameSeed);
+                engine.strategy.reset(~gameSeed);
+                while (!game.isGameOver() && game.getPieces() < maxPieces) {
+                    engine.strategy.playPiece(game);
+                }
+                stats.record(game);
+            }
+            return stats;
+        }
+    }
+}
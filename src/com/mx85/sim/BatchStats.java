@@ -0,0 +1,106 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceTable;
+import com.mx85.engine.Shape;
+import com.mx85.metrics.Distribution;
+
+import java.io.PrintStream;
+
+/*
+ * Results of a batch of games. Every fork-join leaf fills its own instance without any
+ * synchronization and parents merge their children's, so accumulating costs the same
+ * on one core or on sixty-four.
+ */
+public class BatchStats {
+
+    private static final Shape.PIECE[] PIECES = Shape.PIECE.values();
+
+    private final Distribution score = new Distribution("score");
+    private final Distribution lines = new Distribution("lines");
+    private final Distribution pieces = new Distribution("pieces");
+    private final long[] pieceTypes = new long[PIECES.length];
+    private final long[] clears = new long[PieceTable.CELLS + 1];
+    private long capped; //games stopped at the piece limit instead of topping out
+
+    //add a game that has ended, or was stopped at the piece limit
+    public void record(Game game) {
+        score.record(game.getScore());
+        lines.record(game.getLines());
+        pieces.record(game.getPieces());
+        for (Shape.PIECE type : PIECES) {
+            pieceTypes[type.ordinal()] += game.getPieceCount(type);
+        }
+        for (int rows = 1; rows < clears.length; rows++) {
+            clears[rows] += game.getClears(rows);
+        }
+        if (!game.isGameOver())
+            capped++;
+    }
+
+    public BatchStats merge(BatchStats other) {
+        score.merge(other.score);
+        lines.merge(other.lines);
+        pieces.merge(other.pieces);
+        for (int i = 0; i < pieceTypes.length; i++) {
+            pieceTypes[i] += other.pieceTypes[i];
+        }
+        for (int i = 0; i < clears.length; i++) {
+            clears[i] += other.clears[i];
+        }
+        capped += other.capped;
+        return this;
+    }
+
+    public long getGames() {
+        return score.getCount();
+    }
+
+    public Distribution getScore() {
+        return score;
+    }
+
+    public Distribution getLines() {
+        return lines;
+    }
+
+    //game length in pieces
+    public Distribution getPieces() {
+        return pieces;
+    }
+
+    public long getPieceCount(Shape.PIECE type) {
+        return pieceTypes[type.ordinal()];
+    }
+
+    //locks that cleared exactly the given number of rows
+    public long getClears(int rows) {
+        return clears[rows];
+    }
+
+    public long getCapped() {
+        return capped;
+    }
+
+    public void print(PrintStream out) {
+        out.println(score.summary());
+        out.println(lines.summary());
+        out.println(pieces.summary());
+        long dealt = 0;
+        for (long count : pieceTypes) {
+            dealt += count;
+        }
+        StringBuilder frequency = new StringBuilder("piece frequency:");
+        for (Shape.PIECE type : PIECES) {
+            frequency.append(String.format(" %s %.2f%%", type, 100.0 * pieceTypes[type.ordinal()] / Math.max(1, dealt)));
+        }
+        out.println(frequency);
+        StringBuilder clearCounts = new StringBuilder("clears:");
+        for (int rows = 1; rows < clears.length; rows++) {
+            clearCounts.append(String.format(" %dx%,d", rows, clears[rows]));
+        }
+        out.println(clearCounts);
+        if (capped > 0)
+            out.println(String.format("%,d games stopped at the piece limit", capped));
+    }
+}
@@ -0,0 +1,412 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Board;
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceFactory;
+import com.mx85.engine.PieceTable;
+import com.mx85.engine.PlacementEnumerator;
+import com.mx85.engine.Placements;
+import com.mx85.engine.Shape;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Picks where the falling piece of a game should lock. Every placement of the current
+ * piece is scored with a Heuristic, the best beamWidth boards are kept, every placement
+ * of the next piece from each of them is scored, and so on over the preview up to depth
+ * pieces; the answer is the first placement on the way to the best board of the
+ * deepest level searched.
+ *
+ * A level runs in two fork-join passes on the given pool: the placements of every kept
+ * board are enumerated, one task per couple of boards, and then all the candidates are
+ * locked and scored on scratch boards, split into ranges across the workers. Each
+ * worker thread has its own enumerator, scratch board and heuristic, and the kept
+ * boards are preallocated, so a search allocates nothing once warm. Candidates are
+ * ranked by score and then by the order they were found in, so the result does not
+ * depend on the number of threads.
+ *
+ * Board scores can be cached in a TranspositionTable shared with other searches, keyed
+ * by the Zobrist hash the board keeps up to date as pieces lock and rows clear.
+ *
+ * The search stops at a per-move time budget: a level that does not finish in time is
+ * dropped and the best board of the level before it decides. The first level always
+ * finishes, so there is always an answer while the piece can be placed at all.
+ *
+ * Without a pool everything runs on the calling thread, which is what the batch
+ * simulator wants, since it already plays one game per core. A search instance belongs
+ * to one calling thread at a time.
+ */
+public class BeamSearch {
+
+    private static final Shape.PIECE[] PIECES = Shape.PIECE.values();
+
+    public static final int DEFAULT_BEAM = 8;
+    public static final int DEFAULT_DEPTH = 2;
+    private static final int SPLIT_PARENTS = 2;     //kept boards enumerated by one task
+    private static final int SPLIT_CANDIDATES = 64; //candidates scored by one task
+    private static final int CLOCK_EVERY = 16;      //candidates scored between two looks at the clock
+
+    private final int width;
+    private final int height;
+    private final Heuristic heuristic;
+    private final TranspositionTable cache; //null when every board is scored from scratch
+    private final int beamWidth;
+    private final int depth;
+    private final long budgetNanos;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>();
+
+    //calling thread only, the workers read them while a pass runs
+    private final Node[] root = new Node[1];
+    private Node[] beam;
+    private Node[] next;
+    private final Shape.PIECE[] pieces;
+    private final int[] offsets;    //per kept board: index of its first candidate among all candidates of the level
+    private final double[] topScore;
+    private final int[] topNode;
+    private final int[] topIndex;
+    private int known; //pieces of the current search that are known, at most depth
+    private long deadline;
+    private volatile boolean expired;
+
+    private int bestX, bestY, bestRotation, levels;
+    private double bestScore;
+
+    /*depth is the number of pieces to look at, the current one included; a budget of 0 or less never stops early.
+    * the cache may be null, and must only be shared with searches using the same heuristic weights
+    */
+    public BeamSearch(int width, int height, Heuristic heuristic, TranspositionTable cache, int beamWidth, int depth,
+                      long budgetNanos, ForkJoinPool pool) {
+        if (beamWidth < 1 || depth < 1)
+            throw new IllegalArgumentException("beam width and depth must be positive: " + beamWidth + ", " + depth);
+        this.width = width;
+        this.height = height;
+        this.heuristic = heuristic;
+        this.cache = cache;
+        this.beamWidth = beamWidth;
+        this.depth = depth;
+        this.budgetNanos = budgetNanos;
+        this.pool = pool;
+        root[0] = new Node(width, height);
+        beam = new Node[beamWidth];
+        next = new Node[beamWidth];
+        for (int i = 0; i < beamWidth; i++) {
+            beam[i] = new Node(width, height);
+            next[i] = new Node(width, height);
+        }
+        pieces = new Shape.PIECE[depth];
+        offsets = new int[beamWidth + 1];
+        topScore = new double[beamWidth];
+        topNode = new int[beamWidth];
+        topIndex = new int[beamWidth];
+    }
+
+    /*search a placement for the falling piece of the game, from where it is now. returns false when it cannot be placed
+    * anywhere, otherwise the placement is read with getX(), getY() and getRotation()
+    */
+    public boolean search(Game game) {
+        long start = System.nanoTime();
+        deadline = budgetNanos > 0 ? start + budgetNanos : Long.MAX_VALUE;
+        expired = false;
+        Shape shape = game.getCurrentShape();
+        known = Math.min(depth, 1 + game.getPreviewCount());
+        pieces[0] = shape.getPieceType();
+        for (int i = 1; i < known; i++) {
+            pieces[i] = game.getPreviewPiece(i - 1);
+        }
+
+        Node parent = root[0];
+        parent.board.copyFrom(game.getBoard());
+        shape.erase(parent.board);
+        parent.lines = 0;
+        parent.collect(worker().enumerator.enumerate(parent.board, pieces[0], shape.getX(), shape.getY(), shape.getRotation()));
+        if (parent.count == 0)
+            return false;
+        //whatever happens below, a placement that is possible at all is better than none
+        bestX = parent.x[0];
+        bestY = parent.y[0];
+        bestRotation = parent.rotation[0];
+        bestScore = Double.NEGATIVE_INFINITY;
+        levels = 0;
+
+        Node[] parents = root;
+        int parentCount = 1;
+        for (int level = 0; level < known; level++) {
+            if (level > 0)
+                run(new Enumerate(parents, level, 0, parentCount));
+            offsets[0] = 0;
+            for (int p = 0; p < parentCount; p++) {
+                offsets[p + 1] = offsets[p] + parents[p].count;
+            }
+            run(new Evaluate(parents, parentCount, level, 0, offsets[parentCount]));
+            if (expired)
+                break;
+            int kept = select(parents, parentCount);
+            if (kept == 0)
+                break; //every placement tops out, keep the level before
+            for (int k = 0; k < kept; k++) {
+                Node from = parents[topNode[k]];
+                Node to = next[k];
+                int i = topIndex[k];
+                to.board.copyFrom(from.board);
+                PieceTable table = PieceTable.of(pieces[level]);
+                to.lines = from.lines + to.board.lock(table, from.rotation[i], from.x[i], from.y[i], Board.colorIndex(pieces[level]));
+                to.score = topScore[k];
+                to.firstX = level == 0 ? from.x[i] : from.firstX;
+                to.firstY = level == 0 ? from.y[i] : from.firstY;
+                to.firstRotation = level == 0 ? from.rotation[i] : from.firstRotation;
+            }
+            Node[] swap = beam;
+            beam = next;
+            next = swap;
+            parents = beam;
+            parentCount = kept;
+            levels = level + 1;
+            bestX = beam[0].firstX;
+            bestY = beam[0].firstY;
+            bestRotation = beam[0].firstRotation;
+            bestScore = beam[0].score;
+        }
+        return true;
+    }
+
+    //the beamWidth best candidates of the level into topNode and topIndex, best first, returns how many there are
+    private int select(Node[] parents, int parentCount) {
+        int kept = 0;
+        for (int p = 0; p < parentCount; p++) {
+            Node parent = parents[p];
+            for (int i = 0; i < parent.count; i++) {
+                double score = parent.scores[i];
+                if (score == Double.NEGATIVE_INFINITY || (kept == beamWidth && score <= topScore[kept - 1]))
+                    continue;
+                int k = kept < beamWidth ? kept++ : kept - 1;
+                //strictly better only, so equal scores keep the order they were found in
+                while (k > 0 && topScore[k - 1] < score) {
+                    topScore[k] = topScore[k - 1];
+                    topNode[k] = topNode[k - 1];
+                    topIndex[k] = topIndex[k - 1];
+                    k--;
+                }
+                topScore[k] = score;
+                topNode[k] = p;
+                topIndex[k] = i;
+            }
+        }
+        return kept;
+    }
+
+    private void run(RecursiveAction pass) {
+        if (pool == null)
+            pass.invoke();
+        else
+            pool.invoke(pass);
+    }
+
+    //the scratch of the calling worker thread, created the first time it takes part in a search
+    private Worker worker() {
+        Worker worker = workers.get();
+        if (worker == null) {
+            worker = new Worker(new Board(width, height), new PlacementEnumerator(width, height), heuristic.copy());
+            workers.set(worker);
+        }
+        return worker;
+    }
+
+    //the cell part of a board's score, from the cache when it is there
+    private double score(Heuristic heuristic, Board board) {
+        if (cache == null)
+            return heuristic.evaluateBoard(board);
+        double score = cache.get(board.getHash());
+        if (Double.isNaN(score)) {
+            score = heuristic.evaluateBoard(board);
+            cache.put(board.getHash(), score);
+        }
+        return score;
+    }
+
+    //whether the clock ran out, once it has every worker stops at its next look
+    private boolean outOfTime() {
+        if (expired)
+            return true;
+        if (System.nanoTime() - deadline < 0)
+            return false;
+        expired = true;
+        return true;
+    }
+
+    //whether the piece after this level can enter the board, every type when it is beyond the preview
+    private boolean canSpawn(Board board, int level) {
+        if (board.getStackTop() >= PieceFactory.SPAWN_TOP + PieceTable.CELLS)
+            return true; //the stack is below the rows any piece spawns in
+        if (level + 1 < known)
+            return canSpawn(board, pieces[level + 1]);
+        for (Shape.PIECE type : PIECES) {
+            if (!canSpawn(board, type))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean canSpawn(Board board, Shape.PIECE type) {
+        PieceTable table = PieceTable.of(type);
+        return board.canPlace(table, 0, PieceFactory.spawnColumn(type, width) - table.minX(0),
+                PieceFactory.SPAWN_TOP - table.minY(0));
+    }
+
+    //box column of the chosen placement, as Shape.getX()
+    public int getX() {
+        return bestX;
+    }
+
+    //box row of the chosen placement, as Shape.getY()
+    public int getY() {
+        return bestY;
+    }
+
+    public int getRotation() {
+        return bestRotation;
+    }
+
+    //score of the board the chosen placement leads to, negative infinity when every way tops out
+    public double getScore() {
+        return bestScore;
+    }
+
+    //pieces looked at by the last search before it ran out of time or preview
+    public int getLevels() {
+        return levels;
+    }
+
+    //a board kept by the beam, with the placements of the next piece from it
+    private static final class Node {
+
+        final Board board;
+        int lines;      //rows cleared on the way here
+        double score;
+        int firstX, firstY, firstRotation; //placement of the current piece this board started from
+
+        int count;
+        int[] x = new int[64];
+        int[] y = new int[64];
+        int[] rotation = new int[64];
+        double[] scores = new double[64];
+
+        Node(int width, int height) {
+            board = new Board(width, height);
+        }
+
+        void collect(Placements placements) {
+            count = placements.size();
+            if (count > x.length) {
+                int size = Math.max(count, x.length * 2);
+                x = new int[size];
+                y = new int[size];
+                rotation = new int[size];
+                scores = new double[size];
+            }
+            for (int i = 0; i < count; i++) {
+                x[i] = placements.x(i);
+                y[i] = placements.y(i);
+                rotation[i] = placements.rotation(i);
+            }
+        }
+    }
+
+    private static final class Worker {
+
+        final Board board;
+        final PlacementEnumerator enumerator;
+        final Heuristic heuristic;
+
+        Worker(Board board, PlacementEnumerator enumerator, Heuristic heuristic) {
+            this.board = board;
+            this.enumerator = enumerator;
+            this.heuristic = heuristic;
+        }
+    }
+
+    //enumerate the placements of the level's piece from kept boards [from, to)
+    private final class Enumerate extends RecursiveAction {
+
+        private final Node[] parents;
+        private final int level;
+        private final int from;
+        private final int to;
+
+        Enumerate(Node[] parents, int level, int from, int to) {
+            this.parents = parents;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (pool != null && to - from > SPLIT_PARENTS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Enumerate(parents, level, from, middle), new Enumerate(parents, level, middle, to));
+                return;
+            }
+            Worker worker = worker();
+            for (int p = from; p < to; p++) {
+                if (outOfTime())
+                    return;
+                parents[p].collect(worker.enumerator.enumerate(parents[p].board, pieces[level]));
+            }
+        }
+    }
+
+    //lock and score candidates [from, to) of the level, counted across all kept boards in order
+    private final class Evaluate extends RecursiveAction {
+
+        private final Node[] parents;
+        private final int parentCount;
+        private final int level;
+        private final int from;
+        private final int to;
+
+        Evaluate(Node[] parents, int parentCount, int level, int from, int to) {
+            this.parents = parents;
+            this.parentCount = parentCount;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (pool != null && to - from > SPLIT_CANDIDATES) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Evaluate(parents, parentCount, level, from, middle),
+                        new Evaluate(parents, parentCount, level, middle, to));
+                return;
+            }
+            if (from >= to)
+                return;
+            Worker worker = worker();
+            Board board = worker.board;
+            PieceTable table = PieceTable.of(pieces[level]);
+            byte color = Board.colorIndex(pieces[level]);
+            int p = 0;
+            while (offsets[p + 1] <= from) {
+                p++;
+            }
+            for (int c = from; c < to; c++) {
+                //the first level has to finish, the deeper ones only while there is time
+                if ((c - from) % CLOCK_EVERY == 0 && level > 0 && outOfTime())
+                    return;
+                while (offsets[p + 1] <= c) {
+                    p++;
+                }
+                Node parent = parents[p];
+                int i = c - offsets[p];
+                board.copyFrom(parent.board);
+                int cleared = board.lock(table, parent.rotation[i], parent.x[i], parent.y[i], color);
+                parent.scores[i] = canSpawn(board, level)
+                        ? score(worker.heuristic, board) + worker.heuristic.evaluateLines(parent.lines + cleared)
+                        : Double.NEGATIVE_INFINITY;
+            }
+        }
+    }
+}
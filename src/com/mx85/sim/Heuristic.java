@@ -0,0 +1,79 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Board;
+
+/*
+ * Weighted board evaluation for the bots: aggregate column height, holes (free cells
+ * with a filled cell somewhere above them), bumpiness (the summed height difference of
+ * neighbouring columns) and the rows cleared on the way to the board. Higher is better.
+ *
+ * The column heights come from the board's column tops. Every free cell under a column
+ * top is a hole, so the holes are the summed heights less the filled cells, which is a
+ * population count per row word from the stack top down.
+ *
+ * The weights are fixed and an instance keeps nothing else, so threads may share one;
+ * copy() gives another one with the same weights.
+ */
+public class Heuristic {
+
+    //weights found by a genetic search for the classic four-measure evaluation
+    public static final double HEIGHT = -0.510066;
+    public static final double LINES = 0.760666;
+    public static final double HOLES = -0.35663;
+    public static final double BUMPINESS = -0.184483;
+
+    private final double height;
+    private final double lines;
+    private final double holes;
+    private final double bumpiness;
+
+    public Heuristic() {
+        this(HEIGHT, LINES, HOLES, BUMPINESS);
+    }
+
+    public Heuristic(double height, double lines, double holes, double bumpiness) {
+        this.height = height;
+        this.lines = lines;
+        this.holes = holes;
+        this.bumpiness = bumpiness;
+    }
+
+    //another evaluator with the same weights, for another thread
+    public Heuristic copy() {
+        return new Heuristic(height, lines, holes, bumpiness);
+    }
+
+    //score of a board reached by clearing the given number of rows, the board must not have a falling piece drawn on it
+    public double evaluate(Board board, int linesCleared) {
+        return evaluateBoard(board) + evaluateLines(linesCleared);
+    }
+
+    //the part of the score that only depends on the cells, which is what a TranspositionTable caches
+    public double evaluateBoard(Board board) {
+        int width = board.getWidth();
+        int words = board.getWordsPerRow();
+        int rows = board.getHeight();
+        int filled = 0;
+        for (int y = board.getStackTop(); y < rows; y++) {
+            for (int w = 0; w < words; w++) {
+                filled += Long.bitCount(board.getRowWord(y, w));
+            }
+        }
+        int previous = board.getColumnHeight(0);
+        int aggregate = previous;
+        int bumps = 0;
+        for (int x = 1; x < width; x++) {
+            int columnHeight = board.getColumnHeight(x);
+            aggregate += columnHeight;
+            bumps += Math.abs(columnHeight - previous);
+            previous = columnHeight;
+        }
+        int holeCount = aggregate - filled;
+        return height * aggregate + holes * holeCount + bumpiness * bumps;
+    }
+
+    //the part of the score for the rows cleared on the way to a board
+    public double evaluateLines(int linesCleared) {
+        return lines * linesCleared;
+    }
+}
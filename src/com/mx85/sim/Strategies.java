@@ -0,0 +1,80 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.Shape;
+
+import java.util.SplittableRandom;
+
+/*
+ * The built-in scripted strategies and a factory to pick one by name.
+ *
+ *   drop   - hard drop every piece where it spawns, the baseline
+ *   random - a random rotation and column for every piece, then a hard drop
+ *   beam   - the Autoplayer, searching on the calling thread since every core already plays a game, and without a
+ *            time budget so its moves depend on the seed alone
+ */
+public final class Strategies {
+
+    private Strategies() {
+    }
+
+    public static Strategy create(String name, long seed) {
+        Strategy strategy;
+        if (name.equals("drop"))
+            strategy = new Drop();
+        else if (name.equals("random"))
+            strategy = new Random();
+        else if (name.equals("beam"))
+            strategy = Autoplayer.headless();
+        else
+            throw new IllegalArgumentException("unknown strategy: " + name);
+        strategy.reset(seed);
+        return strategy;
+    }
+
+    public static class Drop implements Strategy {
+
+        @Override
+        public void reset(long seed) {
+        }
+
+        @Override
+        public void playPiece(Game game) {
+            game.hardDrop();
+        }
+
+        @Override
+        public String getName() {
+            return "drop";
+        }
+    }
+
+    public static class Random implements Strategy {
+
+        private SplittableRandom random = new SplittableRandom(0);
+
+        @Override
+        public void reset(long seed) {
+            random = new SplittableRandom(seed);
+        }
+
+        //rotate a random number of times, slide towards a random column and drop
+        @Override
+        public void playPiece(Game game) {
+            int rotations = random.nextInt(4);
+            for (int i = 0; i < rotations; i++) {
+                game.move(Shape.DIRECTION.ROTATE);
+            }
+            int target = random.nextInt(game.getBoard().getWidth());
+            Shape.DIRECTION side = target < game.getCurrentShape().getX() ? Shape.DIRECTION.LEFT : Shape.DIRECTION.RIGHT;
+            while (game.getCurrentShape().getX() != target && game.move(side)) {
+            }
+            game.hardDrop();
+        }
+
+        @Override
+        public String getName() {
+            return "random";
+        }
+    }
+}
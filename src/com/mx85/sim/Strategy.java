@@ -0,0 +1,20 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Game;
+
+/*
+ * Plays the falling piece of a headless game: moves it with Game.move and the like
+ * until it locks. A strategy instance belongs to one thread, so it may keep scratch
+ * state between pieces; seeds make the randomized ones repeatable.
+ */
+public interface Strategy {
+
+    //start a new game, random choices from now on follow the seed
+    void reset(long seed);
+
+    //steer the current piece of the game until it locks (or the game ends)
+    void playPiece(Game game);
+
+    //short name such as "random" or "drop", as accepted by Strategies.create
+    String getName();
+}
@@ -0,0 +1,125 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.GameSnapshot;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.engine.SnapshotBuffer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Many bot games played side by side for watching: game i is played by strategy
+ * i % strategies.length, and the games of one round of strategies (0 to n-1, n to 2n-1,
+ * ...) share a seed, so every strategy gets the same pieces as its rivals in that round.
+ *
+ * A fixed number of threads own the games between them (thread t plays t, t + threads,
+ * ...) and play one piece in each of their games per round, pacing the rounds so a piece
+ * locks every pieceNanos (0 plays as fast as the bots go). After every piece a game is
+ * published through its own SnapshotBuffer, so a view picks up the newest state of every
+ * board without ever waiting for a bot.
+ */
+public class Tournament {
+
+    private final Game[] games;
+    private final Strategy[] players;
+    private final SnapshotBuffer[] snapshots;
+    private final int maxPieces;
+    private final long pieceNanos;
+    private final Thread[] threads;
+    private volatile boolean running;
+
+    //games played by the strategies named, in turn, until they end or reach maxPieces
+    public Tournament(int count, String[] strategies, String generator, int width, int height, long seed, int maxPieces,
+                      long pieceNanos, int threads) {
+        if (count <= 0 || strategies.length == 0)
+            throw new IllegalArgumentException("a tournament needs games and strategies");
+        this.games = new Game[count];
+        this.players = new Strategy[count];
+        this.snapshots = new SnapshotBuffer[count];
+        this.maxPieces = maxPieces;
+        this.pieceNanos = pieceNanos;
+        for (int i = 0; i < count; i++) {
+            long gameSeed = BatchSimulator.mix(seed + i / strategies.length);
+            games[i] = new Game(width, height, PieceGenerators.create(generator, gameSeed));
+            players[i] = Strategies.create(strategies[i % strategies.length], ~gameSeed);
+            snapshots[i] = new SnapshotBuffer(width, height, games[i].getPreviewCount());
+            snapshots[i].publish(games[i], 0);
+        }
+        this.threads = new Thread[Math.max(1, Math.min(threads, count))];
+    }
+
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        for (int t = 0; t < threads.length; t++) {
+            final int first = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    play(first);
+                }
+            }, "tetris-tournament-" + t);
+            threads[t].setDaemon(true);
+            threads[t].start();
+        }
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        for (Thread thread : threads) {
+            if (thread != null)
+                thread.join();
+        }
+    }
+
+    //one round after another over the games of this thread, sleeping off what is left of every round
+    private void play(int first) {
+        long next = System.nanoTime();
+        boolean playing = true;
+        while (running && playing) {
+            playing = false;
+            for (int i = first; i < games.length; i += threads.length) {
+                Game game = games[i];
+                if (game.isGameOver() || game.getPieces() >= maxPieces)
+                    continue;
+                players[i].playPiece(game);
+                snapshots[i].publish(game, 0);
+                playing = true;
+            }
+            next += pieceNanos;
+            long late = System.nanoTime() - next;
+            if (late < 0)
+                LockSupport.parkNanos(-late);
+            else
+                next = System.nanoTime(); //a slow round does not make the next ones hurry
+        }
+    }
+
+    public int getCount() {
+        return games.length;
+    }
+
+    public int getWidth() {
+        return games[0].getBoard().getWidth();
+    }
+
+    public int getHeight() {
+        return games[0].getBoard().getHeight();
+    }
+
+    //name of the strategy that plays game i
+    public String getPlayer(int i) {
+        return players[i].getName();
+    }
+
+    //reader side: the newest state of game i, call from one thread only (the EDT)
+    public GameSnapshot latest(int i) {
+        return snapshots[i].latest();
+    }
+
+    //whether the game of a snapshot is over or reached the piece limit, so it will not change any more
+    public boolean isFinished(GameSnapshot snapshot) {
+        return snapshot.isGameOver() || snapshot.getPieces() >= maxPieces;
+    }
+}
@@ -0,0 +1,182 @@
+package com.mx85.sim;
+
+import java.util.Arrays;
+
+/*
+ * Bounded cache of board scores keyed by Board.getHash(), shared by every thread of a
+ * search or a batch. A search reaches the same board through different move orders,
+ * and the boards two pieces deep of one move are one piece deep for the next, so most
+ * scores can be looked up instead of walking the board again.
+ *
+ * The table is set-associative: a key can only live in the WAYS slots of its set, and
+ * when they are all taken the CLOCK hand of the set evicts the first entry that was not
+ * used since the hand last passed it. The sets are spread over STRIPES independently
+ * locked stripes, so threads only contend when they hit the same stripe at once; the hit
+ * and eviction counters are kept per stripe under the same lock, so counting costs no
+ * extra shared writes. All the slots are allocated up front from the byte budget and
+ * never grow.
+ *
+ * Keys are whole 64-bit hashes; two different boards sharing one is possible but rare
+ * enough that a bot does not care. Scores are only comparable for one set of weights,
+ * so a table must not be shared by heuristics with different ones.
+ */
+public class TranspositionTable {
+
+    public static final int WAYS = 8;
+    private static final int STRIPES = 64;
+    private static final int ENTRY_BYTES = 8 + 8 + 1; //key, score, state
+
+    private static final byte FREE = 0;
+    private static final byte KEPT = 1; //in the table, not used since the hand passed it
+    private static final byte USED = 2; //in the table and used since the hand passed it
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final int setsPerStripe;
+
+    //a table taking at most maxBytes of slots, rounded down to a power of two sets per stripe
+    public TranspositionTable(long maxBytes) {
+        long sets = maxBytes / ENTRY_BYTES / WAYS / STRIPES;
+        if (sets < 1)
+            throw new IllegalArgumentException("transposition table needs at least "
+                    + (long) ENTRY_BYTES * WAYS * STRIPES + " bytes: " + maxBytes);
+        setsPerStripe = (int) Long.highestOneBit(Math.min(sets, Integer.MAX_VALUE / WAYS));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(setsPerStripe);
+        }
+    }
+
+    //the score stored for the key, NaN when there is none
+    public double get(long key) {
+        Stripe stripe = stripeOf(key);
+        int base = setOf(key) * WAYS;
+        synchronized (stripe) {
+            for (int i = base; i < base + WAYS; i++) {
+                if (stripe.states[i] != FREE && stripe.keys[i] == key) {
+                    stripe.states[i] = USED;
+                    stripe.hits++;
+                    return stripe.scores[i];
+                }
+            }
+            stripe.misses++;
+        }
+        return Double.NaN;
+    }
+
+    //store a score, replacing the one stored for the key or, when the set is full, the entry the clock hand evicts
+    public void put(long key, double score) {
+        Stripe stripe = stripeOf(key);
+        int set = setOf(key);
+        int base = set * WAYS;
+        synchronized (stripe) {
+            int free = -1;
+            for (int i = base; i < base + WAYS; i++) {
+                if (stripe.states[i] == FREE) {
+                    if (free < 0)
+                        free = i;
+                } else if (stripe.keys[i] == key) {
+                    stripe.scores[i] = score;
+                    stripe.states[i] = USED;
+                    return;
+                }
+            }
+            if (free < 0) {
+                //second chance: clear the used marks the hand passes until it finds an entry that was not used
+                int hand = stripe.hands[set];
+                while (stripe.states[base + hand] == USED) {
+                    stripe.states[base + hand] = KEPT;
+                    hand = (hand + 1) & (WAYS - 1);
+                }
+                free = base + hand;
+                stripe.hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+                stripe.evictions++;
+            }
+            stripe.keys[free] = key;
+            stripe.scores[free] = score;
+            stripe.states[free] = USED;
+        }
+    }
+
+    //the high bits pick the stripe and the low bits the set, so both are spread evenly by the hash
+    private Stripe stripeOf(long key) {
+        return stripes[(int) (key >>> 58) & (STRIPES - 1)];
+    }
+
+    private int setOf(long key) {
+        return (int) key & (setsPerStripe - 1);
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                Arrays.fill(stripe.states, FREE);
+                stripe.hits = stripe.misses = stripe.evictions = 0;
+            }
+        }
+    }
+
+    public long getCapacity() {
+        return (long) STRIPES * setsPerStripe * WAYS;
+    }
+
+    public long getBytes() {
+        return getCapacity() * ENTRY_BYTES;
+    }
+
+    public long getHits() {
+        long sum = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                sum += stripe.hits;
+            }
+        }
+        return sum;
+    }
+
+    public long getMisses() {
+        long sum = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                sum += stripe.misses;
+            }
+        }
+        return sum;
+    }
+
+    public long getEvictions() {
+        long sum = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                sum += stripe.evictions;
+            }
+        }
+        return sum;
+    }
+
+    //share of lookups that found a score, 0 before the first lookup
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public String summary() {
+        return String.format("transposition table: %,d entries (%.1f MB), hit rate %.1f%% of %,d lookups, %,d evictions",
+                getCapacity(), getBytes() / 1e6, 100 * getHitRate(), getHits() + getMisses(), getEvictions());
+    }
+
+    private static final class Stripe {
+
+        final long[] keys;
+        final double[] scores;
+        final byte[] states;
+        final byte[] hands; //per set: the way the clock hand looks at next
+        long hits, misses, evictions;
+
+        Stripe(int sets) {
+            keys = new long[sets * WAYS];
+            scores = new double[sets * WAYS];
+            states = new byte[sets * WAYS];
+            hands = new byte[sets];
+        }
+    }
+}
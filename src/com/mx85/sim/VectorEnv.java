@@ -0,0 +1,411 @@
+package com.mx85.sim;
+
+import com.mx85.engine.Game;
+import com.mx85.engine.PieceFactory;
+import com.mx85.engine.PieceGenerator;
+import com.mx85.engine.PieceGenerators;
+import com.mx85.engine.PieceTable;
+import com.mx85.engine.Shape;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Many games side by side for training agents, stepped a placement at a time. Nothing
+ * is kept per game object: the boards are one flat array of row masks (a row is one
+ * long, so boards are at most 64 columns wide), and the falling pieces, preview rings,
+ * column heights and counters are flat arrays indexed by game, so a chunk of games is
+ * stepped by walking a few arrays front to back. Only the piece generators are objects,
+ * so every game deals exactly the pieces a Game with the same generator and seed would.
+ *
+ * An action is rotation * width + column: the new piece is turned that many times where
+ * it spawned, shifted until its leftmost cell is in the column and hard dropped, as a
+ * player would. A turn or shift that is blocked stops there and the piece drops from
+ * where it got to, so every action in range is playable; the action mask says which
+ * ones get exactly where they ask. The reward is the points the lock scored, counted
+ * as Game counts them. A game that ends is reported done and starts over right away
+ * (game i plays its episode k from seed mix(seed + k * games + i), so episode 0 of game i
+ * deals the pieces game i of a BatchSimulator run with that seed would).
+ *
+ * Observations are written into a buffer the caller keeps, so a step allocates nothing.
+ * Per game, getObservationBytes() bytes, one after the other:
+ *
+ *   occupancy  height * width bytes, row-major from the top row, 1 for a filled cell
+ *   pieces     the falling piece then the preview, Shape.PIECE ordinals
+ *   heights    width bytes, the height of the highest filled cell of each column
+ *   mask       getActionCount() bytes, 1 for the actions that reach their column and rotation
+ *
+ * Steps are split over a fork-join pool in chunks of CHUNK games, or run on the calling
+ * thread when there is no pool; the results do not depend on the number of threads.
+ */
+public class VectorEnv {
+
+    public static final int MAX_WIDTH = 64;
+    public static final int MAX_HEIGHT = 255; //so a column height fits in a byte
+    private static final int CHUNK = 256;
+
+    private static final Shape.PIECE[] PIECES = Shape.PIECE.values();
+    private static final PieceTable[] TABLES = new PieceTable[PIECES.length];
+
+    static {
+        for (Shape.PIECE piece : PIECES) {
+            TABLES[piece.ordinal()] = PieceTable.of(piece);
+        }
+    }
+
+    private final int games;
+    private final int width;
+    private final int height;
+    private final int preview;
+    private final long full;       //row mask of a full row
+    private final int[] spawnX;    //per piece type, the rotation box of a new piece
+    private final int[] spawnY;
+    private final int observationBytes;
+    private final ForkJoinPool pool;
+
+    private final long[] rows;        //games * height, bit x of row y is column x
+    private final byte[] heights;     //games * width
+    private final byte[] pieces;      //per game, the falling piece
+    private final byte[] upcoming;    //games * preview, a ring per game starting at its head
+    private final int[] heads;
+    private final PieceGenerator[] generators;
+    private final int[] scores;
+    private final int[] lines;
+    private final int[] pieceCounts; //pieces dealt in the current episode, including the falling one
+    private final int[] episodes;    //episodes finished
+    private long seed;
+
+    //games of width x height with the named generator, stepped on the pool or on the calling thread when it is null
+    public VectorEnv(int games, int width, int height, String generator, int preview, ForkJoinPool pool) {
+        if (games < 1)
+            throw new IllegalArgumentException("need at least one game: " + games);
+        if (width < Game.MIN_WIDTH || height < Game.MIN_HEIGHT || width > MAX_WIDTH || height > MAX_HEIGHT)
+            throw new IllegalArgumentException("boards must be " + Game.MIN_WIDTH + "x" + Game.MIN_HEIGHT + " to " + MAX_WIDTH + "x" + MAX_HEIGHT + ": " + width + "x" + height);
+        if (preview < 1)
+            throw new IllegalArgumentException("preview must be at least 1: " + preview);
+        this.games = games;
+        this.width = width;
+        this.height = height;
+        this.preview = preview;
+        this.full = width == 64 ? -1L : (1L << width) - 1;
+        this.pool = pool;
+        spawnX = new int[PIECES.length];
+        spawnY = new int[PIECES.length];
+        for (Shape.PIECE piece : PIECES) {
+            PieceTable table = TABLES[piece.ordinal()];
+            spawnX[piece.ordinal()] = PieceFactory.spawnColumn(piece, width) - table.minX(0);
+            spawnY[piece.ordinal()] = PieceFactory.SPAWN_TOP - table.minY(0);
+        }
+        observationBytes = height * width + 1 + preview + width + getActionCount();
+        rows = new long[games * height];
+        heights = new byte[games * width];
+        pieces = new byte[games];
+        upcoming = new byte[games * preview];
+        heads = new int[games];
+        generators = new PieceGenerator[games];
+        for (int i = 0; i < games; i++) {
+            generators[i] = PieceGenerators.create(generator, 0);
+        }
+        scores = new int[games];
+        lines = new int[games];
+        pieceCounts = new int[games];
+        episodes = new int[games];
+    }
+
+    //start every game over, game i from seed mix(seed + i), and write the first observations
+    public void reset(long seed, ByteBuffer observations) {
+        checkBuffer(observations);
+        this.seed = seed;
+        run(new Chunk(0, games, null, null, null, observations, observations.position()));
+    }
+
+    /*play one action in every game and write the points each one scored, whether it ended (and started over) and the
+    * observations that follow
+    */
+    public void step(int[] actions, float[] rewards, boolean[] dones, ByteBuffer observations) {
+        if (actions.length < games || rewards.length < games || dones.length < games)
+            throw new IllegalArgumentException("need an action, reward and done slot for each of " + games + " games");
+        int count = getActionCount();
+        for (int i = 0; i < games; i++) {
+            if (actions[i] < 0 || actions[i] >= count)
+                throw new IllegalArgumentException("game " + i + ": action " + actions[i] + " is not in 0.." + (count - 1));
+        }
+        checkBuffer(observations);
+        run(new Chunk(0, games, actions, rewards, dones, observations, observations.position()));
+    }
+
+    private void checkBuffer(ByteBuffer observations) {
+        if (observations.remaining() < (long) games * observationBytes)
+            throw new IllegalArgumentException("observations need " + (long) games * observationBytes + " bytes, "
+                    + observations.remaining() + " remaining");
+    }
+
+    private void run(Chunk chunk) {
+        if (pool == null)
+            chunk.compute();
+        else
+            pool.invoke(chunk);
+    }
+
+    private void resetGame(int i) {
+        int base = i * height;
+        for (int y = 0; y < height; y++) {
+            rows[base + y] = 0;
+        }
+        for (int x = 0; x < width; x++) {
+            heights[i * width + x] = 0;
+        }
+        generators[i].reset(BatchSimulator.mix(seed + (long) episodes[i] * games + i));
+        for (int k = 0; k < preview; k++) {
+            upcoming[i * preview + k] = (byte) generators[i].next().ordinal();
+        }
+        heads[i] = 0;
+        scores[i] = 0;
+        lines[i] = 0;
+        pieceCounts[i] = 1;
+        pieces[i] = next(i);
+    }
+
+    //take the next piece of the game's ring and draw a new one at the far end, as a PieceQueue does
+    private byte next(int i) {
+        int slot = i * preview + heads[i];
+        byte piece = upcoming[slot];
+        upcoming[slot] = (byte) generators[i].next().ordinal();
+        heads[i] = (heads[i] + 1) % preview;
+        return piece;
+    }
+
+    //turn, shift and drop the falling piece, lock it and spawn the next one; returns the points scored or -1 when the game ended
+    private int play(int i, int action) {
+        int type = pieces[i];
+        PieceTable table = TABLES[type];
+        int base = i * height;
+        int x = spawnX[type];
+        int y = spawnY[type];
+        if (!fits(base, table, 0, x, y))
+            return -1; //a game whose first piece does not fit where it spawns ends on its first step, nothing is written
+        int rotation = 0;
+        int targetRotation = action / width;
+        while (rotation != targetRotation && fits(base, table, PieceTable.nextRotation(rotation), x, y)) {
+            rotation = PieceTable.nextRotation(rotation);
+        }
+        int targetX = action % width - table.minX(rotation);
+        while (x < targetX && fits(base, table, rotation, x + 1, y)) {
+            x++;
+        }
+        while (x > targetX && fits(base, table, rotation, x - 1, y)) {
+            x--;
+        }
+        while (fits(base, table, rotation, x, y + 1)) {
+            y++;
+        }
+        int bottom = y + table.maxY(rotation);
+        boolean cleared = false;
+        for (int row = table.minY(rotation); row <= table.maxY(rotation); row++) {
+            long filled = rows[base + y + row] |= shift(table.rowMask(rotation, row), x);
+            cleared |= filled == full;
+        }
+        int points = 0;
+        if (cleared) {
+            int count = clearFullRows(base, bottom);
+            lines[i] += count;
+            points = Game.POINTS_PER_LINE * count;
+            scores[i] += points;
+            measureHeights(i);
+        } else {
+            for (int c = 0; c < PieceTable.CELLS; c++) {
+                int column = i * width + x + table.cellX(rotation, c);
+                int h = height - (y + table.cellY(rotation, c));
+                if (h > (heights[column] & 0xff))
+                    heights[column] = (byte) h;
+            }
+        }
+        pieces[i] = next(i);
+        pieceCounts[i]++;
+        int next = pieces[i];
+        return fits(base, TABLES[next], 0, spawnX[next], spawnY[next]) ? points : -1;
+    }
+
+    //a piece only completes rows it covers, so full rows are looked for from the bottom of the piece up; returns how many
+    private int clearFullRows(int base, int bottom) {
+        int write = bottom;
+        for (int read = bottom; read >= 0; read--) {
+            long row = rows[base + read];
+            if (row != full)
+                rows[base + write--] = row;
+        }
+        int count = write + 1;
+        for (; write >= 0; write--) {
+            rows[base + write] = 0;
+        }
+        return count;
+    }
+
+    //the heights of every column from the top down, a column's height is known the first time its bit shows up
+    private void measureHeights(int i) {
+        int base = i * height;
+        long seen = 0;
+        for (int x = 0; x < width; x++) {
+            heights[i * width + x] = 0;
+        }
+        for (int y = 0; y < height && seen != full; y++) {
+            long fresh = rows[base + y] & ~seen;
+            seen |= fresh;
+            while (fresh != 0) {
+                heights[i * width + Long.numberOfTrailingZeros(fresh)] = (byte) (height - y);
+                fresh &= fresh - 1;
+            }
+        }
+    }
+
+    //whether the piece fits with its rotation box at (x, y) on the board starting at row base, as Board.canPlace
+    private boolean fits(int base, PieceTable table, int rotation, int x, int y) {
+        if (x + table.minX(rotation) < 0 || x + table.maxX(rotation) >= width)
+            return false;
+        if (y + table.minY(rotation) < 0 || y + table.maxY(rotation) >= height)
+            return false;
+        for (int row = table.minY(rotation); row <= table.maxY(rotation); row++) {
+            if ((rows[base + y + row] & shift(table.rowMask(rotation, row), x)) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static long shift(long mask, int x) {
+        return x < 0 ? mask >>> -x : mask << x;
+    }
+
+    private void observe(int i, ByteBuffer out, int start) {
+        int o = start + i * observationBytes;
+        int base = i * height;
+        for (int y = 0; y < height; y++) {
+            long row = rows[base + y];
+            for (int x = 0; x < width; x++) {
+                out.put(o++, (byte) (row >>> x & 1));
+            }
+        }
+        out.put(o++, pieces[i]);
+        for (int k = 0; k < preview; k++) {
+            out.put(o++, upcoming[i * preview + (heads[i] + k) % preview]);
+        }
+        for (int x = 0; x < width; x++) {
+            out.put(o++, heights[i * width + x]);
+        }
+        //the rotations reachable where the piece spawned, and from each the columns it can slide to
+        int type = pieces[i];
+        PieceTable table = TABLES[type];
+        int y = spawnY[type];
+        boolean reachable = fits(base, table, 0, spawnX[type], y);
+        for (int rotation = 0; rotation < PieceTable.ROTATIONS; rotation++) {
+            reachable &= fits(base, table, rotation, spawnX[type], y);
+            int left = spawnX[type];
+            int right = spawnX[type];
+            if (reachable) {
+                while (fits(base, table, rotation, left - 1, y)) {
+                    left--;
+                }
+                while (fits(base, table, rotation, right + 1, y)) {
+                    right++;
+                }
+            }
+            for (int column = 0; column < width; column++) {
+                int x = column - table.minX(rotation);
+                out.put(o++, (byte) (reachable && x >= left && x <= right ? 1 : 0));
+            }
+        }
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getPreview() {
+        return preview;
+    }
+
+    //actions are 0 to this, exclusive
+    public int getActionCount() {
+        return PieceTable.ROTATIONS * width;
+    }
+
+    //bytes of one game's observation, see the layout above
+    public int getObservationBytes() {
+        return observationBytes;
+    }
+
+    public int getScore(int game) {
+        return scores[game];
+    }
+
+    public int getLines(int game) {
+        return lines[game];
+    }
+
+    //pieces dealt in the current episode of the game, including the falling one
+    public int getPieces(int game) {
+        return pieceCounts[game];
+    }
+
+    //episodes the game has finished since the last reset
+    public int getEpisodes(int game) {
+        return episodes[game];
+    }
+
+    //a range of games, split in halves down to CHUNK; no actions means start the games over
+    private final class Chunk extends RecursiveAction {
+
+        private final int from;
+        private final int to;
+        private final int[] actions;
+        private final float[] rewards;
+        private final boolean[] dones;
+        private final ByteBuffer out;
+        private final int start;
+
+        Chunk(int from, int to, int[] actions, float[] rewards, boolean[] dones, ByteBuffer out, int start) {
+            this.from = from;
+            this.to = to;
+            this.actions = actions;
+            this.rewards = rewards;
+            this.dones = dones;
+            this.out = out;
+            this.start = start;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK && pool != null) {
+                int middle = (from + to) >>> 1;
+                Chunk left = new Chunk(from, middle, actions, rewards, dones, out, start);
+                left.fork();
+                new Chunk(middle, to, actions, rewards, dones, out, start).compute();
+                left.join();
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (actions == null) {
+                    episodes[i] = 0;
+                    resetGame(i);
+                } else {
+                    int points = play(i, actions[i]);
+                    dones[i] = points < 0;
+                    rewards[i] = Math.max(points, 0);
+                    if (points < 0) {
+                        episodes[i]++;
+                        resetGame(i);
+                    }
+                }
+                observe(i, out, start);
+            }
+        }
+    }
+}